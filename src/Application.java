@@ -7,9 +7,14 @@ import javax.swing.*;
 import javax.swing.Timer;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Application class (User UI) <br>
@@ -30,6 +35,9 @@ public class Application {
 	private static SettingsPanel settingsPanel;
 	private static StatisticsPanel statisticsPanel;
 	private static GamePanel gamePanel;
+	// a game is being prepared off the EDT (prepareGame)
+	private static boolean preparing = false;
+	private static CalibrationPanel calibrationPanel;
 
 	// state tracking
 	private static String selectedDifficulty;
@@ -46,12 +54,25 @@ public class Application {
 	 * - handles user interaction
 	 */
 	Application() {
+		// audio engine is normally started by Main, make sure it is running
+		AudioEngine.start();
 		// load theme assets
 		ThemeLoader.loadModernThemeAssets();
+		// load the latency offset calibrated for this user and output device
+		GameRules.AUDIO_OFFSET_MS = CalibrationManager.loadOffset(currentUserOrGuest(), AudioEngine.getDeviceName());
+		// analyse the songs for generated charts while the menus are shown (cached after the first run)
+		if (GameRules.AUTO_CHART) {
+			String[] songs = new Audio().song;
+			File[] files = new File[songs.length];
+			for (int i = 0; i < songs.length; i++) {
+				files[i] = new File(songs[i]);
+			}
+			OnsetCharter.prepareInBackground(files);
+		}
 
 		// initialize frame
 		frame = new JFrame("Manuvo");
-		frame.setSize(Config.WIDTH, Config.HEIGHT);
+		frame.setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setResizable(false);
 
@@ -68,11 +89,11 @@ public class Application {
 		// GamePanel will be created when starting a game to include chosen difficulty/song
 
 		// position screens (all fill the frame area)
-		mainMenuPanel.setBounds(0, 0, Config.WIDTH, Config.HEIGHT);
-		difficultySelectPanel.setBounds(0, 0, Config.WIDTH, Config.HEIGHT);
-		songSelectPanel.setBounds(0, 0, Config.WIDTH, Config.HEIGHT);
-		settingsPanel.setBounds(0, 0, Config.WIDTH, Config.HEIGHT);
-		statisticsPanel.setBounds(0, 0, Config.WIDTH, Config.HEIGHT);
+		mainMenuPanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		difficultySelectPanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		songSelectPanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		settingsPanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		statisticsPanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
 
 		// add screens to frame
 		frame.add(mainMenuPanel);
@@ -123,8 +144,8 @@ public class Application {
 
 		// SOUND button - toggles global sound flag ---
 		settingsPanel.soundButton.addActionListener(e -> {
-			Config.SOUND_ENABLED = !Config.SOUND_ENABLED;
-			if (Config.SOUND_ENABLED) {
+			GameRules.SOUND_ENABLED = !GameRules.SOUND_ENABLED;
+			if (GameRules.SOUND_ENABLED) {
 				settingsPanel.soundButton.setText("SOUND: ON");
 				backgroundMusic.startAudio();
 			} else {
@@ -132,17 +153,114 @@ public class Application {
 				backgroundMusic.stopAudio();
 			}
 		});
+		// SPECTRUM button - toggles the audio-reactive background
+		settingsPanel.spectrumButton.addActionListener(e -> {
+			Config.SPECTRUM_ENABLED = !Config.SPECTRUM_ENABLED;
+			settingsPanel.spectrumButton.setText(Config.SPECTRUM_ENABLED ? "SPECTRUM: ON" : "SPECTRUM: OFF");
+		});
+		// MIDI PLAYBACK button - plays MIDI charts through the sequencer instead of the WAV
+		settingsPanel.midiButton.addActionListener(e -> {
+			GameRules.MIDI_PLAYBACK = !GameRules.MIDI_PLAYBACK;
+			settingsPanel.midiButton.setText(GameRules.MIDI_PLAYBACK ? "MIDI PLAYBACK: ON" : "MIDI PLAYBACK: OFF");
+		});
+		// PRACTICE button - toggles practice mode (seek and loop, no game over, no stats)
+		settingsPanel.practiceButton.addActionListener(e -> {
+			Config.PRACTICE_MODE = !Config.PRACTICE_MODE;
+			settingsPanel.practiceButton.setText(Config.PRACTICE_MODE ? "PRACTICE: ON" : "PRACTICE: OFF");
+		});
+		// PRACTICE RATE button - cycles the practice playback rate
+		settingsPanel.rateButton.addActionListener(e -> {
+			float[] options = GameRules.PLAYBACK_RATE_OPTIONS;
+			int next = 0;
+			for (int i = 0; i < options.length; i++) {
+				if (options[i] == GameRules.PLAYBACK_RATE) {
+					next = (i + 1) % options.length;
+				}
+			}
+			GameRules.PLAYBACK_RATE = options[next];
+			settingsPanel.rateButton.setText("PRACTICE RATE: " + GameRules.PLAYBACK_RATE + "X");
+		});
+		// PITCH button - keep the pitch at other rates (time-stretch) or let it follow the rate
+		settingsPanel.pitchButton.addActionListener(e -> {
+			GameRules.PRESERVE_PITCH = !GameRules.PRESERVE_PITCH;
+			settingsPanel.pitchButton.setText(GameRules.PRESERVE_PITCH ? "PITCH: KEEP" : "PITCH: SHIFT");
+		});
+		// VERSUS button - two players side by side in the next games (4 lanes each)
+		settingsPanel.versusButton.addActionListener(e -> {
+			Config.VERSUS_MODE = !Config.VERSUS_MODE;
+			settingsPanel.versusButton.setText(Config.VERSUS_MODE ? "VERSUS: ON" : "VERSUS: OFF");
+		});
+		// LANES button - cycles the lane count (4K .. 10K), used from the next game on
+		settingsPanel.lanesButton.addActionListener(e -> {
+			int[] options = GameRules.LANE_OPTIONS;
+			int next = 0;
+			for (int i = 0; i < options.length; i++) {
+				if (options[i] == GameRules.LANES) {
+					next = (i + 1) % options.length;
+				}
+			}
+			GameRules.LANES = options[next];
+			settingsPanel.lanesButton.setText("LANES: " + GameRules.LANES + "K");
+		});
+		// HI-SPEED button - cycles the scroll speed multiplier
+		settingsPanel.hiSpeedButton.addActionListener(e -> {
+			float[] options = GameRules.HI_SPEED_OPTIONS;
+			int next = 0;
+			for (int i = 0; i < options.length; i++) {
+				if (options[i] == GameRules.HI_SPEED) {
+					next = (i + 1) % options.length;
+				}
+			}
+			GameRules.HI_SPEED = options[next];
+			settingsPanel.hiSpeedButton.setText("HI-SPEED: " + GameRules.HI_SPEED + "X");
+		});
 		// DIFFICULTY button
 		settingsPanel.difficultyButton.addActionListener(e -> {
 			settingsPanel.messageLabel.setText(Config.getDifficulty());
 			settingsPanel.refreshTheme();
 		});
 
+		// CALIBRATE button - opens the latency calibration screen
+		settingsPanel.calibrateButton.addActionListener(e -> showCalibration());
+		// OUTPUT button - cycles default -> each output mixer -> default
+		settingsPanel.outputButton.addActionListener(e -> {
+			java.util.List<javax.sound.sampled.Mixer.Info> mixers = AudioEngine.getOutputMixers();
+			int next = 0; // index into mixers, mixers.size() means default
+			for (int i = 0; i < mixers.size(); i++) {
+				if (mixers.get(i).getName().equals(Config.OUTPUT_MIXER)) {
+					next = i + 1;
+				}
+			}
+			if (Config.OUTPUT_MIXER == null) {
+				next = 0;
+			}
+			Config.OUTPUT_MIXER = next < mixers.size() ? mixers.get(next).getName() : null;
+			AudioEngine.reconfigure(true);
+			// calibration is stored per device
+			GameRules.AUDIO_OFFSET_MS = CalibrationManager.loadOffset(currentUserOrGuest(), AudioEngine.getDeviceName());
+			settingsPanel.messageLabel.setText("Latency offset: " + GameRules.AUDIO_OFFSET_MS + " ms");
+			settingsPanel.refreshAudioStatus();
+		});
+		// BUFFER button - cycles the requested line buffer size
+		settingsPanel.bufferButton.addActionListener(e -> {
+			int[] options = Config.LINE_BUFFER_OPTIONS;
+			int next = 0;
+			for (int i = 0; i < options.length; i++) {
+				if (options[i] == Config.LINE_BUFFER_MS) {
+					next = (i + 1) % options.length;
+				}
+			}
+			Config.LINE_BUFFER_MS = options[next];
+			AudioEngine.reconfigure(false);
+			settingsPanel.refreshAudioStatus();
+		});
+
 		// -------- Exit buttons on other panels --------
 		settingsPanel.exitButton.addActionListener(e -> showPanel(settingsPanel, mainMenuPanel));
 		difficultySelectPanel.exitButton.addActionListener(e -> showPanel(difficultySelectPanel, mainMenuPanel));
 		songSelectPanel.exitButton.addActionListener(e -> showPanel(songSelectPanel, mainMenuPanel));
 		statisticsPanel.exitButton.addActionListener(e -> showPanel(statisticsPanel, mainMenuPanel));
+		statisticsPanel.replayButton.addActionListener(e -> showReplay());
 
 		// -------- Difficulty selection --------
 		ActionListener difficultyListener = e -> {
@@ -210,7 +328,7 @@ public class Application {
 	 */
 	private static void showSongSelect() {
 		songSelectPanel.setVisible(true);
-		songSelectPanel.setLocation(Config.WIDTH, 0);  // start song panel to the right of frame
+		songSelectPanel.setLocation(GameRules.WIDTH, 0);  // start song panel to the right of frame
 		// Slide difficulty panel out to left, song panel in from right
 		Timer slideTimer = new Timer(5, null);
 		slideTimer.addActionListener(new ActionListener() {
@@ -230,7 +348,7 @@ public class Application {
 				if (songX <= 0) {
 					// Finalize positions
 					songX = 0;
-					diffX = -(Config.WIDTH);
+					diffX = -(GameRules.WIDTH);
 					// Stop timer when slide is complete
 					slideTimer.stop();
 					difficultySelectPanel.setVisible(false);
@@ -279,10 +397,7 @@ public class Application {
 
 	/**
 	 * showGameScreen() <br>
-	 * creates a new GamePanel for the chosen difficulty/song
-	 * - hides menu screens and shows the game
-	 * - when the game ends and the player presses ENTER, the callback
-	 *   will update statistics and return to the main menu.
+	 * prepares the game for the chosen difficulty/song off the EDT, then shows it (showGame)
 	 */
 	private static void showGameScreen() {
 		System.out.println("Song: " + selectedSongIndex + ", Difficulty: " + selectedDifficulty);
@@ -291,8 +406,60 @@ public class Application {
 			backgroundMusic.stopAudio();
 			backgroundMusic = null;
 		}
+		String difficulty = selectedDifficulty;
+		int songIndex = selectedSongIndex;
+		prepareGame(() -> GamePanel.prepare(difficulty, songIndex), Application::showGame);
+	}
+
+	/**
+	 * prepareGame(prepare,show) <br>
+	 * private method <br>
+	 * builds a game on a worker thread and hands it to the EDT
+	 * - opening the song and chart may wait for OnsetCharter's analysis of the song, so the EDT never
+	 *   does it; "Preparing chart..." and a wait cursor are shown meanwhile, and further picks are ignored
+	 * @param prepare (Supplier) builds the game (worker thread)
+	 * @param show (Consumer) shows it (EDT)
+	 */
+	private static void prepareGame(Supplier<GamePanel.Setup> prepare, Consumer<GamePanel.Setup> show) {
+		if (preparing) {
+			return;
+		}
+		preparing = true;
+		gamePanel = null; // the last game was left, the next one is not there yet
+		songSelectPanel.songLabel.setText("Preparing chart...");
+		frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		new SwingWorker<GamePanel.Setup, Void>() {
+			@Override
+			protected GamePanel.Setup doInBackground() {
+				return prepare.get();
+			}
+
+			@Override
+			protected void done() {
+				preparing = false;
+				songSelectPanel.songLabel.setText(" ");
+				frame.setCursor(Cursor.getDefaultCursor());
+				try {
+					show.accept(get());
+				} catch (InterruptedException | ExecutionException e) {
+					System.err.println("Error preparing game: " + e.getMessage());
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * showGame(setup) <br>
+	 * private method <br>
+	 * creates a new GamePanel for the prepared game
+	 * - hides menu screens and shows the game
+	 * - when the game ends and the player presses ENTER, the callback
+	 *   will update statistics and return to the main menu.
+	 * @param setup (GamePanel.Setup) game from GamePanel.prepare
+	 */
+	private static void showGame(GamePanel.Setup setup) {
 		// create gamePanel with selected difficulty and song
-		gamePanel = new GamePanel(selectedDifficulty, selectedSongIndex, () -> {
+		gamePanel = new GamePanel(setup, () -> {
 			// restart callback runs when the player presses ENTER after GAME OVER
 			ScoreCalculate sc = gamePanel.getScorer();
 			// determine logged-in user
@@ -313,8 +480,18 @@ public class Application {
 			stats.accuracyPercent = sc.accuracy();
 			stats.maxCombo = sc.maxCombo;
 			stats.lastComboCount = sc.comboCount;
+			stats.scoreCurve = gamePanel.getScoreCurve();
 			// persist to local storage (last game + lifetime + per-song best)
 			StatsManager.saveLastStats(stats);
+			// keep the run as a replay (seed, settings and key events)
+			Replay replay = gamePanel.getRecording();
+			if (replay != null) {
+				try {
+					replay.save(Replay.fileFor(userId));
+				} catch (IOException e) {
+					System.err.println("Error saving replay for " + userId + ": " + e.getMessage());
+				}
+			}
 			// update the statistics panel for this user and context
 			statisticsPanel.updateFromStats(
 					stats.userId,
@@ -342,7 +519,9 @@ public class Application {
 			frame.revalidate();
 			frame.repaint();
 		});
-		gamePanel.setBounds(0, 0, Config.WIDTH, Config.HEIGHT);
+		// a versus game is two playfields wide
+		gamePanel.setBounds(0, 0, gamePanel.getWidth(), GameRules.HEIGHT);
+		frame.setSize(gamePanel.getWidth(), GameRules.HEIGHT);
 		frame.add(gamePanel);
 		// hide the song selector
 		songSelectPanel.setVisible(false);
@@ -351,6 +530,112 @@ public class Application {
 		gamePanel.setVisible(true);
 	}
 
+	/**
+	 * playUnattended(difficulty,songIndex) <br>
+	 * starts a game straight from the menu, without the select screens (autoplay soak, see SoakTest)
+	 * - the game is prepared off the EDT, getGamePanel() returns it once it is on screen
+	 * @param difficulty (String) difficulty label
+	 * @param songIndex (int) song index
+	 */
+	static void playUnattended(String difficulty, int songIndex) {
+		selectedDifficulty = difficulty;
+		selectedSongIndex = songIndex;
+		mainMenuPanel.setVisible(false);
+		showGameScreen();
+	}
+
+	/**
+	 * isPreparing() <br>
+	 * @return (boolean) true while a game is being prepared off the EDT
+	 */
+	static boolean isPreparing() {
+		return preparing;
+	}
+
+	/**
+	 * getGamePanel() <br>
+	 * @return (GamePanel) game on screen, null when none (or while the next one is prepared)
+	 */
+	static GamePanel getGamePanel() {
+		return gamePanel;
+	}
+
+	/**
+	 * showReplay() <br>
+	 * plays the player's newest replay back at 1x in a new GamePanel
+	 * - ENTER at the end or ESC returns to the main menu, nothing is recorded
+	 */
+	private static void showReplay() {
+		String userId = currentUserOrGuest();
+		File file = Replay.latest(userId);
+		if (file == null) {
+			System.out.println("No replay for " + userId);
+			return;
+		}
+		Replay replay;
+		try {
+			replay = Replay.load(file);
+		} catch (IOException e) {
+			System.err.println("Error reading replay " + file + ": " + e.getMessage());
+			return;
+		}
+		if (backgroundMusic != null) {
+			backgroundMusic.stopAudio();
+			backgroundMusic = null;
+		}
+		prepareGame(() -> GamePanel.prepare(replay), setup -> {
+			gamePanel = new GamePanel(setup, Application::abortGameFromEsc);
+			gamePanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+			frame.add(gamePanel);
+			statisticsPanel.setVisible(false);
+			gamePanel.requestFocusInWindow();
+			gamePanel.setVisible(true);
+		});
+	}
+
+	/**
+	 * showCalibration() <br>
+	 * creates a new CalibrationPanel on top of the settings screen
+	 * - menu music is paused so the metronome can be heard clearly
+	 * - leaving the panel returns to settings and shows the stored offset
+	 */
+	private static void showCalibration() {
+		if (backgroundMusic != null) {
+			backgroundMusic.stopAudio();
+		}
+		calibrationPanel = new CalibrationPanel(() -> {
+			calibrationPanel.setVisible(false);
+			frame.remove(calibrationPanel);
+			calibrationPanel = null;
+			if (backgroundMusic != null && GameRules.SOUND_ENABLED) {
+				backgroundMusic.startAudio();
+			}
+			settingsPanel.messageLabel.setText("Latency offset: " + GameRules.AUDIO_OFFSET_MS + " ms");
+			settingsPanel.setVisible(true);
+			settingsPanel.requestFocusInWindow();
+			frame.revalidate();
+			frame.repaint();
+		});
+		calibrationPanel.setBounds(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		frame.add(calibrationPanel, 0);
+		settingsPanel.setVisible(false);
+		calibrationPanel.setVisible(true);
+		calibrationPanel.requestFocusInWindow();
+	}
+
+	/**
+	 * currentUserOrGuest() <br>
+	 * returns the logged-in user, or "Guest" when nobody is logged in
+	 * @return (String) user ID for per-user files
+	 */
+	private static String currentUserOrGuest() {
+		String userId = Session.getCurrentUserId();
+		if (userId == null || userId.isEmpty()) {
+			userId = "Guest";
+		}
+		return userId;
+	}
+
 	/**
 	 * logoutAndShowLogin() <br>
 	 * clears the current user session
@@ -382,6 +667,8 @@ public class Application {
 			frame.remove(gamePanel);
 			gamePanel = null;
 		}
+		// back to one playfield wide after a versus game
+		frame.setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		// show main menu again
 		if (mainMenuPanel != null) {
 			mainMenuPanel.setVisible(true);
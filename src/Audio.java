@@ -1,24 +1,29 @@
-
 /*
  * Audio.java
  */
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.util.*;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Audio class <br>
  * Handles the audio files
  * - starts and stops the music
+ * - each Audio object is a playback session streamed by the shared AudioEngine
+ * - songs come from the SongPack when Music/songs.pack exists, otherwise from the WAV files
+ * - seek(ms) may be called from any thread, the render thread moves the source before its next read
+ * - setRate(rate,preservePitch) plays the song through a TimeStretch stage on the render thread
  */
 public class Audio {
-	private boolean isPlaying = false;
-	private int interval;
+	private volatile boolean isPlaying = false;
 	int songLength;
-	private Timer timer;
 	String[] song = {
 			"Music/1.wav", // Someone You Loved
 			"Music/2.wav", // Memories
@@ -26,10 +31,139 @@ public class Audio {
 			"Music/4.wav", // Canon
 			"Music/5.wav" // Moonlight Sonata
 	};
-	// preloaded audio track
-	Clip clip;
-	// audio sample
-	AudioInputStream audioInputStream;
+	// decoded (signed PCM) audio stream
+	PcmSource source;
+	// song pack shared by all sessions, opened on first use
+	private static SongPack pack;
+	private static boolean packChecked = false;
+	private static final long NO_SEEK = -1;
+	// frame to move to before the next read, NO_SEEK if none
+	private final AtomicLong pendingSeek = new AtomicLong(NO_SEEK);
+	// playback-rate stage between the source and the output line, bypassed at 1x
+	private TimeStretch stretch;
+	// set once the source is closed (guarded by this session's lock, which read() holds)
+	private boolean closed = false;
+
+	/**
+	 * WavSource class <br>
+	 * PcmSource over a WAV file decoded by AudioSystem
+	 * - stored frames have a fixed size, so a seek opens the file at the frame's byte offset in the data
+	 *   chunk (found once at load) and converts to 16 bit PCM from there, nothing before it is decoded
+	 * - a file without a RIFF data chunk is reopened and skipped from the start instead
+	 */
+	private static class WavSource implements PcmSource {
+		private final File file;
+		private final AudioFormat storedFormat; // format of the frames in the file, before toPcm
+		private final long storedFrames;
+		private final long dataOffset; // file offset of the first frame, -1 if unknown
+		private AudioInputStream in;
+
+		/**
+		 * WavSource(file) <br>
+		 * constructor
+		 * @param file (File) WAV file
+		 * @throws Exception if the file cannot be opened as audio
+		 */
+		WavSource(File file) throws Exception {
+			this.file = file;
+			AudioInputStream stored = AudioSystem.getAudioInputStream(file);
+			storedFormat = stored.getFormat();
+			storedFrames = stored.getFrameLength();
+			dataOffset = findData(file);
+			this.in = toPcm(stored);
+		}
+
+		/**
+		 * findData(file) <br>
+		 * private method <br>
+		 * walks the RIFF chunks of a WAV file to its data chunk
+		 * @param file (File) WAV file
+		 * @return (long) file offset of the data chunk contents, -1 if the file has none
+		 * @throws IOException if the file cannot be read
+		 */
+		private static long findData(File file) throws IOException {
+			try (RandomAccessFile r = new RandomAccessFile(file, "r")) {
+				byte[] id = new byte[4];
+				r.readFully(id);
+				if (!new String(id, "US-ASCII").equals("RIFF")) {
+					return -1;
+				}
+				r.skipBytes(4);
+				r.readFully(id);
+				if (!new String(id, "US-ASCII").equals("WAVE")) {
+					return -1;
+				}
+				while (r.getFilePointer() + 8 <= r.length()) {
+					r.readFully(id);
+					long size = Integer.reverseBytes(r.readInt()) & 0xFFFFFFFFL;
+					if (new String(id, "US-ASCII").equals("data")) {
+						return r.getFilePointer();
+					}
+					r.seek(r.getFilePointer() + size + (size & 1)); // chunks are padded to an even size
+				}
+				return -1;
+			}
+		}
+
+		@Override
+		public AudioFormat getFormat() {
+			return in.getFormat();
+		}
+
+		@Override
+		public long getFrameLength() {
+			return in.getFrameLength();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return in.read(b, off, len);
+		}
+
+		@Override
+		public void seek(long frame) throws IOException {
+			frame = Math.max(0, frame);
+			if (storedFrames != AudioSystem.NOT_SPECIFIED) {
+				frame = Math.min(frame, storedFrames);
+			}
+			if (dataOffset >= 0) {
+				FileInputStream stream = new FileInputStream(file);
+				AudioInputStream reopened;
+				try {
+					stream.getChannel().position(dataOffset + frame * storedFormat.getFrameSize());
+					long frames = storedFrames == AudioSystem.NOT_SPECIFIED ? AudioSystem.NOT_SPECIFIED : storedFrames - frame;
+					reopened = toPcm(new AudioInputStream(new BufferedInputStream(stream), storedFormat, frames));
+				} catch (IOException | RuntimeException e) {
+					stream.close();
+					throw e;
+				}
+				in.close();
+				in = reopened;
+				return;
+			}
+			AudioInputStream reopened;
+			try {
+				reopened = toPcm(AudioSystem.getAudioInputStream(file));
+			} catch (Exception e) {
+				throw new IOException(e.getMessage(), e);
+			}
+			in.close();
+			in = reopened;
+			long skip = frame * in.getFormat().getFrameSize();
+			while (skip > 0) {
+				long n = in.skip(skip);
+				if (n <= 0) {
+					break;
+				}
+				skip -= n;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
 
 	/**
 	 * Audio() <br>
@@ -43,21 +177,23 @@ public class Audio {
 	 * Audio(s) <br>
 	 * chooses a song based on the number passed into the method
 	 * - request songs (0 - 4) or change the number above when adding more music
+	 * - only opens the file, the output line is owned by the AudioEngine
 	 * @param s (int) desired song number
 	 */
 	public Audio(int s) {
-		timer = new Timer();
-		// try to create a song clip
+		// try to open a song stream
 		try {
-			// song file
-			audioInputStream = AudioSystem.getAudioInputStream(new File(song[s]).getAbsoluteFile());
-			// chosen piece of song to play
-			clip = AudioSystem.getClip();
-			// open the audioInputStream file as a clip
-			clip.open(audioInputStream);
+			SongPack.Track track = songPack() != null ? songPack().getTrack(s) : null;
+			if (track != null) {
+				// packed song: decoded incrementally from the mapped file
+				source = track.openDecoder();
+			} else {
+				// song file
+				source = new WavSource(new File(song[s]).getAbsoluteFile());
+			}
+			stretch = new TimeStretch(source.getFormat().getChannels());
 			// audio length for ending the game
-			songLength = Integer.parseInt(clip.getMicrosecondLength() / 1000000 + "");
-			// catch exception unable to read files
+			songLength = (int) (source.getFrameLength() / source.getFormat().getFrameRate());
 		} catch (Exception e) {
 			// catch exception unable to read files
 			System.out.println("Unable to load Audio file: " + e.getMessage());
@@ -65,53 +201,98 @@ public class Audio {
 	}
 
 	/**
-	 * startAudio() <br>
-	 * starts playing the audio clip
-	 * - palys exactly 1 time before ending.
-	 * - replace clip.loop(0) with,
-	 * - clip.loop(Clip.LOOP_CONTINUOUSLY) to loop audio
+	 * songPack() <br>
+	 * returns the shared song pack, opening it on first use
+	 * @return (SongPack) pack, or null if Music/songs.pack is missing or unreadable
 	 */
-	public void startAudio() {
-		// start the music
-		clip.start();
-		isPlaying = true;
-		//clip.loop(Clip.LOOP_CONTINUOUSLY);
-		clip.loop(0);
-		int delay = 1000;
-		int period = 1000;
-		// schedules remining audio time before returning isPlaying = false flag
-		timer.scheduleAtFixedRate(new TimerTask() {
-			@Override
-			public void run() {
-				int remaining = songLength + setInterval();
-				// countdown timer output to stdout
-				//System.out.println("Time remaining: " + remaining);
-				if (remaining <= 0) {
-					isPlaying = false;
+	static synchronized SongPack songPack() {
+		if (!packChecked) {
+			packChecked = true;
+			File file = new File(SongPack.DEFAULT_PATH);
+			if (file.exists()) {
+				try {
+					pack = SongPack.open(file);
+				} catch (IOException e) {
+					System.err.println("Unable to open song pack: " + e.getMessage());
 				}
 			}
-		}, delay, period);
+		}
+		return pack;
+	}
+
+	/**
+	 * toPcm(in) <br>
+	 * private method <br>
+	 * converts the stream to 16 bit signed PCM if it is stored in another encoding
+	 * @param in (AudioInputStream) stream as read from disk
+	 * @return (AudioInputStream) signed PCM stream
+	 */
+	private static AudioInputStream toPcm(AudioInputStream in) {
+		AudioFormat f = in.getFormat();
+		if (f.getEncoding() == AudioFormat.Encoding.PCM_SIGNED && f.getSampleSizeInBits() == 16) {
+			return in;
+		}
+		AudioFormat pcm = new AudioFormat(f.getSampleRate(), 16, f.getChannels(), true, false);
+		return AudioSystem.getAudioInputStream(pcm, in);
 	}
 
 	/**
-	 * setInterval() <br>
-	 * sets the countdown timer for 1 second ticks
-	 * @return (int) interval = interval - 1
+	 * startAudio() <br>
+	 * starts (or resumes) streaming the song through the AudioEngine
+	 * - plays exactly 1 time before ending.
 	 */
-	private int setInterval() {
-		if (interval == 1) {
-			timer.cancel();
+	public void startAudio() {
+		if (source == null) {
+			return;
 		}
-		return --interval;
+		isPlaying = true;
+		AudioEngine.play(this);
 	}
 
 	/**
 	 * stopAudio() <br>
-	 * stops playing the audio loop
+	 * stops playing the audio, startAudio() resumes it where it stopped
+	 * - the engine keeps its output line open for the next session
 	 */
 	public void stopAudio() {
-		// stop the music
-		clip.stop();
+		AudioEngine.stop(this);
+	}
+
+	/**
+	 * close() <br>
+	 * stops playing the audio for good and closes the song file
+	 * - waits for a read in progress on the render thread, later reads return nothing
+	 */
+	public void close() {
+		AudioEngine.stop(this);
+		closeSource();
+	}
+
+	/**
+	 * seek(ms) <br>
+	 * moves playback to a song time
+	 * - audio already queued in the output line is dropped, the render thread repositions the source
+	 *   before its next read
+	 * @param ms (long) song time in ms
+	 */
+	public void seek(long ms) {
+		if (source == null) {
+			return;
+		}
+		pendingSeek.set((long) (Math.max(0, ms) * (double) source.getFormat().getFrameRate() / 1000.0));
+		AudioEngine.flush(this);
+	}
+
+	/**
+	 * setRate(rate,preservePitch) <br>
+	 * changes the playback rate, takes effect at the next read of the render thread
+	 * @param rate (float) 0.5 .. 1.5, 1 = normal speed
+	 * @param preservePitch (boolean) true to keep the pitch (WSOLA), false to let it follow the rate
+	 */
+	public void setRate(float rate, boolean preservePitch) {
+		if (stretch != null) {
+			stretch.setRate(rate, preservePitch);
+		}
 	}
 
 	/**
@@ -122,4 +303,65 @@ public class Audio {
 	public boolean isPlaying() {
 		return isPlaying;
 	}
+
+	/**
+	 * getFormat() <br>
+	 * returns the PCM format of the session
+	 * @return (AudioFormat) stream format, or null if the song failed to load
+	 */
+	AudioFormat getFormat() {
+		return source == null ? null : source.getFormat();
+	}
+
+	/**
+	 * read(b,off,len) <br>
+	 * reads PCM bytes for the AudioEngine render thread
+	 * @param b (byte[]) destination buffer
+	 * @param off (int) offset into the buffer
+	 * @param len (int) maximum bytes to read
+	 * @return (int) bytes read, or -1 at the end of the song
+	 */
+	synchronized int read(byte[] b, int off, int len) {
+		if (closed) {
+			return 0; // closed while the render thread was about to read: nothing left to play
+		}
+		try {
+			long seek = pendingSeek.getAndSet(NO_SEEK);
+			if (seek != NO_SEEK) {
+				source.seek(seek);
+				stretch.reset();
+			}
+			return stretch.isBypassed() ? source.read(b, off, len) : stretch.read(source, b, off, len);
+		} catch (IOException e) {
+			System.err.println("Error reading Audio file: " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * finished() <br>
+	 * called by the AudioEngine when the song has played out
+	 * - clears the playing flag and closes the file
+	 */
+	void finished() {
+		closeSource();
+	}
+
+	/**
+	 * closeSource() <br>
+	 * private method <br>
+	 * clears the playing flag and closes the song file, once
+	 */
+	private synchronized void closeSource() {
+		isPlaying = false;
+		if (closed || source == null) {
+			return;
+		}
+		closed = true;
+		try {
+			source.close();
+		} catch (IOException e) {
+			System.err.println("Error closing Audio file: " + e.getMessage());
+		}
+	}
 }
@@ -0,0 +1,503 @@
+/*
+ * AudioEngine.java
+ */
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiChannel;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AudioEngine class <br>
+ * application-scoped audio engine
+ * - started once at launch, keeps the synthesizer and output line open and warm
+ * - hands out playback sessions (Audio objects) to menus and games
+ * - a single render thread streams the active session into the shared output line
+ * - the output mixer and line buffer size come from Config and can be changed at runtime
+ */
+public final class AudioEngine {
+	// default output format (CD quality), used to pre-open the line at launch
+	private static final AudioFormat DEFAULT_FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+	// largest number of bytes moved per render pass
+	private static final int CHUNK_BYTES = 4096;
+	// system property the default synthesizer uses to pick its output line
+	private static final String SYNTH_LINE_PROPERTY = "javax.sound.sampled.SourceDataLine";
+	// guards the session / line state shared with the render thread
+	private static final Object LOCK = new Object();
+	// shared synthesizer and its channels
+	private static Synthesizer synth;
+	private static MidiChannel[] channels;
+	private static Receiver receiver;
+	// shared output line and its current format
+	private static SourceDataLine line;
+	private static AudioFormat lineFormat;
+	private static volatile int chunkBytes = CHUNK_BYTES;
+	// underruns seen by the render thread (line ran dry while a session was playing)
+	private static volatile int underruns = 0;
+	private static volatile boolean primed = false;
+	// line the render thread writes to outside LOCK, and a line replaced meanwhile that it closes once done
+	private static SourceDataLine writing;
+	private static SourceDataLine retired;
+	// taps the PCM on the render thread for the spectrum visualizer
+	private static final SpectrumAnalyzer spectrum = new SpectrumAnalyzer();
+	// render thread and the session it is currently streaming
+	private static Thread renderThread;
+	private static Audio current;
+	private static boolean started = false;
+	private static volatile boolean running = false;
+
+	/**
+	 * AudioEngine() <br>
+	 * private constructor
+	 * - prevents instantiation
+	 */
+	private AudioEngine() {}
+
+	/**
+	 * start() <br>
+	 * opens the synthesizer and output line once
+	 * - safe to call more than once, later calls do nothing
+	 * - registers a shutdown hook that releases the native resources
+	 */
+	static synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		openSynth();
+		synchronized (LOCK) {
+			openLine(DEFAULT_FORMAT);
+		}
+		running = true;
+		renderThread = new Thread(AudioEngine::renderLoop, "audio-engine");
+		renderThread.setDaemon(true);
+		renderThread.setPriority(Thread.MAX_PRIORITY);
+		renderThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(AudioEngine::shutdown, "audio-engine-shutdown"));
+	}
+
+	/**
+	 * openSynth() <br>
+	 * private method <br>
+	 * opens the synthesizer on the configured output mixer
+	 * - the synthesizer only exposes its line through the default-line system property
+	 */
+	private static void openSynth() {
+		if (Config.OUTPUT_MIXER != null) {
+			System.setProperty(SYNTH_LINE_PROPERTY, "#" + Config.OUTPUT_MIXER);
+		} else {
+			System.clearProperty(SYNTH_LINE_PROPERTY);
+		}
+		try {
+			synth = MidiSystem.getSynthesizer();
+			synth.open();
+			channels = synth.getChannels();
+			receiver = synth.getReceiver();
+			if (channels != null && channels.length > 0) {
+				channels[0].programChange(0); // default piano, loads the instrument now instead of on first hit
+			}
+		} catch (Exception e) {
+			System.err.println("Error opening synthesizer: " + e.getMessage());
+			channels = null;
+			receiver = null;
+		}
+	}
+
+	/**
+	 * getOutputMixers() <br>
+	 * lists the mixers that can play PCM (provide a SourceDataLine)
+	 * @return (List) output mixer descriptions
+	 */
+	static List<Mixer.Info> getOutputMixers() {
+		List<Mixer.Info> out = new ArrayList<>();
+		Line.Info sourceLine = new Line.Info(SourceDataLine.class);
+		for (Mixer.Info info : AudioSystem.getMixerInfo()) {
+			if (AudioSystem.getMixer(info).isLineSupported(sourceLine)) {
+				out.add(info);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * reconfigure() <br>
+	 * applies a new Config.OUTPUT_MIXER / Config.LINE_BUFFER_MS
+	 * - reopens the output line in its current format, the playing session carries on
+	 * - reopens the synthesizer only if the mixer changed
+	 * @param mixerChanged (boolean) true if Config.OUTPUT_MIXER was changed
+	 */
+	static void reconfigure(boolean mixerChanged) {
+		start();
+		if (mixerChanged) {
+			if (channels != null) {
+				for (MidiChannel ch : channels) {
+					ch.allNotesOff();
+				}
+			}
+			if (synth != null && synth.isOpen()) {
+				synth.close();
+			}
+			openSynth();
+		}
+		synchronized (LOCK) {
+			openLine(lineFormat != null ? lineFormat : DEFAULT_FORMAT);
+			underruns = 0;
+			primed = false;
+			if (line != null && current != null) {
+				line.start();
+			}
+		}
+	}
+
+	/**
+	 * getBufferLatencyMs() <br>
+	 * returns the latency added by the output line buffer
+	 * - measured from the buffer size the line actually granted, not the one requested
+	 * @return (double) buffer length in milliseconds, or 0 if no line is open
+	 */
+	static double getBufferLatencyMs() {
+		synchronized (LOCK) {
+			if (line == null) {
+				return 0.0;
+			}
+			AudioFormat f = line.getFormat();
+			return 1000.0 * line.getBufferSize() / f.getFrameSize() / f.getFrameRate();
+		}
+	}
+
+	/**
+	 * getBufferFrames() <br>
+	 * returns the size of the output line buffer
+	 * @return (int) buffer size in frames, or 0 if no line is open
+	 */
+	static int getBufferFrames() {
+		synchronized (LOCK) {
+			return line == null ? 0 : line.getBufferSize() / line.getFormat().getFrameSize();
+		}
+	}
+
+	/**
+	 * getUnderrunCount() <br>
+	 * returns how often the line ran dry since it was opened
+	 * @return (int) underrun count
+	 */
+	static int getUnderrunCount() {
+		return underruns;
+	}
+
+	/**
+	 * getSpectrum() <br>
+	 * returns the analyzer fed with the PCM being played
+	 * - only fed while Config.SPECTRUM_ENABLED is set
+	 * @return (SpectrumAnalyzer) shared analyzer
+	 */
+	static SpectrumAnalyzer getSpectrum() {
+		return spectrum;
+	}
+
+	/**
+	 * getChannel(index) <br>
+	 * returns a channel of the shared synthesizer
+	 * @param index (int) channel number (0-15)
+	 * @return (MidiChannel) channel, or null if the synthesizer is unavailable
+	 */
+	static MidiChannel getChannel(int index) {
+		start();
+		if (channels == null || index < 0 || index >= channels.length) {
+			return null;
+		}
+		return channels[index];
+	}
+
+	/**
+	 * getReceiver() <br>
+	 * returns the input of the shared synthesizer, e.g. for a Sequencer
+	 * @return (Receiver) synthesizer receiver, or null if the synthesizer is unavailable
+	 */
+	static Receiver getReceiver() {
+		start();
+		return receiver;
+	}
+
+	/**
+	 * getMicrosecondPosition() <br>
+	 * returns the synthesizer's own clock, used to time-stamp scheduled notes
+	 * @return (long) synthesizer position in microseconds, or -1 if unsupported
+	 */
+	static long getMicrosecondPosition() {
+		start();
+		return synth == null ? -1 : synth.getMicrosecondPosition();
+	}
+
+	/**
+	 * scheduleNote(channel,note,velocity,atMicros,lengthMicros) <br>
+	 * queues a note on the synthesizer clock
+	 * - the synthesizer renders it sample-accurately, independent of Swing timers
+	 * - falls back to playing immediately if the synthesizer has no clock
+	 * @param channel (int) MIDI channel (9 = percussion)
+	 * @param note (int) MIDI note number
+	 * @param velocity (int) MIDI velocity
+	 * @param atMicros (long) synthesizer time of the note on (see getMicrosecondPosition)
+	 * @param lengthMicros (long) time until the note off
+	 */
+	static void scheduleNote(int channel, int note, int velocity, long atMicros, long lengthMicros) {
+		start();
+		if (receiver == null) {
+			return;
+		}
+		boolean timed = atMicros >= 0 && synth.getMicrosecondPosition() >= 0;
+		try {
+			receiver.send(new ShortMessage(ShortMessage.NOTE_ON, channel, note, velocity), timed ? atMicros : -1);
+			receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, channel, note, 0), timed ? atMicros + lengthMicros : -1);
+		} catch (InvalidMidiDataException e) {
+			System.err.println("Error scheduling note: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * getDeviceName() <br>
+	 * returns a name for the current output device
+	 * - used to key per-device settings such as the latency calibration
+	 * @return (String) output device name
+	 */
+	static String getDeviceName() {
+		return Config.OUTPUT_MIXER != null ? Config.OUTPUT_MIXER : "default";
+	}
+
+	/**
+	 * play(session) <br>
+	 * makes the session the one streamed to the output line
+	 * - any previously playing session is paused
+	 * - the line is only reopened when the session format differs from the current one
+	 * @param session (Audio) playback session passed in by caller
+	 */
+	static void play(Audio session) {
+		start();
+		synchronized (LOCK) {
+			if (session.getFormat() == null) {
+				return;
+			}
+			if (line == null || !session.getFormat().matches(lineFormat)) {
+				openLine(session.getFormat());
+			}
+			if (line == null) {
+				return;
+			}
+			current = session;
+			primed = false;
+			line.start();
+			LOCK.notifyAll();
+		}
+	}
+
+	/**
+	 * stop(session) <br>
+	 * stops streaming the session if it is the active one
+	 * - the line stays open for the next session
+	 * @param session (Audio) playback session passed in by caller
+	 */
+	static void stop(Audio session) {
+		synchronized (LOCK) {
+			if (current != session) {
+				return;
+			}
+			current = null;
+			if (line != null) {
+				line.stop();
+				line.flush();
+			}
+		}
+	}
+
+	/**
+	 * flush(session) <br>
+	 * drops the audio queued in the output line if the session is the active one (after a seek)
+	 * @param session (Audio) playback session passed in by caller
+	 */
+	static void flush(Audio session) {
+		synchronized (LOCK) {
+			if (current == session && line != null) {
+				line.flush();
+			}
+		}
+	}
+
+	/**
+	 * shutdown() <br>
+	 * stops the render thread and closes the line and synthesizer
+	 */
+	static void shutdown() {
+		running = false;
+		synchronized (LOCK) {
+			current = null;
+			LOCK.notifyAll();
+			if (line != null) {
+				line.stop();
+				line.flush();
+				if (line == writing) {
+					retired = line;
+				} else {
+					line.close();
+				}
+				line = null;
+			}
+		}
+		if (channels != null) {
+			for (MidiChannel ch : channels) {
+				ch.allNotesOff();
+			}
+		}
+		if (synth != null && synth.isOpen()) {
+			synth.close();
+		}
+	}
+
+	/**
+	 * openLine(format) <br>
+	 * private method <br>
+	 * (re)opens the shared output line in the given format
+	 * - uses the configured mixer and buffer size, falling back to the defaults
+	 * - must be called while holding LOCK
+	 * - a line the render thread is writing to is stopped and left to it to close
+	 * @param format (AudioFormat) desired line format
+	 */
+	private static void openLine(AudioFormat format) {
+		if (line != null) {
+			line.stop();
+			line.flush();
+			if (line == writing) {
+				retired = line;
+			} else {
+				line.close();
+			}
+			line = null;
+		}
+		try {
+			line = AudioSystem.getSourceDataLine(format, findMixer(Config.OUTPUT_MIXER));
+			if (Config.LINE_BUFFER_MS > 0) {
+				int frames = (int) (format.getFrameRate() * Config.LINE_BUFFER_MS / 1000);
+				line.open(format, frames * format.getFrameSize());
+			} else {
+				line.open(format);
+			}
+			lineFormat = format;
+			// write at most half a buffer at a time so the line never sits completely full or empty
+			int half = line.getBufferSize() / 2;
+			chunkBytes = Math.max(format.getFrameSize(), Math.min(CHUNK_BYTES, half - half % format.getFrameSize()));
+		} catch (LineUnavailableException | IllegalArgumentException e) {
+			System.err.println("Error opening audio line: " + e.getMessage());
+			line = null;
+			lineFormat = null;
+		}
+	}
+
+	/**
+	 * findMixer(name) <br>
+	 * private method <br>
+	 * looks up an output mixer by name
+	 * @param name (String) mixer name, null for the system default
+	 * @return (Mixer.Info) matching mixer, or null for the system default
+	 */
+	private static Mixer.Info findMixer(String name) {
+		if (name == null) {
+			return null;
+		}
+		for (Mixer.Info info : getOutputMixers()) {
+			if (info.getName().equals(name)) {
+				return info;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * renderLoop() <br>
+	 * private method <br>
+	 * body of the render thread
+	 * - waits for a session, then moves its PCM into the output line chunk by chunk
+	 * - the line is written outside LOCK; a chunk read for a session that was stopped or a line that was
+	 *   replaced meanwhile is dropped, and a replaced line is closed here once the write returns
+	 */
+	private static void renderLoop() {
+		byte[] buffer = new byte[CHUNK_BYTES];
+		while (running) {
+			Audio session;
+			SourceDataLine out;
+			synchronized (LOCK) {
+				while (running && current == null) {
+					try {
+						LOCK.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				session = current;
+				out = line;
+			}
+			if (session == null || out == null) {
+				continue;
+			}
+			int n = session.read(buffer, 0, Math.min(chunkBytes, buffer.length));
+			synchronized (LOCK) {
+				if (current != session || line != out) {
+					continue;
+				}
+				writing = out;
+				// an empty buffer right before a write means the device played silence
+				if (n > 0 && primed && out.available() >= out.getBufferSize()) {
+					underruns++;
+				}
+			}
+			if (n < 0) {
+				// end of the track: let the line play out and release the session
+				out.drain();
+				synchronized (LOCK) {
+					release(out);
+					if (current == session) {
+						current = null;
+						if (line != null) {
+							line.stop();
+						}
+					}
+				}
+				session.finished();
+				continue;
+			}
+			if (Config.SPECTRUM_ENABLED) {
+				spectrum.accept(buffer, 0, n, out.getFormat());
+			}
+			out.write(buffer, 0, n);
+			synchronized (LOCK) {
+				release(out);
+				if (line == out) {
+					primed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * release(out) <br>
+	 * private method <br>
+	 * ends a write of the render thread, closing the line if it was replaced meanwhile
+	 * - must be called while holding LOCK
+	 * @param out (SourceDataLine) line that was written to
+	 */
+	private static void release(SourceDataLine out) {
+		writing = null;
+		if (retired == out) {
+			retired.close();
+			retired = null;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * AutoPlayer.java
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * AutoPlayer class <br>
+ * bot that plays a live game by itself, for unattended soak tests (GameRules.AUTOPLAY, see SoakTest)
+ * - runs on the game loop just before the InputQueue is drained and queues its key events there, the
+ *   way GameInput does, stamped with the System.nanoTime() at which it meant to press; from the queue
+ *   on the game cannot tell the bot from a player (judging, recording, sound, effects, snapshots)
+ * - aims at each lane's oldest note at its ideal time (note time plus the latency offset) with a
+ *   normally distributed error of sigmaMs, 0 for a perfect player
+ * - releases a key HOLD_MS after pressing it
+ * - loop thread only, nothing is allocated per tick
+ */
+public class AutoPlayer {
+	private static final long HOLD_MS = 40;
+	private static final long NONE = Long.MIN_VALUE;
+	private final double sigmaMs;
+	private final Random rng = new Random();
+	private final long[] target; // note time the lane's next press is aimed at, NONE when not aimed
+	private final long[] pressAt; // song time of that press
+	private final long[] releaseAt; // song time of the release of a held key
+	private int downMask = 0; // lanes the bot holds
+
+	/**
+	 * AutoPlayer(lanes,sigmaMs) <br>
+	 * constructor
+	 * @param lanes (int) number of lanes
+	 * @param sigmaMs (double) standard deviation of the timing error in ms
+	 */
+	public AutoPlayer(int lanes, double sigmaMs) {
+		this.sigmaMs = sigmaMs;
+		target = new long[lanes];
+		pressAt = new long[lanes];
+		releaseAt = new long[lanes];
+		Arrays.fill(target, NONE);
+	}
+
+	/**
+	 * tick(laneNotes,laneMask,songTimeMs,offsetMs,tickNanos,rate,queue) <br>
+	 * queues the presses and releases that are due by this tick
+	 * @param laneNotes (NoteQueue[]) notes on screen, per lane
+	 * @param laneMask (int) bit n set when lane n has notes
+	 * @param songTimeMs (long) song time of this tick
+	 * @param offsetMs (long) latency offset in song ms
+	 * @param tickNanos (long) System.nanoTime() at which songTimeMs was read
+	 * @param rate (float) playback rate (song ms per real ms)
+	 * @param queue (InputQueue) the game's input queue
+	 */
+	void tick(NoteQueue[] laneNotes, int laneMask, long songTimeMs, long offsetMs, long tickNanos, float rate, InputQueue queue) {
+		for (int m = downMask; m != 0; m &= m - 1) {
+			int lane = Integer.numberOfTrailingZeros(m);
+			if (releaseAt[lane] <= songTimeMs) {
+				release(lane, releaseAt[lane], songTimeMs, tickNanos, rate, queue);
+			}
+		}
+		for (int m = laneMask; m != 0; m &= m - 1) {
+			int lane = Integer.numberOfTrailingZeros(m);
+			long note = laneNotes[lane].peek();
+			if (target[lane] != note) {
+				target[lane] = note;
+				pressAt[lane] = note + offsetMs + Math.round(rng.nextGaussian() * sigmaMs);
+			}
+			long at = pressAt[lane];
+			if (at == NONE || at > songTimeMs) {
+				continue;
+			}
+			if ((downMask & 1 << lane) != 0) {
+				release(lane, at, songTimeMs, tickNanos, rate, queue);
+			}
+			queue.offer(stamp(at, songTimeMs, tickNanos, rate), lane, true);
+			downMask |= 1 << lane;
+			releaseAt[lane] = at + HOLD_MS;
+			pressAt[lane] = NONE; // one press per note, even if it does not take the note
+		}
+	}
+
+	/**
+	 * release(lane,at,songTimeMs,tickNanos,rate,queue) <br>
+	 * private method <br>
+	 * queues the release of a held lane
+	 * @param lane (int) lane
+	 * @param at (long) song time of the release
+	 * @param songTimeMs (long) song time of this tick
+	 * @param tickNanos (long) System.nanoTime() at which songTimeMs was read
+	 * @param rate (float) playback rate
+	 * @param queue (InputQueue) the game's input queue
+	 */
+	private void release(int lane, long at, long songTimeMs, long tickNanos, float rate, InputQueue queue) {
+		queue.offer(stamp(at, songTimeMs, tickNanos, rate), lane, false);
+		downMask &= ~(1 << lane);
+	}
+
+	/**
+	 * stamp(at,songTimeMs,tickNanos,rate) <br>
+	 * private method <br>
+	 * the inverse of Judge.pressSongTime
+	 * @param at (long) song time of the event, not after songTimeMs
+	 * @param songTimeMs (long) song time of this tick
+	 * @param tickNanos (long) System.nanoTime() at which songTimeMs was read
+	 * @param rate (float) playback rate
+	 * @return (long) System.nanoTime() of the event
+	 */
+	private static long stamp(long at, long songTimeMs, long tickNanos, float rate) {
+		return tickNanos - (long) ((songTimeMs - at) * 1_000_000L / (double) rate);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * BatchRunner.java
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * BatchRunner class <br>
+ * simulates many games on the headless engine, on every core, to tune difficulty and scoring
+ * - each game is a made-up Replay (a Player turns the chart into key presses) played by a headless
+ *   GameSimulation against one shared, preloaded Chart
+ * - games run in a parallel stream (the common fork-join pool); game i always uses seed + i, so a batch
+ *   gives the same totals on any number of cores
+ * - scripted input is just another Player (e.g. one that replays a recorded run)
+ */
+public final class BatchRunner {
+
+	/**
+	 * Player interface <br>
+	 * turns a chart into the key presses of one run
+	 */
+	interface Player {
+		/**
+		 * play(chart,rng,out) <br>
+		 * adds the run's key events to out, in the order they are to be judged (by time)
+		 * @param chart (Chart) notes of the song
+		 * @param rng (Random) the run's random source
+		 * @param out (Replay) replay to fill
+		 */
+		void play(Chart chart, Random rng, Replay out);
+	}
+
+	/**
+	 * RandomPlayer class <br>
+	 * a player of some skill: hits each note with a normally distributed timing error, forgets some
+	 * notes, and now and then presses a lane with no note
+	 */
+	static final class RandomPlayer implements Player {
+		final double sigmaMs; // spread of the timing error
+		final double biasMs; // mean timing error (positive = late)
+		final double skipChance; // chance of not pressing for a note
+		final double strayChance; // chance per note of an extra press in another lane
+
+		/**
+		 * RandomPlayer(sigmaMs,biasMs,skipChance,strayChance) <br>
+		 * constructor
+		 * @param sigmaMs (double) standard deviation of the timing error in ms
+		 * @param biasMs (double) mean timing error in ms
+		 * @param skipChance (double) 0 .. 1
+		 * @param strayChance (double) 0 .. 1
+		 */
+		RandomPlayer(double sigmaMs, double biasMs, double skipChance, double strayChance) {
+			this.sigmaMs = sigmaMs;
+			this.biasMs = biasMs;
+			this.skipChance = skipChance;
+			this.strayChance = strayChance;
+		}
+
+		@Override
+		public void play(Chart chart, Random rng, Replay out) {
+			int n = chart.size();
+			// (time + 2^40) << 5 | lane << 1 | 1: sorting the packed events sorts them by time
+			long[] events = new long[2 * n];
+			int count = 0;
+			for (int i = 0; i < n; i++) {
+				long t = chart.times[i];
+				if (rng.nextDouble() >= skipChance) {
+					long press = t + Math.round(biasMs + rng.nextGaussian() * sigmaMs);
+					events[count++] = pack(press, chart.lanes[i]);
+				}
+				if (chart.laneCount > 1 && rng.nextDouble() < strayChance) {
+					int lane = (chart.lanes[i] + 1 + rng.nextInt(chart.laneCount - 1)) % chart.laneCount;
+					events[count++] = pack(t + rng.nextInt(400) - 200, lane);
+				}
+			}
+			Arrays.sort(events, 0, count);
+			for (int i = 0; i < count; i++) {
+				out.add((events[i] >> 5) - (1L << 40), (int) (events[i] >> 1) & 0xF, true);
+			}
+		}
+
+		/**
+		 * pack(time,lane) <br>
+		 * private method <br>
+		 * @param time (long) press time in ms
+		 * @param lane (int) lane
+		 * @return (long) sortable packed press
+		 */
+		private static long pack(long time, int lane) {
+			return (time + (1L << 40)) << 5 | lane << 1 | 1;
+		}
+	}
+
+	/**
+	 * Totals class <br>
+	 * results of a batch, merged from the worker threads
+	 */
+	static final class Totals {
+		long games;
+		long cleared; // games not ended by misses
+		long scoreSum;
+		int scoreMin = Integer.MAX_VALUE;
+		int scoreMax = Integer.MIN_VALUE;
+		double accuracySum;
+		long perfects;
+		long greats;
+		long goods;
+		long misses;
+		long wrongs;
+		long maxComboSum;
+
+		/**
+		 * add(sim) <br>
+		 * adds one finished game
+		 * @param sim (GameSimulation) game after playReplay()
+		 */
+		void add(GameSimulation sim) {
+			ScoreCalculate sc = sim.getScorer();
+			games++;
+			if (sc.misses < 10) {
+				cleared++;
+			}
+			scoreSum += sc.score;
+			scoreMin = Math.min(scoreMin, sc.score);
+			scoreMax = Math.max(scoreMax, sc.score);
+			accuracySum += sc.accuracy();
+			perfects += sc.perfects;
+			greats += sc.greats;
+			goods += sc.goods;
+			misses += sc.misses;
+			wrongs += sc.wrongs;
+			maxComboSum += sc.maxCombo;
+		}
+
+		/**
+		 * merge(other) <br>
+		 * adds another thread's totals
+		 * @param other (Totals) totals to add
+		 */
+		void merge(Totals other) {
+			games += other.games;
+			cleared += other.cleared;
+			scoreSum += other.scoreSum;
+			scoreMin = Math.min(scoreMin, other.scoreMin);
+			scoreMax = Math.max(scoreMax, other.scoreMax);
+			accuracySum += other.accuracySum;
+			perfects += other.perfects;
+			greats += other.greats;
+			goods += other.goods;
+			misses += other.misses;
+			wrongs += other.wrongs;
+			maxComboSum += other.maxComboSum;
+		}
+
+		@Override
+		public String toString() {
+			double g = Math.max(1, games);
+			return String.format("clear %5.1f%%  score avg %9.0f [%d .. %d]  accuracy %5.1f%%  max combo %6.1f  P/G/G/miss/wrong per game %.1f/%.1f/%.1f/%.1f/%.1f",
+					100.0 * cleared / g, scoreSum / g, scoreMin, scoreMax, accuracySum / g, maxComboSum / g,
+					perfects / g, greats / g, goods / g, misses / g, wrongs / g);
+		}
+	}
+
+	/**
+	 * play(chart,difficulty,player,seed) <br>
+	 * simulates one game
+	 * @param chart (Chart) notes of the song
+	 * @param difficulty (String) difficulty label (sets the scroll speed)
+	 * @param player (Player) input of the run
+	 * @param seed (long) seed of the run
+	 * @return (GameSimulation) the finished game
+	 */
+	static GameSimulation play(Chart chart, String difficulty, Player player, long seed) {
+		Replay replay = new Replay(seed, 0, difficulty, chart.laneCount, 1.0f, 0);
+		player.play(chart, new Random(seed), replay);
+		// the run ends once the last note can no longer be hit
+		replay.endMs = chart.getLengthMs() + GameRules.GOOD_MS + 1;
+		GameSimulation sim = new GameSimulation(replay, chart);
+		sim.playReplay();
+		return sim;
+	}
+
+	/**
+	 * run(chart,difficulty,player,games,seed) <br>
+	 * simulates a batch of games on all cores
+	 * @param chart (Chart) notes of the song
+	 * @param difficulty (String) difficulty label
+	 * @param player (Player) input of every run
+	 * @param games (int) number of games
+	 * @param seed (long) seed of the batch, game i uses seed + i
+	 * @return (Totals) results
+	 */
+	static Totals run(Chart chart, String difficulty, Player player, int games, long seed) {
+		return IntStream.range(0, games).parallel()
+				.mapToObj(i -> play(chart, difficulty, player, seed + i))
+				.collect(Totals::new, Totals::add, Totals::merge);
+	}
+
+	/**
+	 * main(args) <br>
+	 * sweeps player skill over a chart and reports the clear rate and score per skill, with games per second
+	 * - java BatchRunner [games per skill, default 20000] [song, default 0] [difficulty, default HARD]
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		int songIndex = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		String difficulty = args.length > 2 ? args[2] : "HARD";
+		GameRules.SOUND_ENABLED = false;
+		long minGapMs = GameSimulation.minGapMs(difficulty);
+		Chart chart = Chart.collect(ChartLibrary.open(songIndex, difficulty, GameRules.LANES, 120_000, minGapMs, new Random(1)), GameRules.LANES);
+		System.out.println("song " + songIndex + " " + difficulty + ": " + chart.size() + " notes, "
+				+ chart.getLengthMs() / 1000 + " s, " + Runtime.getRuntime().availableProcessors() + " cores");
+		run(chart, difficulty, new RandomPlayer(30, 0, 0.01, 0.01), Math.min(games, 2000), 0); // warm-up
+		double[] sigmas = {10, 20, 30, 45, 60, 80};
+		for (double sigma : sigmas) {
+			long t0 = System.nanoTime();
+			Totals totals = run(chart, difficulty, new RandomPlayer(sigma, 0, 0.01, 0.01), games, 1);
+			double seconds = (System.nanoTime() - t0) / 1e9;
+			System.out.printf("sigma %3.0f ms: %s  (%.0f games/s)%n", sigma, totals, games / seconds);
+		}
+	}
+}
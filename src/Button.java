@@ -1,51 +1,90 @@
-
 /*
  * Button.java
  */
 
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Color;
 import java.awt.Font;
-import java.util.*;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 
 /**
  * Button class <br>
  * provides custom drawing for in-game control buttons
  * - (the round lane indicators at the bottom)
  * - uses the theme accent color for the button highlights and provides feedback when keys are pressed
+ * - the row of idle buttons is drawn once into an image (again when the lane count or the accent
+ *   color changes), each frame then draws that image and only the pressed buttons on top
  */
 public class Button {
+	private static final Color RIM = new Color(20, 20, 20);
+	private BufferedImage idle;
+	private LaneLayout idleLayout;
+	private Color idleAccent;
+	private Font font;
+
 	/**
-	 * gameButton(g, keyPressed) <br>
-	 * draws the four lane control buttons
-	 * - (circles with numbers 1-4 at the bottom of the game screen)
+	 * gameButton(g,layout,keyDownMask) <br>
+	 * draws the lane control buttons
+	 * - (circles with the lane keys at the bottom of the game screen)
 	 * - each button lights up when its corresponding key is pressed
 	 * @param g (Graphics) context passed in from caller
-	 * @param keyPressed (boolean) array of booleans indicating which keys (1-4) are currently pressed
+	 * @param layout (LaneLayout) lane geometry
+	 * @param keyDownMask (int) bit n set while the key of lane n is pressed
 	 */
-	public void gameButton(Graphics g, boolean[] keyPressed) {
-		// Coordinates and size for the circles
-		int[] xPositions = {40, 190, 340, 490};
-		int y = 625;
-		int size = 60;
-		g.setFont(new Font("SansSerif", Font.BOLD, 34));
-		for (int i = 0; i < 4; i++) {
-			// Outer circle (dark background)
-			g.setColor(new Color(20, 20, 20));
-			g.fillOval(xPositions[i], y, size, size);
-			// Inner circle (accent color or highlight if pressed)
-			if (keyPressed[i]) {
-				g.setColor(Color.WHITE);  // flash white when pressed
-			} else {
-				g.setColor(Config.ACCENT_COLOR);
-			}
-			g.fillOval(xPositions[i] + 4, y + 4, size - 8, size - 8);
-			// Label number
-			g.setColor(Color.BLACK);
-			g.drawString(String.valueOf(i + 1), xPositions[i] + 20, y + 44);
+	public void gameButton(Graphics g, LaneLayout layout, int keyDownMask) {
+		if (idle == null || idleLayout != layout || !Config.ACCENT_COLOR.equals(idleAccent)) {
+			renderIdle(layout);
+		}
+		g.drawImage(idle, 0, layout.buttonY, null);
+		for (int m = keyDownMask & layout.allLanes; m != 0; m &= m - 1) {
+			drawButton(g, layout, Integer.numberOfTrailingZeros(m), 0, Color.WHITE); // flash white when pressed
 		}
 	}
-}
-
 
+	/**
+	 * renderIdle(layout) <br>
+	 * private method <br>
+	 * draws every button, unpressed, into the cached image
+	 * @param layout (LaneLayout) lane geometry
+	 */
+	private void renderIdle(LaneLayout layout) {
+		idleLayout = layout;
+		idleAccent = Config.ACCENT_COLOR;
+		font = new Font("SansSerif", Font.BOLD, layout.buttonFontSize);
+		idle = new BufferedImage(GameRules.WIDTH, layout.buttonSize, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = idle.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		for (int lane = 0; lane < layout.lanes; lane++) {
+			drawButton(g2, layout, lane, -layout.buttonY, idleAccent);
+		}
+		g2.dispose();
+	}
 
+	/**
+	 * drawButton(g,layout,lane,dy,fill) <br>
+	 * private method <br>
+	 * @param g (Graphics) context
+	 * @param layout (LaneLayout) lane geometry
+	 * @param lane (int) lane of the button
+	 * @param dy (int) added to the button y (to draw into the cached image)
+	 * @param fill (Color) inner circle color
+	 */
+	private void drawButton(Graphics g, LaneLayout layout, int lane, int dy, Color fill) {
+		int x = layout.buttonX[lane];
+		int y = layout.buttonY + dy;
+		int size = layout.buttonSize;
+		// Outer circle (dark background)
+		g.setColor(RIM);
+		g.fillOval(x, y, size, size);
+		// Inner circle (accent color or highlight if pressed)
+		g.setColor(fill);
+		g.fillOval(x + 4, y + 4, size - 8, size - 8);
+		// Label
+		g.setColor(Color.BLACK);
+		g.setFont(font);
+		int w = g.getFontMetrics().stringWidth(layout.labels[lane]);
+		g.drawString(layout.labels[lane], x + (size - w) / 2, y + size * 44 / 60);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * CalibrationManager.java
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * CalibrationManager class <br>
+ * stores the audio/input latency offset measured by the CalibrationPanel
+ * - one file per user, one entry per output device
+ * - offsets are in milliseconds, positive when the player hears (and hits) late
+ */
+public class CalibrationManager {
+
+	// calibration files live next to the stats files
+	private static final String STATS_DIR = "saved_stats";
+
+	/**
+	 * fileFor(userId) <br>
+	 * private method <br>
+	 * returns the calibration file of the user, creating the directory if needed
+	 * @param userId (String) user ID passed in by caller
+	 * @return (File) calibration file
+	 */
+	private static File fileFor(String userId) {
+		File dir = new File(STATS_DIR);
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		return new File(dir, "calibration_" + userId + ".properties");
+	}
+
+	/**
+	 * saveOffset(userId,device,offsetMs,stdDevMs,samples) <br>
+	 * persists a calibration result for a user and output device
+	 * @param userId (String) user ID passed in by caller
+	 * @param device (String) output device name (see AudioEngine.getDeviceName())
+	 * @param offsetMs (int) mean offset in milliseconds
+	 * @param stdDevMs (double) standard deviation of the taps in milliseconds
+	 * @param samples (int) number of taps used
+	 */
+	public static void saveOffset(String userId, String device, int offsetMs, double stdDevMs, int samples) {
+		if (userId == null || userId.isEmpty()) {
+			throw new IllegalArgumentException("userId must not be null/empty");
+		}
+		File file = fileFor(userId);
+		Properties p = load(file);
+		String prefix = encodeDevice(device) + ".";
+		p.setProperty(prefix + "offsetMs", Integer.toString(offsetMs));
+		p.setProperty(prefix + "stdDevMs", Double.toString(stdDevMs));
+		p.setProperty(prefix + "samples", Integer.toString(samples));
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			p.store(out, "Latency calibration for " + userId);
+		} catch (IOException e) {
+			System.err.println("Error saving calibration for " + userId + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * loadOffset(userId,device) <br>
+	 * returns the stored offset for a user and output device
+	 * @param userId (String) user ID passed in by caller
+	 * @param device (String) output device name
+	 * @return (int) offset in milliseconds, 0 if never calibrated
+	 */
+	public static int loadOffset(String userId, String device) {
+		if (userId == null || userId.isEmpty()) {
+			return 0;
+		}
+		File file = fileFor(userId);
+		if (!file.exists()) {
+			return 0;
+		}
+		String value = load(file).getProperty(encodeDevice(device) + ".offsetMs");
+		if (value == null) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * load(file) <br>
+	 * private method <br>
+	 * reads a properties file, returning an empty set if it is missing or unreadable
+	 * @param file (File) file to read
+	 * @return (Properties) file contents
+	 */
+	private static Properties load(File file) {
+		Properties p = new Properties();
+		if (file.exists()) {
+			try (FileInputStream in = new FileInputStream(file)) {
+				p.load(in);
+			} catch (IOException e) {
+				System.err.println("Error loading calibration: " + e.getMessage());
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * encodeDevice(device) <br>
+	 * private method <br>
+	 * turns a device name into a properties key
+	 * @param device (String) device name passed in by the caller
+	 * @return (String) key safe device name
+	 */
+	private static String encodeDevice(String device) {
+		if (device == null || device.isEmpty()) {
+			return "default";
+		}
+		return device.trim().replaceAll("[^A-Za-z0-9]+", "_");
+	}
+}
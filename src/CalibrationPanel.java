@@ -0,0 +1,274 @@
+/*
+ * CalibrationPanel.java
+ */
+
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import static java.awt.event.KeyEvent.*;
+
+/**
+ * CalibrationPanel class <br>
+ * measures the audio/input latency of the player's setup
+ * - plays a metronome on the synthesizer clock and records key press timestamps
+ * - computes the mean offset and its variance, then stores the offset per user and device
+ * - extends JPanel
+ * - implements KeyListener
+ * - implements ActionListener
+ */
+public class CalibrationPanel extends JPanel implements KeyListener, ActionListener {
+	// metronome
+	private static final int BEAT_MS = 500; // 120 BPM
+	private static final int COUNT_IN = 4; // clicks before taps are recorded
+	private static final int CLICKS = 16; // measured clicks
+	private static final long LEAD_MICROS = 400_000; // time before the first click
+	// wall-clock time (ms) of every click, count-in included
+	private final long[] clickWallMs = new long[COUNT_IN + CLICKS];
+	private int nextFallbackClick; // used only if the synthesizer has no clock
+	private boolean synthTimed;
+	// recorded tap offsets (ms)
+	private final long[] offsets = new long[CLICKS];
+	private int taps;
+	// results
+	private boolean done = false;
+	private double meanMs;
+	private double stdDevMs;
+	// repaint / end-of-run ticker
+	private final Timer ticker;
+	// returns to the settings screen
+	private final Runnable onExit;
+
+	/**
+	 * CalibrationPanel(onExit) <br>
+	 * constructor
+	 * - creates the calibration screen and starts the metronome
+	 * @param onExit (Runnable) called when the player leaves the screen
+	 */
+	public CalibrationPanel(Runnable onExit) {
+		this.onExit = onExit;
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
+		setLayout(null);
+		setOpaque(true);
+		setFocusable(true);
+		addKeyListener(this);
+		setBackground(Config.BACKGROUND_COLOR);
+		ticker = new Timer(1000 / GameRules.FPS, this);
+		startRun();
+	}
+
+	/**
+	 * startRun() <br>
+	 * private method <br>
+	 * clears previous taps and schedules a new metronome run
+	 */
+	private void startRun() {
+		taps = 0;
+		done = false;
+		long synthNow = AudioEngine.getMicrosecondPosition();
+		long wallNow = System.currentTimeMillis();
+		synthTimed = synthNow >= 0;
+		nextFallbackClick = 0;
+		for (int i = 0; i < clickWallMs.length; i++) {
+			long at = LEAD_MICROS + (long) i * BEAT_MS * 1000;
+			clickWallMs[i] = wallNow + at / 1000;
+			if (synthTimed) {
+				// accented count-in, then plain clicks
+				AudioEngine.scheduleNote(9, i < COUNT_IN ? 76 : 77, 120, synthNow + at, 50_000);
+			}
+		}
+		ticker.start();
+		repaint();
+	}
+
+	/**
+	 * finishRun() <br>
+	 * private method <br>
+	 * computes the mean and spread of the recorded taps
+	 */
+	private void finishRun() {
+		ticker.stop();
+		done = true;
+		double[] stats = meanAndVariance(offsets, taps);
+		meanMs = stats[0];
+		stdDevMs = Math.sqrt(stats[1]);
+		repaint();
+	}
+
+	/**
+	 * meanAndVariance(values,n) <br>
+	 * returns the mean and sample variance of the first n values
+	 * @param values (long[]) samples
+	 * @param n (int) number of samples to use
+	 * @return (double[]) {mean, variance}
+	 */
+	static double[] meanAndVariance(long[] values, int n) {
+		if (n == 0) {
+			return new double[] {0.0, 0.0};
+		}
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += values[i];
+		}
+		double mean = sum / n;
+		double sq = 0;
+		for (int i = 0; i < n; i++) {
+			double d = values[i] - mean;
+			sq += d * d;
+		}
+		return new double[] {mean, n > 1 ? sq / (n - 1) : 0.0};
+	}
+
+	/**
+	 * recordTap(whenMs) <br>
+	 * private method <br>
+	 * matches a tap to the nearest measured click and stores its offset
+	 * - taps more than half a beat away from any click are ignored
+	 * @param whenMs (long) key press time (KeyEvent.getWhen())
+	 */
+	private void recordTap(long whenMs) {
+		if (taps >= offsets.length) {
+			return;
+		}
+		long first = clickWallMs[COUNT_IN];
+		long index = Math.round((whenMs - first) / (double) BEAT_MS);
+		if (index < 0 || index >= CLICKS) {
+			return;
+		}
+		long offset = whenMs - clickWallMs[COUNT_IN + (int) index];
+		if (Math.abs(offset) <= BEAT_MS / 2) {
+			offsets[taps++] = offset;
+		}
+	}
+
+	/**
+	 * paintComponent(g) <br>
+	 * - paints the metronome pulse, instructions and results
+	 * @param g (Graphics) object to paint
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setColor(Config.getGameBackgroundColor());
+		g2.fillRect(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		g2.setColor(Config.ACCENT_COLOR);
+		g2.setFont(Config.UI_FONT);
+		drawCentered(g2, "CALIBRATION", 100);
+		g2.setFont(new Font("SansSerif", Font.PLAIN, 20));
+		g2.setColor(Color.WHITE);
+		if (!done) {
+			drawCentered(g2, "Listen to the clicks.", 180);
+			drawCentered(g2, "Press SPACE on every click after the first " + COUNT_IN + ".", 210);
+			// beat pulse, shrinks between clicks
+			long now = System.currentTimeMillis();
+			int beat = (int) ((now - clickWallMs[0]) / BEAT_MS);
+			if (beat >= 0 && beat < clickWallMs.length) {
+				float phase = (now - clickWallMs[beat]) / (float) BEAT_MS;
+				int r = (int) (80 * (1.0f - phase)) + 20;
+				g2.setColor(beat < COUNT_IN ? Config.ACCENT_COLOR_DARK : Config.ACCENT_COLOR);
+				g2.fillOval(GameRules.WIDTH / 2 - r, 400 - r, 2 * r, 2 * r);
+				g2.setColor(Color.WHITE);
+				String count = beat < COUNT_IN ? "Count in " + (beat + 1) : "Click " + (beat - COUNT_IN + 1) + " / " + CLICKS;
+				drawCentered(g2, count, 560);
+			}
+			drawCentered(g2, "Taps: " + taps, 600);
+		} else if (taps < 4) {
+			drawCentered(g2, "Not enough taps (" + taps + ").", 300);
+			drawCentered(g2, "R: retry   Esc: back", 360);
+		} else {
+			drawCentered(g2, String.format("Offset: %+.0f ms", meanMs), 300);
+			drawCentered(g2, String.format("Spread: ±%.1f ms over %d taps", stdDevMs, taps), 340);
+			drawCentered(g2, "Current offset: " + GameRules.AUDIO_OFFSET_MS + " ms", 380);
+			drawCentered(g2, "Enter: save   R: retry   Esc: back", 440);
+		}
+	}
+
+	/**
+	 * drawCentered(g2,text,y) <br>
+	 * private method <br>
+	 * draws a horizontally centered line of text
+	 * @param g2 (Graphics2D) graphics object passed in by caller
+	 * @param text (String) text to draw
+	 * @param y (int) baseline y position
+	 */
+	private void drawCentered(Graphics2D g2, String text, int y) {
+		int w = g2.getFontMetrics().stringWidth(text);
+		g2.drawString(text, (GameRules.WIDTH - w) / 2, y);
+	}
+
+	/**
+	 * actionPerformed(e) <br>
+	 * ticks the metronome display and ends the run after the last click
+	 * @param e (ActionEvent) the event to be processed
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		long now = System.currentTimeMillis();
+		if (!synthTimed) {
+			// no synthesizer clock: play due clicks from the ticker instead
+			while (nextFallbackClick < clickWallMs.length && clickWallMs[nextFallbackClick] <= now) {
+				AudioEngine.scheduleNote(9, nextFallbackClick < COUNT_IN ? 76 : 77, 120, -1, 50_000);
+				nextFallbackClick++;
+			}
+		}
+		if (now > clickWallMs[clickWallMs.length - 1] + BEAT_MS) {
+			finishRun();
+			return;
+		}
+		repaint();
+	}
+
+	/**
+	 * keyPressed(e) <br>
+	 * records taps while running, handles save / retry / exit afterwards
+	 * @param e (KeyEvent) the event to be processed
+	 */
+	@Override
+	public void keyPressed(KeyEvent e) {
+		int code = e.getKeyCode();
+		if (code == VK_ESCAPE) {
+			ticker.stop();
+			onExit.run();
+			return;
+		}
+		if (!done) {
+			if (code == VK_SPACE || LaneLayout.of(GameRules.LANES).laneFor(code) >= 0) {
+				recordTap(e.getWhen());
+			}
+			return;
+		}
+		if (code == VK_R) {
+			startRun();
+		} else if (code == VK_ENTER && taps >= 4) {
+			String userId = Session.getCurrentUserId();
+			if (userId == null || userId.isEmpty()) {
+				userId = "Guest";
+			}
+			GameRules.AUDIO_OFFSET_MS = (int) Math.round(meanMs);
+			CalibrationManager.saveOffset(userId, AudioEngine.getDeviceName(), GameRules.AUDIO_OFFSET_MS, stdDevMs, taps);
+			onExit.run();
+		}
+	}
+
+	/**
+	 * keyReleased(e) <br>
+	 * @param e (KeyEvent) the event to be processed
+	 */
+	@Override public void keyReleased(KeyEvent e) {}
+
+	/**
+	 * keyTyped(e) <br>
+	 * @param e (KeyEvent) the event to be processed
+	 */
+	@Override public void keyTyped(KeyEvent e) {}
+}
@@ -0,0 +1,461 @@
+/*
+ * Chart.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chart class <br>
+ * time-stamped notes of one song and difficulty
+ * - stored as parallel primitive arrays sorted by time (ms) with the lane of each note
+ * - text format: "# comment", "lanes N", "title ...", "sv timeMs multiplier" scroll changes,
+ *   then one "timeMs lane" line per note
+ * - binary format (.chartb): magic, version, title, lanes, count, then one varint per note
+ *   holding the time since the previous note and the lane (time delta &lt;&lt; 4 | lane);
+ *   version 2 appends the scroll changes (count, then time delta varint and float multiplier)
+ * - scroll changes (see ScrollMap) only move where notes are drawn, never when they are judged
+ */
+public class Chart {
+	static final String BINARY_EXTENSION = ".chartb";
+	private static final int BINARY_MAGIC = 0x4D4E5643; // "MNVC"
+	private static final int BINARY_VERSION = 2;
+	String title = "";
+	static final int DEFAULT_LANES = 4; // lanes of a chart file without a "lanes" line
+	int laneCount = DEFAULT_LANES;
+	long[] times = new long[0];
+	byte[] lanes = new byte[0];
+	ScrollMap scroll = ScrollMap.CONSTANT;
+
+	/**
+	 * Cursor class <br>
+	 * NoteSource walking the chart from a start index
+	 */
+	private class Cursor implements NoteSource {
+		private int index;
+
+		/**
+		 * Cursor(index) <br>
+		 * constructor
+		 * @param index (int) first note
+		 */
+		Cursor(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < times.length;
+		}
+
+		@Override
+		public long peekTime() {
+			return times[index];
+		}
+
+		@Override
+		public int peekLane() {
+			return lanes[index];
+		}
+
+		@Override
+		public void advance() {
+			index++;
+		}
+
+		@Override
+		public ScrollMap scrollMap() {
+			return scroll;
+		}
+	}
+
+	/**
+	 * cursor() <br>
+	 * returns a note stream over the whole chart
+	 * @return (NoteSource) stream starting at the first note
+	 */
+	NoteSource cursor() {
+		return new Cursor(0);
+	}
+
+	/**
+	 * cursorAt(timeMs) <br>
+	 * returns a note stream starting at the first note at or after a time (binary search, O(log n))
+	 * @param timeMs (long) song time in ms
+	 * @return (NoteSource) stream starting at that note
+	 */
+	NoteSource cursorAt(long timeMs) {
+		int lo = 0;
+		int hi = times.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] < timeMs) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return new Cursor(lo);
+	}
+
+	/**
+	 * collect(source,laneCount) <br>
+	 * reads a whole note stream into a chart (e.g. to seek in a streamed or generated chart)
+	 * @param source (NoteSource) finite note stream, consumed
+	 * @param laneCount (int) number of lanes
+	 * @return (Chart) chart with the same notes and scroll changes
+	 */
+	static Chart collect(NoteSource source, int laneCount) {
+		Chart chart = new Chart();
+		chart.laneCount = laneCount;
+		chart.scroll = source.scrollMap();
+		long[] t = new long[1024];
+		byte[] l = new byte[1024];
+		int n = 0;
+		while (source.hasNext()) {
+			if (n == t.length) {
+				t = Arrays.copyOf(t, n * 2);
+				l = Arrays.copyOf(l, n * 2);
+			}
+			t[n] = source.peekTime();
+			l[n++] = (byte) source.peekLane();
+			source.advance();
+		}
+		chart.setNotes(t, l, n);
+		return chart;
+	}
+
+	/**
+	 * size() <br>
+	 * @return (int) number of notes
+	 */
+	int size() {
+		return times.length;
+	}
+
+	/**
+	 * getLengthMs() <br>
+	 * @return (long) time of the last note, 0 for an empty chart
+	 */
+	long getLengthMs() {
+		return times.length == 0 ? 0 : times[times.length - 1];
+	}
+
+	/**
+	 * setNotes(t,l,n) <br>
+	 * replaces the notes with the first n entries of the given arrays, sorted by time
+	 * - lanes outside 0..laneCount-1 are folded into range
+	 * @param t (long[]) note times in ms
+	 * @param l (byte[]) note lanes
+	 * @param n (int) number of notes to use
+	 */
+	void setNotes(long[] t, byte[] l, int n) {
+		// pack time and lane into one long so a single primitive sort keeps them together
+		long[] packed = new long[n];
+		for (int i = 0; i < n; i++) {
+			int lane = Math.floorMod(l[i], laneCount);
+			packed[i] = (t[i] << 8) | lane;
+		}
+		Arrays.sort(packed);
+		times = new long[n];
+		lanes = new byte[n];
+		for (int i = 0; i < n; i++) {
+			times[i] = packed[i] >> 8;
+			lanes[i] = (byte) (packed[i] & 0xFF);
+		}
+	}
+
+	/**
+	 * load(file) <br>
+	 * reads a text chart line by line
+	 * @param file (File) chart file
+	 * @return (Chart) loaded chart
+	 * @throws IOException if the file cannot be read or a line is malformed
+	 */
+	static Chart load(File file) throws IOException {
+		Chart chart = new Chart();
+		long[] t = new long[1024];
+		byte[] l = new byte[1024];
+		int n = 0;
+		long[] svTimes = new long[16];
+		float[] svSpeeds = new float[16];
+		int sv = 0;
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			int lineNo = 0;
+			while ((line = in.readLine()) != null) {
+				lineNo++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				if (line.startsWith("lanes ")) {
+					chart.laneCount = Integer.parseInt(line.substring(6).trim());
+					continue;
+				}
+				if (line.startsWith("title ")) {
+					chart.title = line.substring(6).trim();
+					continue;
+				}
+				if (line.startsWith("sv ")) {
+					String[] parts = line.substring(3).trim().split("\\s+");
+					if (parts.length != 2) {
+						throw new IOException(file + ":" + lineNo + ": expected 'sv timeMs multiplier'");
+					}
+					if (sv == svTimes.length) {
+						svTimes = Arrays.copyOf(svTimes, sv * 2);
+						svSpeeds = Arrays.copyOf(svSpeeds, sv * 2);
+					}
+					try {
+						svTimes[sv] = Long.parseLong(parts[0]);
+						svSpeeds[sv] = Float.parseFloat(parts[1]);
+					} catch (NumberFormatException e) {
+						throw new IOException(file + ":" + lineNo + ": " + e.getMessage());
+					}
+					sv++;
+					continue;
+				}
+				int space = line.indexOf(' ');
+				if (space < 0) {
+					throw new IOException(file + ":" + lineNo + ": expected 'timeMs lane'");
+				}
+				if (n == t.length) {
+					t = Arrays.copyOf(t, n * 2);
+					l = Arrays.copyOf(l, n * 2);
+				}
+				try {
+					t[n] = Long.parseLong(line.substring(0, space));
+					l[n] = (byte) Integer.parseInt(line.substring(space + 1).trim());
+				} catch (NumberFormatException e) {
+					throw new IOException(file + ":" + lineNo + ": " + e.getMessage());
+				}
+				n++;
+			}
+		}
+		chart.setNotes(t, l, n);
+		chart.setScroll(svTimes, svSpeeds, sv);
+		return chart;
+	}
+
+	/**
+	 * setScroll(t,speeds,n) <br>
+	 * replaces the scroll changes with the first n entries of the given arrays
+	 * - entries are sorted by time first (a stable sort, so the later of two equal times wins)
+	 * @param t (long[]) change times in ms
+	 * @param speeds (float[]) scroll multipliers
+	 * @param n (int) number of changes to use
+	 */
+	void setScroll(long[] t, float[] speeds, int n) {
+		boolean sorted = true;
+		for (int i = 1; i < n && sorted; i++) {
+			sorted = t[i - 1] <= t[i];
+		}
+		if (!sorted) {
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Long.compare(t[a], t[b]));
+			long[] st = new long[n];
+			float[] sv = new float[n];
+			for (int i = 0; i < n; i++) {
+				st[i] = t[order[i]];
+				sv[i] = speeds[order[i]];
+			}
+			scroll = new ScrollMap(st, sv, n);
+		} else {
+			scroll = n == 0 ? ScrollMap.CONSTANT : new ScrollMap(t, speeds, n);
+		}
+	}
+
+	/**
+	 * save(file) <br>
+	 * writes the chart in the text format read by load(file)
+	 * @param file (File) destination
+	 * @throws IOException if the file cannot be written
+	 */
+	void save(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+			out.println("# Manuvo chart");
+			out.println("lanes " + laneCount);
+			if (!title.isEmpty()) {
+				out.println("title " + title);
+			}
+			for (int i = 0; i < scroll.size(); i++) {
+				out.println("sv " + scroll.starts[i] + " " + scroll.speeds[i]);
+			}
+			for (int i = 0; i < times.length; i++) {
+				out.println(times[i] + " " + lanes[i]);
+			}
+		}
+	}
+
+	/**
+	 * remap(newLaneCount) <br>
+	 * spreads the lanes proportionally over another lane count (e.g. a 7 key chart on 4 lanes)
+	 * - notes that land on an occupied lane at the same time are dropped
+	 * @param newLaneCount (int) lane count to play on
+	 */
+	void remap(int newLaneCount) {
+		if (newLaneCount == laneCount) {
+			return;
+		}
+		long[] t = new long[times.length];
+		byte[] l = new byte[times.length];
+		int n = 0;
+		for (int i = 0; i < times.length; i++) {
+			byte lane = (byte) (lanes[i] * newLaneCount / laneCount);
+			boolean duplicate = false;
+			for (int j = n - 1; j >= 0 && t[j] == times[i] && !duplicate; j--) {
+				duplicate = l[j] == lane;
+			}
+			if (!duplicate) {
+				t[n] = times[i];
+				l[n++] = lane;
+			}
+		}
+		laneCount = newLaneCount;
+		setNotes(t, l, n);
+	}
+
+	/**
+	 * saveBinary(file) <br>
+	 * writes the chart in the compact binary format
+	 * @param file (File) destination
+	 * @throws IOException if the file cannot be written
+	 */
+	void saveBinary(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(BINARY_MAGIC);
+			out.writeByte(BINARY_VERSION);
+			out.writeUTF(title);
+			out.writeByte(laneCount);
+			VarInt.writeUnsigned(out, times.length);
+			long previous = times.length == 0 ? 0 : times[0];
+			VarInt.writeSigned(out, previous); // first note may be before 0 (negative song offset)
+			for (int i = 0; i < times.length; i++) {
+				VarInt.writeUnsigned(out, ((times[i] - previous) << 4) | lanes[i]);
+				previous = times[i];
+			}
+			VarInt.writeUnsigned(out, scroll.size());
+			previous = scroll.size() == 0 ? 0 : scroll.starts[0];
+			VarInt.writeSigned(out, previous);
+			for (int i = 0; i < scroll.size(); i++) {
+				VarInt.writeUnsigned(out, scroll.starts[i] - previous);
+				out.writeFloat(scroll.speeds[i]);
+				previous = scroll.starts[i];
+			}
+		}
+	}
+
+	/**
+	 * loadBinary(file) <br>
+	 * reads a chart written by saveBinary
+	 * @param file (File) chart file
+	 * @return (Chart) loaded chart
+	 * @throws IOException if the file cannot be read or is not a binary chart
+	 */
+	static Chart loadBinary(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != BINARY_MAGIC) {
+				throw new IOException(file + ": not a binary chart");
+			}
+			int version = in.readUnsignedByte();
+			if (version < 1 || version > BINARY_VERSION) {
+				throw new IOException(file + ": unsupported binary chart version " + version);
+			}
+			Chart chart = new Chart();
+			chart.title = in.readUTF();
+			chart.laneCount = in.readUnsignedByte();
+			int n = (int) VarInt.readUnsigned(in);
+			long time = VarInt.readSigned(in);
+			chart.times = new long[n];
+			chart.lanes = new byte[n];
+			for (int i = 0; i < n; i++) {
+				long packed = VarInt.readUnsigned(in);
+				time += packed >>> 4;
+				chart.times[i] = time;
+				chart.lanes[i] = (byte) (packed & 0xF);
+			}
+			if (version >= 2) {
+				int sv = (int) VarInt.readUnsigned(in);
+				long[] svTimes = new long[sv];
+				float[] svSpeeds = new float[sv];
+				time = VarInt.readSigned(in);
+				for (int i = 0; i < sv; i++) {
+					time += VarInt.readUnsigned(in);
+					svTimes[i] = time;
+					svSpeeds[i] = in.readFloat();
+				}
+				chart.setScroll(svTimes, svSpeeds, sv);
+			}
+			return chart;
+		}
+	}
+
+	/**
+	 * rhythmic(bpm,lengthMs,laneCount,level,minGapMs,rng) <br>
+	 * builds a beat-based chart when no chart file exists for a song
+	 * - notes fall on subdivisions of the beat (GameRules.RHYTHMIC_SPAWN) or at jittered intervals
+	 * - a lane is never reused before minGapMs, so tiles cannot overlap
+	 * @param bpm (int) tempo
+	 * @param lengthMs (long) chart length
+	 * @param laneCount (int) number of lanes
+	 * @param level (int) difficulty 0 (very easy) .. 4 (very hard)
+	 * @param minGapMs (long) smallest time between two notes in the same lane
+	 * @param rng (Random) random source (seeded by the caller)
+	 * @return (Chart) generated chart
+	 */
+	static Chart rhythmic(int bpm, long lengthMs, int laneCount, int level, long minGapMs, Random rng) {
+		// notes per beat for VERY EASY .. VERY HARD
+		double[] density = {0.5, 1.0, 1.5, 2.0, 3.0};
+		double beatMs = 60000.0 / bpm;
+		double stepMs = beatMs / density[Math.max(0, Math.min(level, density.length - 1))];
+		Chart chart = new Chart();
+		chart.laneCount = laneCount;
+		int capacity = (int) (lengthMs / stepMs) + 1;
+		long[] t = new long[capacity];
+		byte[] l = new byte[capacity];
+		long[] lastInLane = new long[laneCount];
+		Arrays.fill(lastInLane, Long.MIN_VALUE / 2);
+		int n = 0;
+		double time = beatMs;
+		while (time <= lengthMs && n < capacity) {
+			long at = GameRules.RHYTHMIC_SPAWN ? Math.round(time) : Math.round(time + (rng.nextDouble() - 0.5) * stepMs);
+			int lane = rng.nextInt(laneCount);
+			// pick another lane if this one is still occupied (same bound as the old re-roll)
+			for (int tries = 0; tries < 10 && at - lastInLane[lane] < minGapMs; tries++) {
+				lane = rng.nextInt(laneCount);
+			}
+			if (at - lastInLane[lane] >= minGapMs) {
+				t[n] = at;
+				l[n] = (byte) lane;
+				lastInLane[lane] = at;
+				n++;
+			}
+			time += stepMs;
+		}
+		chart.setNotes(t, l, n);
+		return chart;
+	}
+}
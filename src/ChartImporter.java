@@ -0,0 +1,703 @@
+/*
+ * ChartImporter.java
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * ChartImporter class <br>
+ * bulk import of osu!mania (.osu) and StepMania (.sm) charts
+ * - scans a folder tree, parses each file line by line / measure by measure on a worker pool
+ * - writes every difficulty as a binary chart (.chartb) into the output folder, Charts/imported by default,
+ *   where ChartLibrary.listImported() lists them and ChartLibrary.install() makes one a song's chart
+ * - keeps an index (size, modification time, SHA-256 per file): unchanged files are skipped without being
+ *   opened, touched but identical files are skipped after hashing
+ * - progress is reported on the calling thread
+ */
+public class ChartImporter {
+	static final String IMPORT_DIR = ChartLibrary.CHART_DIR + "/imported";
+	private static final String INDEX_FILE = "import_index.properties";
+	private static final int MAX_KEYS = 16; // binary chart limit
+	// bump when imports carry more data, so older imports are redone (2: scroll velocity)
+	private static final String FORMAT_KEY = "@format";
+	private static final String FORMAT = "2";
+
+	/**
+	 * Listener interface <br>
+	 * receives import progress
+	 */
+	interface Listener {
+		/**
+		 * progress(done,total,file,status) <br>
+		 * called after each file
+		 * @param done (int) files handled so far
+		 * @param total (int) files found
+		 * @param file (File) file just handled
+		 * @param status (String) "imported N", "unchanged", "skipped: reason" or "failed: reason"
+		 */
+		void progress(int done, int total, File file, String status);
+	}
+
+	/**
+	 * Result class <br>
+	 * counts of one import run
+	 */
+	static class Result {
+		int imported;
+		int unchanged;
+		int skipped;
+		int failed;
+		int charts;
+
+		@Override
+		public String toString() {
+			return imported + " imported (" + charts + " charts), " + unchanged + " unchanged, "
+					+ skipped + " skipped, " + failed + " failed";
+		}
+	}
+
+	/**
+	 * Parsed class <br>
+	 * outcome of one file, built on a worker thread
+	 */
+	private static class Parsed {
+		final File file;
+		final String key;
+		String hash = "";
+		List<Chart> charts = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		String skipReason;
+		String error;
+		boolean unchanged;
+
+		/**
+		 * Parsed(file,key) <br>
+		 * constructor
+		 * @param file (File) source file
+		 * @param key (String) index key
+		 */
+		Parsed(File file, String key) {
+			this.file = file;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * importFolder(source,output,listener) <br>
+	 * imports every .osu / .sm file below a folder
+	 * @param source (File) folder to scan
+	 * @param output (File) folder receiving the .chartb files and the index
+	 * @param listener (Listener) progress listener, may be null
+	 * @return (Result) counts
+	 * @throws IOException if the folder cannot be scanned or the index cannot be written
+	 */
+	static Result importFolder(File source, File output, Listener listener) throws IOException {
+		List<File> files = new ArrayList<>();
+		try (Stream<Path> walk = Files.walk(source.toPath())) {
+			walk.filter(p -> {
+				String name = p.getFileName().toString().toLowerCase();
+				return name.endsWith(".osu") || name.endsWith(".sm");
+			}).forEach(p -> files.add(p.toFile()));
+		}
+		output.mkdirs();
+		File indexFile = new File(output, INDEX_FILE);
+		Properties index = new Properties();
+		if (indexFile.exists()) {
+			try (InputStream in = new FileInputStream(indexFile)) {
+				index.load(in);
+			}
+			if (!FORMAT.equals(index.getProperty(FORMAT_KEY))) {
+				index.clear();
+			}
+		}
+		index.setProperty(FORMAT_KEY, FORMAT);
+		Result result = new Result();
+		int total = files.size();
+		int done = 0;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "chart-import");
+			t.setDaemon(true);
+			return t;
+		});
+		CompletionService<Parsed> completion = new ExecutorCompletionService<>(pool);
+		int submitted = 0;
+		try {
+			for (File file : files) {
+				String key = source.toPath().relativize(file.toPath()).toString().replace('\\', '/');
+				// entry: size,mtime,sha256,output names separated by '|'
+				String[] entry = index.getProperty(key, "").split(",", 4);
+				if (entry.length == 4 && entry[0].equals(Long.toString(file.length()))
+						&& entry[1].equals(Long.toString(file.lastModified())) && outputsExist(output, entry[3])) {
+					result.unchanged++;
+					done++;
+					if (listener != null) {
+						listener.progress(done, total, file, "unchanged");
+					}
+					continue;
+				}
+				String knownHash = entry.length == 4 && outputsExist(output, entry[3]) ? entry[2] : null;
+				completion.submit(() -> parse(file, key, knownHash));
+				submitted++;
+			}
+			for (int i = 0; i < submitted; i++) {
+				Parsed p;
+				try {
+					p = completion.take().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Import interrupted");
+				} catch (ExecutionException e) {
+					throw new IOException(e.getCause());
+				}
+				done++;
+				String status = record(p, output, index, result);
+				if (listener != null) {
+					listener.progress(done, total, p.file, status);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		try (OutputStream out = new FileOutputStream(indexFile)) {
+			index.store(out, "Manuvo chart import index: size,mtime,sha256,outputs");
+		}
+		return result;
+	}
+
+	/**
+	 * outputsExist(output,names) <br>
+	 * private method <br>
+	 * @param output (File) output folder
+	 * @param names (String) output file names separated by '|'
+	 * @return (boolean) true if every listed chart file is still there
+	 */
+	private static boolean outputsExist(File output, String names) {
+		if (names.isEmpty()) {
+			return true;
+		}
+		for (String name : names.split("\\|")) {
+			if (!new File(output, name).exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * record(p,output,index,result) <br>
+	 * private method <br>
+	 * writes the charts of a parsed file and updates the index (calling thread only)
+	 * @param p (Parsed) worker result
+	 * @param output (File) output folder
+	 * @param index (Properties) import index
+	 * @param result (Result) counts, updated
+	 * @return (String) progress status
+	 */
+	private static String record(Parsed p, File output, Properties index, Result result) {
+		String stamp = p.file.length() + "," + p.file.lastModified() + "," + p.hash + ",";
+		if (p.error != null) {
+			result.failed++;
+			return "failed: " + p.error;
+		}
+		if (p.unchanged) {
+			// same contents with a new modification time: refresh the stamp only
+			String[] old = index.getProperty(p.key, "").split(",", 4);
+			index.setProperty(p.key, stamp + (old.length == 4 ? old[3] : ""));
+			result.unchanged++;
+			return "unchanged";
+		}
+		if (p.skipReason != null) {
+			index.setProperty(p.key, stamp);
+			result.skipped++;
+			return "skipped: " + p.skipReason;
+		}
+		StringBuilder outputs = new StringBuilder();
+		try {
+			for (int i = 0; i < p.charts.size(); i++) {
+				String name = p.names.get(i);
+				p.charts.get(i).saveBinary(new File(output, name));
+				if (outputs.length() > 0) {
+					outputs.append('|');
+				}
+				outputs.append(name);
+			}
+		} catch (IOException e) {
+			result.failed++;
+			return "failed: " + e.getMessage();
+		}
+		index.setProperty(p.key, stamp + outputs);
+		result.imported++;
+		result.charts += p.charts.size();
+		return "imported " + p.charts.size();
+	}
+
+	/**
+	 * parse(file,key,knownHash) <br>
+	 * private method <br>
+	 * worker: parses one file while hashing it
+	 * @param file (File) .osu or .sm file
+	 * @param key (String) index key
+	 * @param knownHash (String) hash of the last import, null if there is none
+	 * @return (Parsed) charts, or the reason there are none
+	 */
+	private static Parsed parse(File file, String key, String knownHash) {
+		Parsed p = new Parsed(file, key);
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			try (DigestInputStream digest = new DigestInputStream(new FileInputStream(file), md);
+				 BufferedReader in = new BufferedReader(new InputStreamReader(digest, StandardCharsets.UTF_8))) {
+				if (file.getName().toLowerCase().endsWith(".osu")) {
+					parseOsu(in, p);
+				} else {
+					parseSm(in, p);
+				}
+				// drain what the parser did not need so the hash covers the whole file
+				char[] rest = new char[8192];
+				while (in.read(rest) >= 0) {
+					// hashing only
+				}
+			}
+			p.hash = toHex(md.digest());
+			p.unchanged = p.hash.equals(knownHash);
+			String base = sanitize(file.getName().replaceFirst("\\.[^.]*$", "")) + "_" + p.hash.substring(0, 8);
+			for (int i = 0; i < p.charts.size(); i++) {
+				Chart chart = p.charts.get(i);
+				if (chart.laneCount > MAX_KEYS) {
+					chart.remap(MAX_KEYS);
+				}
+				p.names.set(i, base + "_" + sanitize(p.names.get(i)) + Chart.BINARY_EXTENSION);
+			}
+			if (p.charts.isEmpty() && p.skipReason == null) {
+				p.skipReason = "no notes";
+			}
+		} catch (IOException | RuntimeException e) {
+			p.error = e.getMessage();
+		} catch (NoSuchAlgorithmException e) {
+			p.error = "SHA-256 unavailable";
+		}
+		return p;
+	}
+
+	/**
+	 * parseOsu(in,p) <br>
+	 * private method <br>
+	 * reads an osu! beatmap; only mania maps (Mode: 3) are converted
+	 * - a note's lane is its x position split into CircleSize columns, hold notes keep their head
+	 * - inherited timing points become scroll changes (multiplier -100 / beatLength), a red
+	 *   (uninherited) timing point resets the scroll to 1
+	 * @param in (BufferedReader) file contents
+	 * @param p (Parsed) receives the chart
+	 * @throws IOException if the file cannot be read or a hit object is malformed
+	 */
+	private static void parseOsu(BufferedReader in, Parsed p) throws IOException {
+		String section = "";
+		int mode = 0;
+		int keys = 4;
+		String title = "";
+		String version = "";
+		long[] t = new long[1024];
+		byte[] l = new byte[1024];
+		int n = 0;
+		long[] svTimes = new long[64];
+		float[] svSpeeds = new float[64];
+		int sv = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("//")) {
+				continue;
+			}
+			if (line.startsWith("[")) {
+				section = line;
+				if (section.equals("[HitObjects]") && mode != 3) {
+					p.skipReason = "not an osu!mania map";
+					return;
+				}
+				continue;
+			}
+			switch (section) {
+				case "[General]":
+					if (line.startsWith("Mode:")) {
+						mode = Integer.parseInt(line.substring(5).trim());
+					}
+					break;
+				case "[Metadata]":
+					if (line.startsWith("Title:")) {
+						title = line.substring(6).trim();
+					} else if (line.startsWith("Version:")) {
+						version = line.substring(8).trim();
+					}
+					break;
+				case "[Difficulty]":
+					if (line.startsWith("CircleSize:")) {
+						keys = Math.max(1, Math.round(Float.parseFloat(line.substring(11).trim())));
+					}
+					break;
+				case "[TimingPoints]":
+					String[] point = line.split(",");
+					if (point.length < 2) {
+						throw new IOException("malformed timing point: " + line);
+					}
+					double beatLength = Double.parseDouble(point[1].trim());
+					boolean inherited = point.length > 6 ? point[6].trim().equals("0") : beatLength < 0;
+					if (sv == svTimes.length) {
+						svTimes = Arrays.copyOf(svTimes, sv * 2);
+						svSpeeds = Arrays.copyOf(svSpeeds, sv * 2);
+					}
+					svTimes[sv] = Math.round(Double.parseDouble(point[0].trim()));
+					svSpeeds[sv] = inherited && beatLength < 0 ? (float) Math.min(10.0, Math.max(0.01, -100.0 / beatLength)) : 1f;
+					sv++;
+					break;
+				case "[HitObjects]":
+					int c1 = line.indexOf(',');
+					int c2 = line.indexOf(',', c1 + 1);
+					int c3 = line.indexOf(',', c2 + 1);
+					if (c1 < 0 || c2 < 0 || c3 < 0) {
+						throw new IOException("malformed hit object: " + line);
+					}
+					int x = (int) Float.parseFloat(line.substring(0, c1));
+					if (n == t.length) {
+						t = Arrays.copyOf(t, n * 2);
+						l = Arrays.copyOf(l, n * 2);
+					}
+					t[n] = Long.parseLong(line.substring(c2 + 1, c3).trim());
+					l[n] = (byte) Math.max(0, Math.min(keys - 1, x * keys / 512));
+					n++;
+					break;
+				default:
+					break;
+			}
+		}
+		if (mode != 3) {
+			p.skipReason = "not an osu!mania map";
+			return;
+		}
+		Chart chart = new Chart();
+		chart.title = title;
+		chart.laneCount = keys;
+		chart.setNotes(t, l, n);
+		chart.setScroll(svTimes, svSpeeds, sv);
+		p.charts.add(chart);
+		p.names.add(version.isEmpty() ? "chart" : version);
+	}
+
+	/**
+	 * parseSm(in,p) <br>
+	 * private method <br>
+	 * reads a StepMania file: one chart per #NOTES section
+	 * - note data is consumed one measure at a time, rows are timed with #OFFSET, #BPMS and #STOPS
+	 * - tap, hold and roll heads (1, 2, 4) become notes, #SCROLLS become scroll changes
+	 * @param in (Reader) file contents
+	 * @param p (Parsed) receives the charts
+	 * @throws IOException if the file cannot be read or a tag is malformed
+	 */
+	private static void parseSm(Reader in, Parsed p) throws IOException {
+		SmTiming timing = new SmTiming();
+		String title = "";
+		StringBuilder measure = new StringBuilder();
+		int c;
+		while ((c = next(in)) != -1) {
+			if (c != '#') {
+				continue;
+			}
+			String tag = readUntil(in, ':').trim().toUpperCase();
+			if (!tag.equals("NOTES")) {
+				String value = readUntil(in, ';').trim();
+				switch (tag) {
+					case "TITLE" -> title = value;
+					case "OFFSET" -> timing.offsetSec = value.isEmpty() ? 0 : Double.parseDouble(value);
+					case "BPMS" -> {
+						double[][] bpms = parsePairs(value);
+						if (bpms.length > 0) {
+							timing.bpms = bpms;
+						}
+					}
+					case "STOPS", "FREEZES" -> timing.stops = parsePairs(value);
+					case "SCROLLS" -> timing.scrolls = parsePairs(value);
+					default -> { }
+				}
+				continue;
+			}
+			// #NOTES:type:author:difficulty:meter:radar:data;
+			String type = readUntil(in, ':').trim();
+			readUntil(in, ':');
+			String difficulty = readUntil(in, ':').trim();
+			String meter = readUntil(in, ':').trim();
+			readUntil(in, ':');
+			int keys = switch (type) {
+				case "dance-single" -> 4;
+				case "pump-single" -> 5;
+				case "dance-solo" -> 6;
+				case "dance-double" -> 8;
+				case "pump-double" -> 10;
+				default -> 0; // taken from the first row
+			};
+			long[] t = new long[1024];
+			byte[] l = new byte[1024];
+			int n = 0;
+			int measureIndex = 0;
+			int rowWidth = keys;
+			int lineLength = 0;
+			boolean end = false;
+			measure.setLength(0);
+			while (!end) {
+				c = next(in);
+				if (c == -1 || c == ';') {
+					end = true;
+				}
+				if (c == '\n' || c == ',' || end) {
+					if (rowWidth == 0 && lineLength > 0) {
+						rowWidth = lineLength;
+					}
+					lineLength = 0;
+				}
+				if (c == ',' || end) {
+					// a measure is complete: its rows split 4 beats evenly
+					int rows = rowWidth == 0 ? 0 : measure.length() / rowWidth;
+					for (int r = 0; r < rows; r++) {
+						double beat = measureIndex * 4.0 + 4.0 * r / rows;
+						for (int k = 0; k < rowWidth; k++) {
+							char ch = measure.charAt(r * rowWidth + k);
+							if (ch == '1' || ch == '2' || ch == '4') {
+								if (n == t.length) {
+									t = Arrays.copyOf(t, n * 2);
+									l = Arrays.copyOf(l, n * 2);
+								}
+								t[n] = Math.round(timing.beatToMs(beat));
+								l[n] = (byte) k;
+								n++;
+							}
+						}
+					}
+					measure.setLength(0);
+					measureIndex++;
+				} else if (c > ' ') {
+					measure.append((char) c);
+					lineLength++;
+				}
+			}
+			if (n > 0 && rowWidth > 0) {
+				Chart chart = new Chart();
+				chart.title = title;
+				chart.laneCount = rowWidth;
+				chart.setNotes(t, l, n);
+				long[] svTimes = new long[timing.scrolls.length];
+				float[] svSpeeds = new float[timing.scrolls.length];
+				for (int i = 0; i < svTimes.length; i++) {
+					svTimes[i] = Math.round(timing.beatToMs(timing.scrolls[i][0]));
+					svSpeeds[i] = (float) timing.scrolls[i][1];
+				}
+				chart.setScroll(svTimes, svSpeeds, svTimes.length);
+				p.charts.add(chart);
+				p.names.add(type + "_" + (difficulty.isEmpty() ? "chart" : difficulty) + "_" + meter);
+			}
+		}
+	}
+
+	/**
+	 * SmTiming class <br>
+	 * beat to time conversion of a StepMania file
+	 */
+	private static class SmTiming {
+		double offsetSec = 0;
+		double[][] bpms = {{0, 120}};
+		double[][] stops = new double[0][];
+		double[][] scrolls = new double[0][];
+
+		/**
+		 * beatToMs(beat) <br>
+		 * @param beat (double) beat position
+		 * @return (double) time in ms from the start of the music
+		 */
+		double beatToMs(double beat) {
+			double seconds = -offsetSec;
+			double bpm = bpms[0][1];
+			double at = 0;
+			for (int i = 1; i < bpms.length && bpms[i][0] < beat; i++) {
+				seconds += (bpms[i][0] - at) * 60.0 / bpm;
+				at = bpms[i][0];
+				bpm = bpms[i][1];
+			}
+			seconds += (beat - at) * 60.0 / bpm;
+			for (double[] stop : stops) {
+				if (stop[0] < beat) {
+					seconds += stop[1];
+				}
+			}
+			return seconds * 1000.0;
+		}
+	}
+
+	/**
+	 * parsePairs(value) <br>
+	 * private method <br>
+	 * parses "beat=value,beat=value" lists, sorted by beat
+	 * @param value (String) tag value
+	 * @return (double[][]) pairs, empty for an empty list
+	 * @throws IOException if an entry is malformed
+	 */
+	private static double[][] parsePairs(String value) throws IOException {
+		List<double[]> pairs = new ArrayList<>();
+		for (String part : value.split(",")) {
+			part = part.trim();
+			if (part.isEmpty()) {
+				continue;
+			}
+			int eq = part.indexOf('=');
+			if (eq < 0) {
+				throw new IOException("malformed timing entry: " + part);
+			}
+			pairs.add(new double[]{Double.parseDouble(part.substring(0, eq).trim()), Double.parseDouble(part.substring(eq + 1).trim())});
+		}
+		pairs.sort((a, b) -> Double.compare(a[0], b[0]));
+		return pairs.toArray(new double[0][]);
+	}
+
+	/**
+	 * next(in) <br>
+	 * private method <br>
+	 * reads one character, skipping // comments up to the end of the line
+	 * @param in (Reader) source
+	 * @return (int) character, or -1 at the end
+	 * @throws IOException if the read fails
+	 */
+	private static int next(Reader in) throws IOException {
+		int c = in.read();
+		if (c == '/') {
+			in.mark(1);
+			if (in.read() == '/') {
+				while (c != -1 && c != '\n') {
+					c = in.read();
+				}
+				return c;
+			}
+			in.reset();
+		}
+		return c;
+	}
+
+	/**
+	 * readUntil(in,stop) <br>
+	 * private method <br>
+	 * reads up to a delimiter (consumed, not returned) or the end of the file
+	 * @param in (Reader) source
+	 * @param stop (char) delimiter
+	 * @return (String) text read
+	 * @throws IOException if the read fails
+	 */
+	private static String readUntil(Reader in, char stop) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = next(in)) != -1 && c != stop) {
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * sanitize(name) <br>
+	 * private method <br>
+	 * @param name (String) free text
+	 * @return (String) text usable in a file name
+	 */
+	private static String sanitize(String name) {
+		String s = name.trim().replaceAll("[^A-Za-z0-9._-]+", "_");
+		return s.length() > 40 ? s.substring(0, 40) : s;
+	}
+
+	/**
+	 * toHex(bytes) <br>
+	 * private method <br>
+	 * @param bytes (byte[]) digest
+	 * @return (String) lowercase hex
+	 */
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * main(args) <br>
+	 * command line import
+	 * - java ChartImporter &lt;folder&gt; [output folder, default Charts/imported]
+	 * - java ChartImporter --list: the imported charts, numbered
+	 * - java ChartImporter --install &lt;number&gt; &lt;song 1-5&gt; &lt;difficulty&gt;: plays that chart for the song
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: java ChartImporter <folder> [output folder]");
+			System.out.println("       java ChartImporter --list");
+			System.out.println("       java ChartImporter --install <number> <song 1-5> <difficulty>");
+			return;
+		}
+		if (args[0].equals("--list") || args[0].equals("--install")) {
+			List<ChartLibrary.ImportedChart> charts = ChartLibrary.listImported();
+			if (args[0].equals("--list")) {
+				for (int i = 0; i < charts.size(); i++) {
+					System.out.printf("%4d  %s%n", i + 1, charts.get(i));
+				}
+				System.out.println(charts.size() + " imported charts in " + IMPORT_DIR);
+				return;
+			}
+			if (args.length < 4) {
+				System.out.println("Usage: java ChartImporter --install <number> <song 1-5> <difficulty>");
+				return;
+			}
+			int number = Integer.parseInt(args[1]);
+			int song = Integer.parseInt(args[2]);
+			String difficulty = String.join(" ", Arrays.copyOfRange(args, 3, args.length));
+			if (number < 1 || number > charts.size() || song < 1 || song > GameRules.ENDLESS_SONG) {
+				System.err.println("Error installing chart: no chart " + number + " or song " + song);
+				return;
+			}
+			try {
+				File file = ChartLibrary.install(charts.get(number - 1), song - 1, difficulty);
+				System.out.println(charts.get(number - 1) + " -> " + file);
+			} catch (IOException e) {
+				System.err.println("Error installing chart: " + e.getMessage());
+			}
+			return;
+		}
+		File output = new File(args.length > 1 ? args[1] : IMPORT_DIR);
+		long t0 = System.nanoTime();
+		try {
+			Result result = importFolder(new File(args[0]), output, (done, total, file, status) -> {
+				if (status.startsWith("failed") || done == total || done % 250 == 0) {
+					System.out.printf("[%d/%d] %s: %s%n", done, total, file.getName(), status);
+				}
+			});
+			System.out.printf("%s in %.2f s%n", result, (System.nanoTime() - t0) / 1e9);
+		} catch (IOException e) {
+			System.err.println("Error importing charts: " + e.getMessage());
+		}
+	}
+}
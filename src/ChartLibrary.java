@@ -0,0 +1,244 @@
+/*
+ * ChartLibrary.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ChartLibrary class <br>
+ * finds the chart to play for a song and difficulty
+ * - Charts/&lt;song&gt;_&lt;DIFFICULTY&gt;.chart, then Charts/&lt;song&gt;.chart (song numbered like Music/N.wav)
+ * - .chartb (binary) is looked for next to each .chart name
+ * - charts imported by ChartImporter (Charts/imported) are listed by listImported() and played once
+ *   install() has copied one to a song's .chartb name
+ * - then a standard MIDI file Charts/&lt;song&gt;.mid or Music/&lt;song&gt;.mid, streamed by MidiNoteSource
+ * - then a chart generated from Music/&lt;song&gt;.wav by OnsetCharter (GameRules.AUTO_CHART)
+ * - falls back to a generated rhythmic chart when no file exists
+ */
+public class ChartLibrary {
+	// directory holding the chart files
+	static final String CHART_DIR = "Charts";
+	// smallest time between two MIDI notes for VERY EASY .. VERY HARD, thins out dense files
+	private static final long[] MIDI_MIN_STEP_MS = {400, 250, 150, 90, 0};
+	// ChartImporter file names: <file>_<hash8>_<difficulty>.chartb
+	private static final Pattern IMPORTED_NAME = Pattern.compile("(.*)_[0-9a-f]{8}_(.*)\\" + Chart.BINARY_EXTENSION);
+
+	/**
+	 * ImportedChart class <br>
+	 * one chart written by ChartImporter
+	 */
+	static final class ImportedChart {
+		final File file;
+		final String title; // song title from the chart, the source file name if it has none
+		final String difficulty; // difficulty name from the source file
+		final int lanes;
+		final int notes;
+
+		/**
+		 * ImportedChart(file,title,difficulty,lanes,notes) <br>
+		 * constructor
+		 * @param file (File) .chartb file
+		 * @param title (String) song title
+		 * @param difficulty (String) difficulty name
+		 * @param lanes (int) lane count
+		 * @param notes (int) number of notes
+		 */
+		ImportedChart(File file, String title, String difficulty, int lanes, int notes) {
+			this.file = file;
+			this.title = title;
+			this.difficulty = difficulty;
+			this.lanes = lanes;
+			this.notes = notes;
+		}
+
+		@Override
+		public String toString() {
+			return title + " [" + difficulty + "] " + lanes + "K, " + notes + " notes";
+		}
+	}
+
+	/**
+	 * open(songIndex,difficulty,lanes,lengthMs,minGapMs,rng) <br>
+	 * returns the note stream for a song and difficulty
+	 * - chart files first, then a MIDI file, then the analysed song, then the generated chart
+	 * - every kind is made or remapped for the given lane count, so a game (or a replay of it) gets the
+	 *   same notes whatever GameRules.LANES is set to now
+	 * @param songIndex (int) song index (0 based, same as Audio.song[])
+	 * @param difficulty (String) difficulty label, e.g. "VERY EASY"
+	 * @param lanes (int) lane count of the game
+	 * @param lengthMs (long) song length, used by the generated fallback
+	 * @param minGapMs (long) smallest same-lane gap (MIDI and generated charts)
+	 * @param rng (Random) random source for the generated fallback
+	 * @return (NoteSource) notes to play, never null
+	 */
+	static NoteSource open(int songIndex, String difficulty, int lanes, long lengthMs, long minGapMs, Random rng) {
+		Chart chart = loadFile(songIndex, difficulty, lanes);
+		if (chart != null) {
+			return chart.cursor();
+		}
+		File midi = findMidi(songIndex);
+		if (midi != null) {
+			int level = Math.max(0, Math.min(difficultyLevel(difficulty), MIDI_MIN_STEP_MS.length - 1));
+			try {
+				return new MidiNoteSource(midi, lanes, minGapMs, MIDI_MIN_STEP_MS[level]);
+			} catch (IOException e) {
+				System.err.println("Unable to load MIDI chart " + midi + ": " + e.getMessage());
+			}
+		}
+		File wav = findWav(songIndex);
+		if (wav != null && GameRules.AUTO_CHART) {
+			try {
+				return OnsetCharter.chart(wav, difficultyLevel(difficulty), lanes, minGapMs).cursor();
+			} catch (IOException e) {
+				System.err.println("Unable to chart " + wav + ": " + e.getMessage());
+			}
+		}
+		return Chart.rhythmic(GameRules.BPM, lengthMs, lanes, difficultyLevel(difficulty), minGapMs, rng).cursor();
+	}
+
+	/**
+	 * findWav(songIndex) <br>
+	 * looks for the WAV file of a song
+	 * @param songIndex (int) song index (0 based)
+	 * @return (File) Music/N.wav, null if it does not exist
+	 */
+	static File findWav(int songIndex) {
+		File file = new File("Music", (songIndex + 1) + ".wav");
+		return file.exists() ? file : null;
+	}
+
+	/**
+	 * findMidi(songIndex) <br>
+	 * looks for a standard MIDI file for a song
+	 * @param songIndex (int) song index (0 based)
+	 * @return (File) Charts/N.mid or Music/N.mid, null if neither exists
+	 */
+	static File findMidi(int songIndex) {
+		String name = (songIndex + 1) + ".mid";
+		File[] candidates = {new File(CHART_DIR, name), new File("Music", name)};
+		for (File file : candidates) {
+			if (file.exists()) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * listImported() <br>
+	 * lists the charts ChartImporter wrote to Charts/imported, by title then difficulty
+	 * - unreadable files are reported and left out
+	 * @return (List) imported charts, empty if there are none
+	 */
+	static List<ImportedChart> listImported() {
+		List<ImportedChart> list = new ArrayList<>();
+		File[] files = new File(ChartImporter.IMPORT_DIR).listFiles((dir, name) -> name.endsWith(Chart.BINARY_EXTENSION));
+		if (files == null) {
+			return list;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			Matcher m = IMPORTED_NAME.matcher(file.getName());
+			try {
+				Chart chart = Chart.loadBinary(file);
+				String title = chart.title.isEmpty() ? (m.matches() ? m.group(1) : file.getName()) : chart.title;
+				list.add(new ImportedChart(file, title, m.matches() ? m.group(2) : "", chart.laneCount, chart.size()));
+			} catch (IOException e) {
+				System.err.println("Unable to load chart " + file + ": " + e.getMessage());
+			}
+		}
+		list.sort((a, b) -> a.title.equalsIgnoreCase(b.title) ? a.difficulty.compareToIgnoreCase(b.difficulty) : a.title.compareToIgnoreCase(b.title));
+		return list;
+	}
+
+	/**
+	 * install(chart,songIndex,difficulty) <br>
+	 * copies an imported chart to the name open() looks for, Charts/&lt;song&gt;_&lt;DIFFICULTY&gt;.chartb,
+	 * so the song plays it at that difficulty (replacing a chart installed there before)
+	 * - a text chart of the same name is looked for first and still wins
+	 * @param chart (ImportedChart) chart from listImported()
+	 * @param songIndex (int) song index (0 based)
+	 * @param difficulty (String) difficulty label, e.g. "HARD"
+	 * @return (File) the installed file
+	 * @throws IOException if the file cannot be copied
+	 */
+	static File install(ImportedChart chart, int songIndex, String difficulty) throws IOException {
+		File target = new File(CHART_DIR, (songIndex + 1) + "_" + encodeDifficulty(difficulty) + Chart.BINARY_EXTENSION);
+		Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
+		Files.copy(chart.file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return target;
+	}
+
+	/**
+	 * loadFile(songIndex,difficulty,lanes) <br>
+	 * private method <br>
+	 * reads the chart file for a song and difficulty, remapped to a lane count
+	 * @param songIndex (int) song index (0 based)
+	 * @param difficulty (String) difficulty label
+	 * @param lanes (int) lane count of the game
+	 * @return (Chart) loaded chart, null if there is no readable chart file
+	 */
+	private static Chart loadFile(int songIndex, String difficulty, int lanes) {
+		String base = Integer.toString(songIndex + 1);
+		String difficultyBase = base + "_" + encodeDifficulty(difficulty);
+		File[] candidates = {
+				new File(CHART_DIR, difficultyBase + ".chart"),
+				new File(CHART_DIR, difficultyBase + Chart.BINARY_EXTENSION),
+				new File(CHART_DIR, base + ".chart"),
+				new File(CHART_DIR, base + Chart.BINARY_EXTENSION)
+		};
+		for (File file : candidates) {
+			if (file.exists()) {
+				try {
+					Chart chart = file.getName().endsWith(Chart.BINARY_EXTENSION) ? Chart.loadBinary(file) : Chart.load(file);
+					chart.remap(lanes);
+					return chart;
+				} catch (IOException e) {
+					System.err.println("Unable to load chart " + file + ": " + e.getMessage());
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * difficultyLevel(difficulty) <br>
+	 * maps a difficulty label to 0 (very easy) .. 4 (very hard)
+	 * @param difficulty (String) difficulty label
+	 * @return (int) level, MEDIUM for unknown labels
+	 */
+	static int difficultyLevel(String difficulty) {
+		if (difficulty == null) {
+			return 2;
+		}
+		return switch (difficulty) {
+			case "VERY EASY" -> 0;
+			case "EASY" -> 1;
+			case "HARD" -> 3;
+			case "VERY HARD" -> 4;
+			default -> 2;
+		};
+	}
+
+	/**
+	 * encodeDifficulty(difficulty) <br>
+	 * changes difficulty string to an uppercase file name part
+	 * @param difficulty (String) difficulty passed in by the caller
+	 * @return (String) e.g. "VERY_EASY"
+	 */
+	static String encodeDifficulty(String difficulty) {
+		if (difficulty == null) {
+			return "UNKNOWN";
+		}
+		return difficulty.trim().replaceAll("\\s+", "_").toUpperCase();
+	}
+}
@@ -9,36 +9,34 @@ import java.awt.*;
  * Config class <br>
  * stores the configuration items used by the program
  * - generic class for commonly used configuration items
+ * - the rules and settings the game engine reads are in GameRules
  */
 public class Config {
-	// sound
-	static boolean SOUND_ENABLED = true;
-	// board
-	static final int WIDTH = 600;
-	static final int HEIGHT = 780;
+	// audio output (see AudioEngine), null mixer / 0 ms = system default
+	static String OUTPUT_MIXER = null;
+	static int LINE_BUFFER_MS = 0;
+	static final int[] LINE_BUFFER_OPTIONS = {0, 10, 20, 40, 80, 160};
+	// audio-reactive spectrum behind the lanes (see SpectrumAnalyzer)
+	static volatile boolean SPECTRUM_ENABLED = false;
+	// practice mode: no game over, seek with the arrow keys, loop a section with [ and ]
+	static boolean PRACTICE_MODE = false;
+	// two-player versus: two 4-lane playfields side by side, player 1 on 1 2 3 4 and player 2 on GameRules.VERSUS_KEYS
+	static boolean VERSUS_MODE = false;
+	// live capture (F9 in a game): frames per second kept, animated GIF instead of a PNG sequence, frame buffers in flight
+	static int CAPTURE_FPS = 30;
+	static boolean CAPTURE_GIF = false;
+	static final int CAPTURE_BUFFERS = 8;
 	// lanes
 	static final int LANE_GAP = 4;
 	static final int SIDE_PADDING = 12;
-	static final int LANES = 4;
-	static final int FPS = 120;
-	// music / rhythm
-	static final int BPM = 60; // for rhythmic spawn variants
-	static final boolean RHYTHMIC_SPAWN = true;
 	// timing and Speed
 	static final int DELAY = 15; // base timer delay (ms)
-	static final int SPEED = 4;
 	// hit window for scoring (not for foul)
 	static final int HIT_LINE_Y = 650; // y position of the hit line
 	static final int HIT_WINDOW = 200; // window for scoring: HIT_LINE +/- 50
 	// hit window for fouls
-	static final int HIT_MIN = -150; // hits accepted starting immediately
-	static final int HIT_MAX = 900; // hits accepted until tiles fall below screen
 	// tile
-	static final int TILE_WIDTH = 150;
-	static final int TILE_HEIGHT = 150;
 	static final int TILE_START_X = SIDE_PADDING; // lane 0 starts 4px from left
-	// tile Management
-	static final int BOTTOM_BOUND = 550; // perfect hit spot, buttons under here
 	// Theme index (0 = default, 1 = alt)
 	public static int THEME_INDEX = 0;
 
@@ -88,6 +86,7 @@ public class Config {
 	}
 
 
+
 	/**
 	 * getFontSize() <br>
 	 * returns the alternate title font size
@@ -28,7 +28,7 @@ public class DifficultySelectPanel extends JPanel {
 	 * - box layout, background color by Config file
 	 */
 	public DifficultySelectPanel() {
-		setSize(Config.WIDTH, Config.HEIGHT);
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 		setBackground(Config.BACKGROUND_COLOR);
 		// difficulties array
@@ -0,0 +1,284 @@
+/*
+ * EndlessNoteSource.java
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * EndlessNoteSource class <br>
+ * never-ending procedural note stream for the endless (marathon) mode
+ * - patterns (streams, trills, stairs, jumps, rests) are generated a few at a time ahead of the playhead
+ *   into a fixed-size ring buffer, so memory does not grow with the length of the session
+ * - density ramps up: the tempo and the rows per beat rise with the session time, up to a cap
+ * - no impossible jacks: a lane is never reused sooner than the jack limit (and the tile gap),
+ *   a pattern that would do so moves the note to the lane that has rested longest
+ * - the same seed, lanes, level and gap give the same notes
+ * - nothing is allocated after construction
+ */
+public class EndlessNoteSource implements NoteSource {
+	private static final int RING = 512; // notes generated ahead (power of two)
+	private static final int REFILL_BELOW = RING / 2;
+	private static final int MAX_ROWS = 16; // rows per generated pattern
+	private static final long RAMP_MS = 45_000; // one density step every 45 s
+	private static final int MAX_STEP = 12;
+	private static final long JACK_MS = 110; // fastest repeat of one lane
+	// patterns
+	private static final int STREAM = 0;
+	private static final int TRILL = 1;
+	private static final int STAIRS = 2;
+	private static final int JUMPS = 3;
+	private static final int REST = 4;
+	private final long[] times = new long[RING];
+	private final byte[] lanes = new byte[RING];
+	private long head = 0;
+	private long tail = 0;
+	private final Random rng;
+	private final int laneCount;
+	private final int level;
+	private final long minRepeatMs;
+	private final long startMs;
+	private final long[] lastInLane;
+	private double rowMs; // time of the next row
+	private int previousLane = -1;
+
+	/**
+	 * EndlessNoteSource(seed,laneCount,level,minGapMs,startMs) <br>
+	 * constructor
+	 * @param seed (long) random seed, the same seed replays the same notes
+	 * @param laneCount (int) number of lanes
+	 * @param level (int) difficulty 0 (very easy) .. 4 (very hard), the ramp starts this many steps in
+	 * @param minGapMs (long) smallest time between two notes in the same lane (tiles must not overlap)
+	 * @param startMs (long) song time of the first note
+	 */
+	public EndlessNoteSource(long seed, int laneCount, int level, long minGapMs, long startMs) {
+		this.rng = new Random(seed);
+		this.laneCount = laneCount;
+		this.level = Math.max(0, Math.min(level, 4));
+		this.minRepeatMs = Math.max(minGapMs, JACK_MS);
+		this.startMs = startMs;
+		this.lastInLane = new long[laneCount];
+		Arrays.fill(lastInLane, Long.MIN_VALUE / 2);
+		rowMs = startMs;
+		refill();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return true;
+	}
+
+	@Override
+	public long peekTime() {
+		return times[(int) (head & (RING - 1))];
+	}
+
+	@Override
+	public int peekLane() {
+		return lanes[(int) (head & (RING - 1))];
+	}
+
+	@Override
+	public void advance() {
+		head++;
+		if (tail - head < REFILL_BELOW) {
+			refill();
+		}
+	}
+
+	/**
+	 * step(timeMs) <br>
+	 * private method <br>
+	 * @param timeMs (double) song time
+	 * @return (int) density step at that time, 0 .. MAX_STEP
+	 */
+	private int step(double timeMs) {
+		return (int) Math.min(MAX_STEP, level * 2 + (long) (timeMs - startMs) / RAMP_MS);
+	}
+
+	/**
+	 * rowInterval(step) <br>
+	 * private method <br>
+	 * time between rows: 100 .. 180 BPM, 1 .. 4 rows per beat
+	 * @param step (int) density step
+	 * @return (double) ms between two rows
+	 */
+	private double rowInterval(int step) {
+		double bpm = 100 + Math.min(step, 8) * 10;
+		int rowsPerBeat = 1 + step / 4;
+		return 60000.0 / (bpm * rowsPerBeat);
+	}
+
+	/**
+	 * refill() <br>
+	 * private method <br>
+	 * generates patterns until the ring is full
+	 */
+	private void refill() {
+		while (RING - (tail - head) >= MAX_ROWS * laneCount) {
+			pattern();
+		}
+	}
+
+	/**
+	 * pattern() <br>
+	 * private method <br>
+	 * picks and writes one pattern; harder patterns become likelier as the density rises
+	 */
+	private void pattern() {
+		int step = step(rowMs);
+		int roll = rng.nextInt(10 + step);
+		int kind;
+		if (roll < 2) {
+			kind = REST;
+		} else if (roll < 7) {
+			kind = STREAM;
+		} else if (roll < 9 + step / 3) {
+			kind = STAIRS;
+		} else if (roll < 10 + step / 2) {
+			kind = TRILL;
+		} else {
+			kind = laneCount > 2 ? JUMPS : STREAM;
+		}
+		int rows = 4 + rng.nextInt(MAX_ROWS - 3);
+		double interval = rowInterval(step);
+		int a = rng.nextInt(laneCount);
+		int b = (a + 1 + rng.nextInt(Math.max(1, laneCount - 1))) % laneCount;
+		int direction = rng.nextBoolean() ? 1 : -1;
+		for (int r = 0; r < rows; r++) {
+			long at = Math.round(rowMs);
+			switch (kind) {
+				case REST:
+					// every other row only: a breather
+					if (r % 2 == 0) {
+						put(at, previousLane < 0 ? a : previousLane);
+					}
+					break;
+				case TRILL:
+					put(at, r % 2 == 0 ? a : b);
+					break;
+				case STAIRS:
+					put(at, Math.floorMod(a + direction * r, laneCount));
+					break;
+				case JUMPS:
+					put(at, a);
+					if (r % 2 == 0) {
+						put(at, b);
+					}
+					a = (a + 1 + rng.nextInt(laneCount - 1)) % laneCount;
+					b = (a + 1 + rng.nextInt(laneCount - 1)) % laneCount;
+					break;
+				default:
+					// stream: a new lane each row
+					int lane = rng.nextInt(laneCount - 1);
+					put(at, previousLane >= 0 && lane >= previousLane ? lane + 1 : lane);
+					break;
+			}
+			rowMs += interval;
+		}
+	}
+
+	/**
+	 * put(at,lane) <br>
+	 * private method <br>
+	 * writes a note, moving it to the longest-rested lane if the wanted one would be an impossible jack
+	 * - rows where every lane is still busy are left empty
+	 * @param at (long) note time in ms
+	 * @param lane (int) wanted lane
+	 */
+	private void put(long at, int lane) {
+		if (at - lastInLane[lane] < minRepeatMs) {
+			int rested = 0;
+			for (int l = 1; l < laneCount; l++) {
+				if (lastInLane[l] < lastInLane[rested]) {
+					rested = l;
+				}
+			}
+			if (at - lastInLane[rested] < minRepeatMs) {
+				return;
+			}
+			lane = rested;
+		}
+		int i = (int) (tail & (RING - 1));
+		times[i] = at;
+		lanes[i] = (byte) lane;
+		tail++;
+		lastInLane[lane] = at;
+		previousLane = lane;
+	}
+
+	/**
+	 * main(args) <br>
+	 * soak test: plays the generator for hours of song time at 120 ticks per second and checks that
+	 * memory, allocation and tick time stay flat
+	 * - also checks note order, the jack limit and that a second generator with the same seed matches
+	 * - java EndlessNoteSource [hours, default 6] [seed, default 1]
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		double hours = args.length > 0 ? Double.parseDouble(args[0]) : 6;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		int laneCount = GameRules.LANES;
+		long minGapMs = 104; // tile height at MEDIUM speed
+		EndlessNoteSource source = new EndlessNoteSource(seed, laneCount, 2, minGapMs, 2000);
+		EndlessNoteSource replay = new EndlessNoteSource(seed, laneCount, 2, minGapMs, 2000);
+		NoteQueue[] laneNotes = new NoteQueue[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			laneNotes[i] = new NoteQueue(64);
+		}
+		long[] lastInLane = new long[laneCount];
+		Arrays.fill(lastInLane, Long.MIN_VALUE / 2);
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long tickMs = 1000 / GameRules.FPS;
+		long endMs = (long) (hours * 3_600_000);
+		long reportEvery = Math.max(tickMs, endMs / 12);
+		long notes = 0;
+		long errors = 0;
+		long previousTime = Long.MIN_VALUE;
+		long[] tickNanos = new long[4096];
+		int ticks = 0;
+		System.gc();
+		long allocated0 = threads.getThreadAllocatedBytes(thread);
+		long lastReport = 0;
+		System.out.println("song time | notes     | notes/s | heap used | allocated since start | tick p50 / p99 / max (us)");
+		for (long now = 0; now <= endMs; now += tickMs) {
+			long t0 = System.nanoTime();
+			// spawn 1 s ahead, judge everything that reaches the hit line (a perfect player)
+			while (source.peekTime() <= now + 1000) {
+				long t = source.peekTime();
+				int lane = source.peekLane();
+				if (t < previousTime || t - lastInLane[lane] < minGapMs || t != replay.peekTime() || lane != replay.peekLane()) {
+					errors++;
+				}
+				previousTime = t;
+				lastInLane[lane] = t;
+				laneNotes[lane].offer(t);
+				source.advance();
+				replay.advance();
+				notes++;
+			}
+			for (NoteQueue q : laneNotes) {
+				while (!q.isEmpty() && q.peek() <= now) {
+					q.poll();
+				}
+			}
+			tickNanos[ticks++ & (tickNanos.length - 1)] = System.nanoTime() - t0;
+			if (now - lastReport >= reportEvery || now + tickMs > endMs) {
+				lastReport = now;
+				long allocated = threads.getThreadAllocatedBytes(thread) - allocated0;
+				long[] sorted = Arrays.copyOf(tickNanos, Math.min(ticks, tickNanos.length));
+				Arrays.sort(sorted);
+				System.out.printf("%6.2f h  | %9d | %7.1f | %6.1f MB | %10d bytes      | %.1f / %.1f / %.1f%n",
+						now / 3_600_000.0, notes, notes * 1000.0 / Math.max(1, now), memory.getHeapMemoryUsage().getUsed() / 1e6,
+						allocated, sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3, sorted[sorted.length - 1] / 1e3);
+				allocated0 = threads.getThreadAllocatedBytes(thread);
+			}
+		}
+		System.out.println(errors == 0 ? "OK: ordered, no jacks under " + minGapMs + " ms, replay matches"
+				: "FAILED: " + errors + " bad notes");
+	}
+}
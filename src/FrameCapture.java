@@ -0,0 +1,271 @@
+/*
+ * FrameCapture.java
+ */
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * FrameCapture class <br>
+ * live capture of the game screen (F9 in a game) to a PNG sequence or an animated GIF in saved_captures
+ * - a fixed pool of Config.CAPTURE_BUFFERS frame buffers: the GamePanel paints a frame due for
+ *   capture into a free buffer, blits it to the screen and queues it for the encoder thread, which
+ *   writes it and returns the buffer to the pool
+ * - the paint never waits: with no free buffer (the encoder fell behind) the frame is painted as
+ *   usual and counted as dropped
+ * - at most Config.CAPTURE_FPS frames per second are kept, painted frames in between are skipped
+ * - the EDT side costs a blit and two queue operations per captured frame; it is timed and reported
+ *   with the frame and drop counts when the capture stops
+ */
+public final class FrameCapture {
+	static final String CAPTURE_DIR = "saved_captures";
+	private static final String GIF_FORMAT = "javax_imageio_gif_image_1.0";
+
+	/**
+	 * Frame class <br>
+	 * a pooled frame buffer and the time it was painted
+	 */
+	private static final class Frame {
+		final BufferedImage image;
+		long nanos;
+
+		Frame(BufferedImage image) {
+			this.image = image;
+		}
+	}
+
+	private final BlockingQueue<Frame> free;
+	private final BlockingQueue<Frame> filled;
+	private final Frame end = new Frame(null); // queued by stop(), the encoder finishes on it
+	private final File target; // directory of the PNG sequence, or the GIF file
+	private final boolean gif;
+	private final long intervalNanos;
+	private final Thread encoder;
+	// EDT side, read by the encoder after it took the end frame
+	private Frame current;
+	private long lastNanos;
+	private int frames = 0;
+	private int dropped = 0;
+	private long costNanos = 0;
+	private long maxCostNanos = 0;
+	// encoder side
+	private int written = 0;
+	private int failed = 0;
+	private long previousNanos = 0;
+
+	/**
+	 * FrameCapture(width,height,target,gif) <br>
+	 * constructor
+	 * @param width (int) frame width in pixels
+	 * @param height (int) frame height in pixels
+	 * @param target (File) directory for a PNG sequence, or the GIF file
+	 * @param gif (boolean) true for an animated GIF
+	 */
+	private FrameCapture(int width, int height, File target, boolean gif) {
+		this.target = target;
+		this.gif = gif;
+		intervalNanos = 1_000_000_000L / Math.max(1, Config.CAPTURE_FPS);
+		lastNanos = System.nanoTime() - intervalNanos;
+		free = new ArrayBlockingQueue<>(Config.CAPTURE_BUFFERS);
+		filled = new ArrayBlockingQueue<>(Config.CAPTURE_BUFFERS + 1);
+		for (int i = 0; i < Config.CAPTURE_BUFFERS; i++) {
+			free.add(new Frame(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)));
+		}
+		encoder = new Thread(this::encode, "frame-capture");
+		encoder.setDaemon(true);
+		encoder.setPriority(Thread.MIN_PRIORITY); // the game loop and the EDT come first
+	}
+
+	/**
+	 * start(width,height) <br>
+	 * starts a capture in saved_captures (EDT)
+	 * @param width (int) frame width in pixels
+	 * @param height (int) frame height in pixels
+	 * @return (FrameCapture) the running capture, null if its files cannot be created
+	 */
+	static FrameCapture start(int width, int height) {
+		String name = "capture_" + System.currentTimeMillis();
+		File target = new File(CAPTURE_DIR, Config.CAPTURE_GIF ? name + ".gif" : name);
+		File dir = Config.CAPTURE_GIF ? target.getParentFile() : target;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			System.err.println("Error creating " + dir);
+			return null;
+		}
+		FrameCapture capture = new FrameCapture(width, height, target, Config.CAPTURE_GIF);
+		capture.encoder.start();
+		return capture;
+	}
+
+	/**
+	 * begin(paintNanos) <br>
+	 * takes a free buffer for a frame that is due for capture (EDT, before painting it)
+	 * @param paintNanos (long) System.nanoTime() at the start of the paint
+	 * @return (BufferedImage) buffer to paint the frame into, null to paint as usual (not due, or dropped)
+	 */
+	BufferedImage begin(long paintNanos) {
+		if (paintNanos - lastNanos < intervalNanos) {
+			return null;
+		}
+		lastNanos = paintNanos;
+		current = free.poll();
+		if (current == null) {
+			dropped++;
+			return null;
+		}
+		current.nanos = paintNanos;
+		return current.image;
+	}
+
+	/**
+	 * submit(costStartNanos) <br>
+	 * queues the frame painted into the buffer from begin() for the encoder (EDT, after the blit)
+	 * @param costStartNanos (long) System.nanoTime() when the capture work on top of the paint started
+	 */
+	void submit(long costStartNanos) {
+		filled.add(current); // never full: it has room for every buffer and the end frame
+		current = null;
+		frames++;
+		long cost = System.nanoTime() - costStartNanos;
+		costNanos += cost;
+		maxCostNanos = Math.max(maxCostNanos, cost);
+	}
+
+	/**
+	 * stop() <br>
+	 * stops capturing (EDT); the encoder writes the queued frames, reports and ends
+	 */
+	void stop() {
+		filled.add(end);
+	}
+
+	/**
+	 * frames() <br>
+	 * @return (int) frames captured so far
+	 */
+	int frames() {
+		return frames;
+	}
+
+	/**
+	 * dropped() <br>
+	 * @return (int) frames dropped so far because no buffer was free
+	 */
+	int dropped() {
+		return dropped;
+	}
+
+	/**
+	 * encode() <br>
+	 * private method <br>
+	 * the encoder thread: writes queued frames until stop(), then reports
+	 */
+	private void encode() {
+		ImageWriter gifWriter = null;
+		ImageOutputStream gifOut = null;
+		try {
+			if (gif) {
+				gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+				gifOut = ImageIO.createImageOutputStream(target);
+				gifWriter.setOutput(gifOut);
+				gifWriter.prepareWriteSequence(null);
+			}
+			for (Frame f = filled.take(); f != end; f = filled.take()) {
+				try {
+					if (gif) {
+						writeGifFrame(gifWriter, f);
+					} else {
+						ImageIO.write(f.image, "png", new File(target, String.format("frame_%06d.png", written)));
+					}
+					written++;
+				} catch (IOException e) {
+					failed++;
+					System.err.println("Error writing capture frame: " + e.getMessage());
+				} finally {
+					free.add(f);
+				}
+			}
+			if (gif) {
+				gifWriter.endWriteSequence();
+			}
+		} catch (IOException e) {
+			System.err.println("Error writing capture " + target + ": " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (gifWriter != null) {
+				gifWriter.dispose();
+			}
+			if (gifOut != null) {
+				try {
+					gifOut.close();
+				} catch (IOException e) {
+					System.err.println("Error closing capture " + target + ": " + e.getMessage());
+				}
+			}
+		}
+		System.out.printf("capture: %d frames written to %s, %d dropped (%.1f%%), %d failed, capture cost avg %.3f ms, max %.3f ms%n",
+				written, target, dropped, 100.0 * dropped / Math.max(1, frames + dropped), failed,
+				costNanos / 1e6 / Math.max(1, frames), maxCostNanos / 1e6);
+	}
+
+	/**
+	 * writeGifFrame(writer,f) <br>
+	 * private method <br>
+	 * adds a frame to the animated GIF, shown for the time since the previous frame (the first one loops the GIF)
+	 * @param writer (ImageWriter) GIF writer in a write sequence
+	 * @param f (Frame) frame to add
+	 * @throws IOException if the frame cannot be written
+	 */
+	private void writeGifFrame(ImageWriter writer, Frame f) throws IOException {
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		IIOMetadata meta = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(f.image), param);
+		IIOMetadataNode root = (IIOMetadataNode) meta.getAsTree(GIF_FORMAT);
+		long delayCs = previousNanos == 0 ? intervalNanos / 10_000_000L : (f.nanos - previousNanos) / 10_000_000L;
+		previousNanos = f.nanos;
+		IIOMetadataNode control = child(root, "GraphicControlExtension");
+		control.setAttribute("disposalMethod", "none");
+		control.setAttribute("userInputFlag", "FALSE");
+		control.setAttribute("transparentColorFlag", "FALSE");
+		control.setAttribute("transparentColorIndex", "0");
+		control.setAttribute("delayTime", Long.toString(Math.max(1, Math.min(65535, delayCs))));
+		if (written == 0) {
+			// NETSCAPE2.0 extension: loop forever
+			IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+			loop.setAttribute("applicationID", "NETSCAPE");
+			loop.setAttribute("authenticationCode", "2.0");
+			loop.setUserObject(new byte[] {1, 0, 0});
+			child(root, "ApplicationExtensions").appendChild(loop);
+		}
+		meta.setFromTree(GIF_FORMAT, root);
+		writer.writeToSequence(new IIOImage(f.image, null, meta), param);
+	}
+
+	/**
+	 * child(parent,name) <br>
+	 * private method <br>
+	 * @param parent (IIOMetadataNode) metadata node
+	 * @param name (String) child node name
+	 * @return (IIOMetadataNode) the first child of that name, added if there is none
+	 */
+	private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+		for (int i = 0; i < parent.getLength(); i++) {
+			if (parent.item(i).getNodeName().equals(name)) {
+				return (IIOMetadataNode) parent.item(i);
+			}
+		}
+		IIOMetadataNode node = new IIOMetadataNode(name);
+		parent.appendChild(node);
+		return node;
+	}
+}
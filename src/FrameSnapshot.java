@@ -0,0 +1,80 @@
+/*
+ * FrameSnapshot.java
+ */
+
+/**
+ * FrameSnapshot class <br>
+ * everything the renderer needs to draw one frame, copied out of the GameSimulation
+ * - written only by the simulation thread, then handed over through a SnapshotExchange
+ * - all arrays are allocated once, filling a snapshot does not allocate
+ */
+public class FrameSnapshot {
+	static final int MAX_EXPLOSIONS = 32;
+	static final int MAX_PARTICLES = 64;
+	// song clock
+	long songTimeMs;
+	long tickNanos; // System.nanoTime() at which songTimeMs was read
+	float pxPerMs;
+	float rate = 1.0f; // song ms per real ms
+	ScrollMap scroll = ScrollMap.CONSTANT; // immutable, shared with the simulation
+	// notes on screen
+	final NoteQueue[] laneNotes;
+	// game state
+	boolean play;
+	boolean over;
+	boolean finished;
+	boolean paused;
+	boolean practice;
+	boolean replay;
+	long loopStartMs = -1;
+	long loopEndMs = -1;
+	boolean foul;
+	int foulColumn = -1;
+	int foulY;
+	int laneMask; // bit n set when lane n has notes
+	int keyDownMask; // bit n set while the key of lane n is held
+	// HUD
+	int score;
+	int combo;
+	int misses;
+	double accuracy = 100.0;
+	float comboPulse = 1.0f;
+	boolean goldMode;
+	boolean whiteMode;
+	boolean ghost; // racing a personal best
+	int ghostDelta; // score minus the personal best's score at this song time
+	// effects
+	int explosionCount;
+	final int[] explosionX = new int[MAX_EXPLOSIONS];
+	final int[] explosionY = new int[MAX_EXPLOSIONS];
+	final int[] explosionR = new int[MAX_EXPLOSIONS];
+	int particleCount;
+	final int[] particleX = new int[MAX_PARTICLES];
+	final int[] particleY = new int[MAX_PARTICLES];
+	final int[] particleW = new int[MAX_PARTICLES];
+	final int[] particleH = new int[MAX_PARTICLES];
+	final float[] particleAlpha = new float[MAX_PARTICLES];
+
+	/**
+	 * FrameSnapshot(lanes,laneCapacity) <br>
+	 * constructor
+	 * @param lanes (int) number of lanes
+	 * @param laneCapacity (int) starting capacity of the simulation's lane queues (a copy grows with them)
+	 */
+	public FrameSnapshot(int lanes, int laneCapacity) {
+		laneNotes = new NoteQueue[lanes];
+		for (int i = 0; i < lanes; i++) {
+			laneNotes[i] = new NoteQueue(laneCapacity);
+		}
+	}
+
+	/**
+	 * renderTime() <br>
+	 * song time to draw the notes at
+	 * - extrapolated from the last tick while playing, so scrolling stays smooth between ticks
+	 * @return (long) song time in ms
+	 */
+	long renderTime() {
+		return play ? songTimeMs + (long) ((System.nanoTime() - tickNanos) * (double) rate / 1_000_000L) : songTimeMs;
+	}
+}
@@ -0,0 +1,291 @@
+/*
+ * GameEventBus.java
+ */
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * GameEventBus class <br>
+ * ring of gameplay events (hits, misses, wrong keys) from the game loop to any number of consumers
+ * - one publisher, the game loop: it fills a preallocated slot in place and publishes its sequence
+ *   number, nothing is allocated per event
+ * - each consumer keeps its own sequence and reads at its own pace, on the game loop (poll() once a
+ *   tick, e.g. the hit effects) or on a thread of its own (start(), e.g. the lane sounds, telemetry)
+ * - the publisher never waits for a consumer: a consumer that falls a whole ring behind skips the
+ *   overwritten events and counts them as lost (getLost())
+ * - a slot is stamped busy while it is rewritten and with its sequence once written, so a consumer
+ *   copies an event and checks the stamp again to know the copy was not torn
+ */
+public class GameEventBus {
+	static final int HIT = 1;
+	static final int MISS = 2;
+	static final int WRONG = 3;
+	private static final long BUSY = -1;
+	// an idle consumer thread spins, then yields, then sleeps from MIN_IDLE_NANOS doubling up to MAX_IDLE_NANOS
+	private static final int IDLE_SPINS = 100;
+	private static final int IDLE_YIELDS = 10;
+	private static final long MIN_IDLE_NANOS = 50_000;
+	private static final long MAX_IDLE_NANOS = 10_000_000;
+
+	/**
+	 * Event class <br>
+	 * one slot of the ring, reused for every event that lands in it
+	 * - handlers get a copy owned by their consumer, valid until the handler returns
+	 */
+	static final class Event {
+		volatile long sequence = BUSY; // sequence of the event in the slot, BUSY while it is written
+		int type; // HIT, MISS or WRONG
+		int lane;
+		int grade; // Judge grade of a hit
+		long songTimeMs; // song time of the key press or of the miss
+		long noteTimeMs; // time of the note that was hit or missed (none for WRONG)
+		int score; // scorer state once the event counted
+		int combo;
+		int misses;
+		boolean whiteMode; // combo mode before the event counted (the effects of a hit)
+		boolean goldMode;
+
+		/**
+		 * copyFrom(e) <br>
+		 * @param e (Event) event to copy the fields of (not the sequence)
+		 */
+		void copyFrom(Event e) {
+			type = e.type;
+			lane = e.lane;
+			grade = e.grade;
+			songTimeMs = e.songTimeMs;
+			noteTimeMs = e.noteTimeMs;
+			score = e.score;
+			combo = e.combo;
+			misses = e.misses;
+			whiteMode = e.whiteMode;
+			goldMode = e.goldMode;
+		}
+	}
+
+	/**
+	 * Handler interface <br>
+	 * receives the events of a consumer, oldest first
+	 */
+	interface Handler {
+		/**
+		 * onEvent(e) <br>
+		 * @param e (Event) the event, do not keep it after returning
+		 */
+		void onEvent(Event e);
+	}
+
+	/**
+	 * Consumer class <br>
+	 * a reader of the ring with its own sequence, used by one thread
+	 */
+	final class Consumer {
+		private final Event copy = new Event();
+		private long next; // sequence of the next event to read
+		private volatile long lost = 0;
+		private volatile boolean running = true;
+		private Thread thread;
+
+		/**
+		 * Consumer() <br>
+		 * constructor, reads the events published from now on
+		 */
+		private Consumer() {
+			next = cursor.get() + 1;
+		}
+
+		/**
+		 * poll(handler) <br>
+		 * hands every event published since the last poll to the handler
+		 * @param handler (Handler) event handler
+		 * @return (int) number of events handled
+		 */
+		int poll(Handler handler) {
+			int handled = 0;
+			for (long c = cursor.get(); next <= c; ) {
+				if (c - next >= slots.length) {
+					// a whole ring behind: the oldest events were overwritten
+					lost += c - slots.length + 1 - next;
+					next = c - slots.length + 1;
+				}
+				Event slot = slots[(int) (next & mask)];
+				if (slot.sequence == next) {
+					copy.copyFrom(slot);
+					VarHandle.acquireFence(); // the copy is read before the stamp is checked again
+					if (slot.sequence == next) {
+						next++;
+						handler.onEvent(copy);
+						handled++;
+						continue;
+					}
+				}
+				// overwritten while being read
+				lost++;
+				next++;
+				c = cursor.get();
+			}
+			return handled;
+		}
+
+		/**
+		 * getLost() <br>
+		 * @return (long) events this consumer skipped because it fell a whole ring behind
+		 */
+		long getLost() {
+			return lost;
+		}
+	}
+
+	private final Event[] slots;
+	private final int mask;
+	// last published sequence (only the publisher advances it)
+	private final AtomicLong cursor = new AtomicLong(-1);
+	private long claimed = -1; // publisher only
+	private final ArrayList<Consumer> threads = new ArrayList<>();
+
+	/**
+	 * GameEventBus(capacity) <br>
+	 * constructor
+	 * @param capacity (int) number of slots, rounded up to a power of two
+	 */
+	public GameEventBus(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		slots = new Event[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Event();
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * claim() <br>
+	 * publisher side: the slot of the next event, to fill in and publish()
+	 * @return (Event) slot stamped busy
+	 */
+	Event claim() {
+		Event e = slots[(int) (++claimed & mask)];
+		e.sequence = BUSY;
+		VarHandle.releaseFence(); // the busy stamp is seen before any field is rewritten
+		return e;
+	}
+
+	/**
+	 * publish(e) <br>
+	 * publisher side: makes the claimed event visible to the consumers
+	 * @param e (Event) slot from claim()
+	 */
+	void publish(Event e) {
+		e.sequence = claimed; // volatile store: the fields are visible before the stamp
+		cursor.lazySet(claimed);
+	}
+
+	/**
+	 * subscribe() <br>
+	 * adds a consumer that polls on its caller's thread
+	 * @return (Consumer) consumer of the events published from now on
+	 */
+	Consumer subscribe() {
+		return new Consumer();
+	}
+
+	/**
+	 * start(name,handler) <br>
+	 * adds a consumer running on a daemon thread of its own until close()
+	 * - the thread backs off while there is nothing to read (idle()), the publisher never wakes it: an
+	 *   event after a long pause is read at most MAX_IDLE_NANOS late
+	 * @param name (String) thread name
+	 * @param handler (Handler) event handler, called on that thread
+	 * @return (Consumer) the consumer
+	 */
+	synchronized Consumer start(String name, Handler handler) {
+		Consumer consumer = new Consumer();
+		consumer.thread = new Thread(() -> {
+			int idle = 0;
+			while (consumer.running) {
+				if (consumer.poll(handler) > 0) {
+					idle = 0;
+				} else {
+					idle(idle++);
+				}
+			}
+			consumer.poll(handler); // what was published before close()
+		}, name);
+		consumer.thread.setDaemon(true);
+		consumer.thread.start();
+		threads.add(consumer);
+		return consumer;
+	}
+
+	/**
+	 * idle(round) <br>
+	 * private method <br>
+	 * waits before the next poll of a consumer thread that found nothing to read
+	 * @param round (int) polls in a row that found nothing, before this one
+	 */
+	private static void idle(int round) {
+		if (round < IDLE_SPINS) {
+			Thread.onSpinWait();
+		} else if (round < IDLE_SPINS + IDLE_YIELDS) {
+			Thread.yield();
+		} else {
+			int doublings = Math.min(round - IDLE_SPINS - IDLE_YIELDS, 16);
+			LockSupport.parkNanos(Math.min(MAX_IDLE_NANOS, MIN_IDLE_NANOS << doublings));
+		}
+	}
+
+	/**
+	 * close() <br>
+	 * stops the consumer threads once they have read what was published
+	 */
+	synchronized void close() {
+		for (Consumer consumer : threads) {
+			consumer.running = false;
+			LockSupport.unpark(consumer.thread);
+			try {
+				consumer.thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		threads.clear();
+	}
+
+	/**
+	 * main(args) <br>
+	 * publishes events as fast as one thread can, to a consumer that keeps up and one that is made slow,
+	 * and reports the publish cost and what each consumer read and lost
+	 * - java GameEventBus [events, default 20000000] [slow consumer us per event, default 50]
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		long count = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+		long slowNanos = (args.length > 1 ? Long.parseLong(args[1]) : 50) * 1000;
+		GameEventBus bus = new GameEventBus(1024);
+		AtomicLong fastRead = new AtomicLong();
+		AtomicLong slowRead = new AtomicLong();
+		Consumer fast = bus.start("fast", e -> fastRead.lazySet(fastRead.get() + 1));
+		Consumer slow = bus.start("slow", e -> {
+			slowRead.lazySet(slowRead.get() + 1);
+			LockSupport.parkNanos(slowNanos);
+		});
+		long t0 = System.nanoTime();
+		for (long i = 0; i < count; i++) {
+			Event e = bus.claim();
+			e.type = HIT;
+			e.lane = (int) (i & 3);
+			e.songTimeMs = i;
+			bus.publish(e);
+			if ((i & 0xFFFF) == 0) {
+				Thread.yield(); // let the consumers run on a single core
+			}
+		}
+		double ns = (System.nanoTime() - t0) / (double) count;
+		bus.close();
+		System.out.printf("%d events, %.1f ns per publish%n", count, ns);
+		System.out.printf("fast consumer: %d read, %d lost%n", fastRead.get(), fast.getLost());
+		System.out.printf("slow consumer: %d read, %d lost%n", slowRead.get(), slow.getLost());
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * GameInput.java
+ */
+
+import java.awt.KeyEventDispatcher;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.KeyEvent;
+
+/**
+ * GameInput class <br>
+ * captures lane keys as early as AWT allows and queues them for the game loop
+ * - a KeyEventDispatcher sees the event before any KeyListener
+ * - each event is time-stamped on the System.nanoTime() clock, corrected by its age on the wall clock
+ *   (KeyEvent.getWhen()), so the press time does not depend on when it is handled
+ * - key repeat is filtered: a press is only queued when the lane key was up
+ * - events are not consumed, KeyListeners still see them
+ * - the lane keys come from the game's LaneLayout
+ */
+public class GameInput implements KeyEventDispatcher {
+	// input older than this is treated as a stale timestamp (e.g. a clock change), not as latency
+	private static final long MAX_INPUT_AGE_MS = 250;
+	private final InputQueue queue;
+	private final LaneLayout layout;
+	private int downMask = 0; // lanes whose key is held (dispatch thread only)
+
+	/**
+	 * GameInput(queue,layout) <br>
+	 * constructor
+	 * @param queue (InputQueue) ring the events are written to
+	 * @param layout (LaneLayout) lanes and their keys
+	 */
+	public GameInput(InputQueue queue, LaneLayout layout) {
+		this.queue = queue;
+		this.layout = layout;
+	}
+
+	/**
+	 * install() <br>
+	 * starts capturing key events
+	 */
+	public void install() {
+		KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(this);
+	}
+
+	/**
+	 * uninstall() <br>
+	 * stops capturing key events
+	 */
+	public void uninstall() {
+		KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(this);
+		downMask = 0;
+	}
+
+	/**
+	 * dispatchKeyEvent(e) <br>
+	 * queues lane key presses and releases
+	 * - inherited from KeyEventDispatcher
+	 * @param e (KeyEvent) the event to be processed
+	 * @return (boolean) always false, the event is dispatched as usual
+	 */
+	@Override
+	public boolean dispatchKeyEvent(KeyEvent e) {
+		int id = e.getID();
+		if (id != KeyEvent.KEY_PRESSED && id != KeyEvent.KEY_RELEASED) {
+			return false;
+		}
+		int lane = layout.laneFor(e.getKeyCode());
+		if (lane < 0) {
+			return false;
+		}
+		int bit = 1 << lane;
+		boolean down = id == KeyEvent.KEY_PRESSED;
+		if (down == ((downMask & bit) != 0)) {
+			return false; // key repeat, or a release we never saw pressed
+		}
+		downMask ^= bit;
+		queue.offer(stamp(e), lane, down);
+		return false;
+	}
+
+	/**
+	 * stamp(e) <br>
+	 * private method <br>
+	 * @param e (KeyEvent) key event
+	 * @return (long) System.nanoTime() at which the key was pressed or released
+	 */
+	private static long stamp(KeyEvent e) {
+		long now = System.nanoTime();
+		long age = System.currentTimeMillis() - e.getWhen();
+		if (age < 0 || age > MAX_INPUT_AGE_MS) {
+			age = 0;
+		}
+		return now - age * 1_000_000L;
+	}
+}
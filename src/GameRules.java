@@ -0,0 +1,78 @@
+/*
+ * GameRules.java
+ */
+
+/**
+ * GameRules class <br>
+ * stores the rules the game is played by: board geometry, timing, judgement windows and the gameplay settings
+ * - everything GameSimulation, Judge, the charts and the replays read, kept apart from Config so the
+ *   headless engine (BatchRunner, Replay checks) never loads Config's colors and fonts, and with them AWT
+ * - may import nothing from java.awt or javax.swing
+ */
+public final class GameRules {
+	// sound
+	static boolean SOUND_ENABLED = true;
+	// play MIDI charts (Charts/N.mid, Music/N.mid) through the sequencer, which then drives the song clock
+	static boolean MIDI_PLAYBACK = true;
+	// chart songs that have no chart or MIDI file from their onsets and beats (see OnsetCharter)
+	static boolean AUTO_CHART = true;
+	// player scroll speed multiplier (hi-speed), applied on top of the difficulty speed and the chart's scroll changes
+	static float HI_SPEED = 1.0f;
+	static final float[] HI_SPEED_OPTIONS = {0.5f, 0.75f, 1.0f, 1.25f, 1.5f, 2.0f, 2.5f, 3.0f};
+	// practice playback rate (see TimeStretch), pitch kept by time-stretching or shifted with the rate
+	static float PLAYBACK_RATE = 1.0f;
+	static final float[] PLAYBACK_RATE_OPTIONS = {0.5f, 0.75f, 1.0f, 1.25f, 1.5f};
+	static boolean PRESERVE_PITCH = true;
+	// endless mode: the song index after the last song, notes from EndlessNoteSource; seed 0 = a new one each game
+	static final int ENDLESS_SONG = 5;
+	static long ENDLESS_SEED = 0;
+	// two-player versus: player 2's keys (player 1 plays on 1 2 3 4)
+	static final String VERSUS_KEYS = "7890";
+	// autoplay: a bot plays every game (soak tests, see SoakTest), its timing error in ms (0 = perfect)
+	static boolean AUTOPLAY = false;
+	static double AUTOPLAY_SIGMA_MS = 12;
+	// board
+	static final int WIDTH = 600;
+	static final int HEIGHT = 780;
+	// lane count (4K .. 10K, see LaneLayout)
+	static int LANES = 4;
+	static final int[] LANE_OPTIONS = {4, 5, 6, 7, 8, 9, 10};
+	static final int FPS = 120;
+	// music / rhythm
+	static final int BPM = 60; // for rhythmic spawn variants
+	static final boolean RHYTHMIC_SPAWN = true;
+	// scroll speed
+	static final int SPEED = 4;
+	// judgement windows in ms either side of the note time (see Judge)
+	static int PERFECT_MS = 35;
+	static int GREAT_MS = 70;
+	static int GOOD_MS = 120;
+	static int MISS_MS = 180; // an early press within this range misses the note instead of counting as wrong
+	// measured audio/input latency (ms), positive when the player hits late (see CalibrationPanel)
+	static int AUDIO_OFFSET_MS = 0;
+	// tile
+	static final int TILE_WIDTH = 150; // lane width at 4K, see LaneLayout for other lane counts
+	static final int TILE_HEIGHT = 150;
+	static final int BOTTOM_BOUND = 550; // perfect hit spot, buttons under here
+
+	/**
+	 * GameRules() <br>
+	 * private constructor, holds only static items
+	 */
+	private GameRules() {}
+
+	/**
+	 * tileY(scroll,noteTime,nowPos,pxPerMs) <br>
+	 * places a note on screen from the song clock
+	 * - the tile top reaches BOTTOM_BOUND (the perfect hit spot) at the note time
+	 * - the distance follows the chart's scroll changes, both ends come from the precomputed ScrollMap
+	 * @param scroll (ScrollMap) scroll changes of the chart
+	 * @param noteTime (long) note time in ms
+	 * @param nowPos (double) scroll position of the current song time (scroll.position(now))
+	 * @param pxPerMs (float) scroll speed (hi-speed included)
+	 * @return (int) y value of the tile top
+	 */
+	static int tileY(ScrollMap scroll, long noteTime, double nowPos, float pxPerMs) {
+		return BOTTOM_BOUND - (int) Math.round((scroll.position(noteTime) - nowPos) * pxPerMs);
+	}
+}
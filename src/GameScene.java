@@ -0,0 +1,134 @@
+/*
+ * GameScene.java
+ */
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * GameScene class <br>
+ * draws one playfield of a game from a FrameSnapshot: lanes, tiles, effects, buttons and HUD
+ * - GameRules.WIDTH x GameRules.HEIGHT at the origin of the Graphics2D (translate or scale it to place it)
+ * - used by GamePanel on screen and by ReplayRenderer off screen; a scene keeps render-side caches
+ *   (button row image, HUD text buffer), so each thread that draws needs its own
+ */
+public class GameScene {
+	private static final Color SPECTRUM_COLOR = new Color(255, 215, 0, 60);
+	private static final BasicStroke LANE_STROKE = new BasicStroke(8f);
+	private final LaneLayout layout;
+	// Components
+	private final Button buttonPainter = new Button();
+	private final Tiles tilePainter = new Tiles();
+	private final GameText gameText = new GameText();
+
+	/**
+	 * GameScene(layout) <br>
+	 * constructor
+	 * @param layout (LaneLayout) lane geometry of the game
+	 */
+	public GameScene(LaneLayout layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * paint(g2,s,renderTime,spectrum) <br>
+	 * paints the playfield
+	 * @param g2 (Graphics2D) object to paint
+	 * @param s (FrameSnapshot) frame of the game
+	 * @param renderTime (long) song time to draw the notes at
+	 * @param spectrum (float[]) smoothed spectrum bands to draw behind the lanes, null for none
+	 */
+	public void paint(Graphics2D g2, FrameSnapshot s, long renderTime, float[] spectrum) {
+		// Draw game background (dark navy) and lane separators
+		g2.setColor(Config.BACKGROUND_COLOR);
+		g2.fillRect(0, 0, GameRules.WIDTH, GameRules.HEIGHT);
+		if (spectrum != null) {
+			SpectrumAnalyzer.draw(g2, spectrum, GameRules.WIDTH, GameRules.BOTTOM_BOUND, GameRules.BOTTOM_BOUND / 2, SPECTRUM_COLOR);
+		}
+		// Lane separator lines with glow (using accent color translucent)
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		// draw the lane separators
+		g2.setStroke(LANE_STROKE);
+		g2.setColor(Config.LANE_COLOR);
+		for (int x : layout.separatorX) {
+			g2.drawLine(x, 0, x, GameRules.HEIGHT);
+		}
+
+		// draw hit line = 550, perfect hit window = 550 - 750
+		g2.drawLine(0, GameRules.BOTTOM_BOUND, GameRules.WIDTH, GameRules.BOTTOM_BOUND);
+
+		// draw hit zone
+		g2.setColor(Config.HIT_ZONE_COLOR);
+		g2.fillRect(0, GameRules.BOTTOM_BOUND, GameRules.WIDTH, GameRules.HEIGHT - GameRules.BOTTOM_BOUND);
+
+		// Draw tiles (uses white or gold tile images depending on goldMode)
+		tilePainter.drawTiles(g2, layout, s.laneNotes, s.laneMask, s.scroll, renderTime, s.pxPerMs, s.play, s.goldMode, s.whiteMode);
+
+		// Draw Explosion effects
+		g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+		g2.setColor(Config.ACCENT_COLOR);
+		for (int i = 0; i < s.explosionCount; i++) {
+			int r = s.explosionR[i];
+			g2.drawOval(s.explosionX[i] - r, s.explosionY[i] - r, 2 * r, 2 * r);
+		}
+		// Draw a red "missed" tile if a foul (miss) occurred
+		if (s.foul) {
+			tilePainter.drawFoul(g2, layout, s.foulColumn, s.foulY);
+		}
+		if (s.paused) {
+			gameText.drawPaused(g2, s.score);
+		}
+		// Draw the bottom control buttons (lane indicators)
+		buttonPainter.gameButton(g2, layout, s.keyDownMask);
+		// Draw score and combo HUD
+		gameText.drawScoreHud(g2, s.score, s.combo, s.comboPulse, s.accuracy, s.misses, layout.keysHint);
+		if (s.ghost && s.play) {
+			gameText.drawGhostDelta(g2, s.ghostDelta);
+		}
+		if (s.practice) {
+			gameText.drawPractice(g2, s.songTimeMs, s.rate, s.loopStartMs, s.loopEndMs);
+		} else if (s.replay) {
+			gameText.drawReplay(g2, s.songTimeMs);
+		}
+		// If game over, overlay "Game Over" text and prompt
+		if (s.over) {
+			if (s.finished) {
+				gameText.drawWin(g2, s.score);
+			} else {
+				gameText.drawGameOver(g2, s.score);
+			}
+		}
+
+		try {
+			// Draw floating note particles for high combos
+			g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+			BufferedImage noteImg = AssetManager.getImage("note2");
+			if (noteImg != null) {
+				for (int i = 0; i < s.particleCount; i++) {
+					// draw note with its current alpha
+					float alpha = Math.max(0f, Math.min(1f, s.particleAlpha[i]));
+					g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+					int x = s.particleX[i];
+					if (x == 0) {
+						noteImg = AssetManager.getImage("note0");
+					} else if (x == 1) {
+						noteImg = AssetManager.getImage("note1");
+					} else if (x == 2) {
+						noteImg = AssetManager.getImage("note2");
+					} else {
+						noteImg = AssetManager.getImage("note3");
+					}
+					g2.drawImage(noteImg, x - 10, s.particleY[i] - 10, s.particleW[i], s.particleH[i], null);
+				}
+				// reset composite
+				g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+			}
+		} catch (Exception e) {
+			System.err.println("File Not Found: " + e.getMessage());
+		}
+		}
+}
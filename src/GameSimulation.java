@@ -0,0 +1,1275 @@
+/*
+ * GameSimulation.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * GameSimulation class <br>
+ * game rules of one play session, run on their own thread
+ * - owns the song clock, the music, the lane queues, the score and the effect states
+ * - a fixed-rate loop drains the InputQueue, advances the game and publishes a FrameSnapshot
+ * - the renderer only reads snapshots, so a slow paint never delays the game and the game never
+ *   waits for a paint
+ * - uses no AWT classes: input arrives through the InputQueue, frames leave through the SnapshotExchange,
+ *   and the rules and settings come from GameRules, not from Config (whose colors and fonts load AWT)
+ * - practice mode: misses never end the game, the song can be sought and a section looped; the chart is
+ *   read into a Chart at load so a seek finds its notes by binary search, and the music seeks by frame
+ * - practice rate (GameRules.PLAYBACK_RATE): the song clock runs at the rate, the music is time-stretched to
+ *   match (see TimeStretch), judgement stays in song time and the on-screen scroll speed stays the same
+ * - 4 .. 10 lanes (GameRules.LANES, geometry in LaneLayout): which lanes hold notes and which keys are held
+ *   are int bitmasks, per-tick lane loops only visit the set bits
+ * - endless mode (song GameRules.ENDLESS_SONG): no music, the notes stream from an EndlessNoteSource until
+ *   the player misses too often; effects are pooled so a long session allocates nothing per hit
+ * - replays: outside practice every judged key event is recorded on the song clock (see Replay); a press
+ *   first settles every note missed before it, so the result depends only on the event times and not on
+ *   where the ticks fell, and a replay is judged the same way at 1x or as fast as the CPU allows
+ * - headless engine: with a Replay and a preloaded Chart it runs without music, sound, effects, snapshots
+ *   or a thread, as fast as it can be called (see BatchRunner); like a Replay check, a batch loads no
+ *   java.awt or javax.swing class (java -verbose:class BatchRunner)
+ * - ghost: a recorded run also samples its score over time (GhostCurve), and races the personal best's
+ *   curve, published as a score delta each tick
+ * - versus (see versus()): player 2's game follows player 1's, it has no loop, music or Sounder of its
+ *   own; player 1's loop steps both games on its song clock and both play their hits on its Sounder, so
+ *   the two playfields share one tick and cannot drift apart
+ * - autoplay (GameRules.AUTOPLAY): an AutoPlayer queues the key events instead of the keyboard (see SoakTest)
+ * - events: every hit, miss and wrong key is published on a GameEventBus once the scorer has counted it;
+ *   the hit effects are polled from it at the end of the tick, the lane sounds play from it on their own
+ *   thread, and other consumers can be added without touching the judging code
+ */
+public class GameSimulation {
+	// Song clock (ms), negative during the lead-in before the music starts
+	static final long LEAD_IN_MS = 2000;
+	private static final int LANE_CAPACITY = 256; // notes per lane before its queue grows (slow scroll segments pack more)
+	private static final int EVENT_CAPACITY = 1024;
+	// Panel state (read by the EDT, written by the loop)
+	private volatile boolean play = false;
+	private volatile boolean over = false;
+	private boolean finished = false;
+	private boolean paused = false;
+	private final int fps;
+	private final int speed;
+	// Tile State
+	private final LaneLayout layout;
+	private final NoteQueue[] laneNotes; // notes on screen, per lane
+	private int laneMask = 0; // bit n set when laneNotes[n] is not empty
+	private NoteSource notes; // chart notes not spawned yet
+	private final float basePxPerMs; // difficulty scroll speed in pixels per ms of song time
+	private float pxPerMs; // basePxPerMs with the player's hi-speed, per ms of song time at the playback rate
+	private long lookaheadMs; // a note spawns this far (in scroll position) before the hit line
+	private ScrollMap scroll = ScrollMap.CONSTANT; // scroll changes of the chart
+	// song clock: clockBaseMs at clockBaseNanos, advancing playbackRate ms per real ms
+	private long clockBaseNanos;
+	private long clockBaseMs;
+	private float playbackRate = 1.0f;
+	private volatile float requestedRate = 1.0f;
+	private final int baseOffsetMs; // output latency in real ms (GameRules.AUDIO_OFFSET_MS, or the replay's)
+	private long offsetMs; // output latency in song ms
+	private final float hiSpeed;
+	private long songTimeMs;
+	private long tickNanos; // System.nanoTime() at which songTimeMs was read
+	private long manualClockMs = REAL_CLOCK; // song time set by stepTo, REAL_CLOCK when the clock runs
+	private boolean musicStarted = false;
+	private float comboPulse = 1.0f; // current scale for combo text pulse effect
+	// Input
+	private int keyDownMask = 0; // bit n set while the key of lane n is held
+	private final InputQueue inputQueue = new InputQueue(256);
+	private final InputQueue.Handler laneInputHandler = this::laneInput;
+	// score over time of this run (recorded runs only) and of the personal best it races, null when none
+	private GhostCurve scoreCurve;
+	private GhostCurve ghost;
+	private final AutoPlayer autoPlayer; // bot producing the input (GameRules.AUTOPLAY), null when a player plays
+	// versus: the game whose loop, song clock, music and Sounder this one shares (null for its own),
+	// and player 2's game stepped by this game's loop (null for one player)
+	private final GameSimulation leader;
+	private GameSimulation rival;
+	// Foul indicator
+	private boolean foul = false;
+	private int foulColumn = -1;
+	private int foulY = 0;
+	// Components
+	private final Sounder sounder; // null when headless
+	// hits, misses and wrong keys for the effects (polled by this loop), the lane sounds and any other
+	// consumer (their own threads); null when headless
+	private final GameEventBus events;
+	private final GameEventBus.Consumer effects;
+	private final GameEventBus.Handler effectsHandler = this::effect;
+	private final ScoreCalculate scorer = new ScoreCalculate();
+	private final String difficultyLabel;
+	private final int songIndex;
+	private Audio gameMusic;
+	// sequencer playing the song's MIDI file instead of gameMusic (GameRules.MIDI_PLAYBACK)
+	private MidiPlayback midiMusic;
+	private final long seed; // seed of rng, kept in the replay
+	private final Random rng;
+	// frames for the renderer
+	private final SnapshotExchange exchange;
+	private final Runnable onFrame;
+	private Thread loop;
+	private volatile boolean running = false;
+	// practice mode (requests come from the EDT, the loop applies them at the start of a tick)
+	private static final long NO_SEEK = Long.MIN_VALUE;
+	private static final long REAL_CLOCK = Long.MIN_VALUE;
+	private static final long PRACTICE_LEAD_MS = 1000; // a loop restarts this long before its start
+	private final boolean practice;
+	private Chart practiceChart; // every note of the song, for seeking
+	private final AtomicLong seekRequest = new AtomicLong(NO_SEEK);
+	private volatile long loopStartMs = -1;
+	private volatile long loopEndMs = -1;
+	// endless mode
+	private final boolean endless;
+	// replays: the run being recorded, or the one being played back (with its next event)
+	private final Replay recording;
+	private final Replay replay;
+	private int replayCursor = 0;
+	private final boolean headless; // no music, no sound, no effects, no snapshots (fast replay playback)
+	private final Chart chart; // preloaded chart, null to open the song's through ChartLibrary
+	private long lastJudgedMs; // song time of the last tick that judged notes
+	private long chartHash = 17; // hash of the notes judged so far
+	private boolean recordingDone = false;
+	private boolean recordingFull = false; // an endless run outgrew Replay.MAX_EVENTS or GhostCurve.MAX_SAMPLES
+
+	/**
+	 * NoteParticle class <br>
+	 * local class
+	 * - floating note objects for high combos
+	 */
+	private static class NoteParticle {
+		int x;
+		int y;
+		int Width;
+		int Height;
+		float alpha;
+
+		/**
+		 * NoteParticle(x,y,width,height) <br>
+		 * constructor
+		 * @param x (int) starting x coordinate
+		 * @param y (int) starting y coordinate
+		 * @param width (int) starting width
+		 * @param height (int) starting height
+		 */
+		NoteParticle(int x, int y, int width, int height) {
+			set(x, y, width, height);
+		}
+
+		/**
+		 * set(x,y,width,height) <br>
+		 * restarts a pooled particle
+		 * @param x (int) starting x coordinate
+		 * @param y (int) starting y coordinate
+		 * @param width (int) starting width
+		 * @param height (int) starting height
+		 */
+		void set(int x, int y, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.Width = width;
+			this.Height = height;
+			this.alpha = 1.0f;
+		}
+	}
+
+	/**
+	 * Explosion class <br>
+	 * local class
+	 * - expanding ring effect for hit tiles
+	 */
+	private static class Explosion {
+		int x, y, r;
+		int maxRadius;
+
+		/**
+		 * Explosion(x,y,r,max) <br>
+		 * constructor
+		 * @param x (int) the x parameter for explosion
+		 * @param y (int) the y parameter for explosion
+		 * @param r (int) the initial radius of explosion
+		 * @param max (int) the maximum radius of explosion
+		 */
+		Explosion(int x, int y, int r, int max) {
+			set(x, y, r, max);
+		}
+
+		/**
+		 * set(x,y,r,max) <br>
+		 * restarts a pooled explosion
+		 * @param x (int) the x parameter for explosion
+		 * @param y (int) the y parameter for explosion
+		 * @param r (int) the initial radius of explosion
+		 * @param max (int) the maximum radius of explosion
+		 */
+		void set(int x, int y, int r, int max) {
+			this.x = x;
+			this.y = y;
+			this.r = r;
+			this.maxRadius = max;
+		}
+
+		/**
+		 * update() <br>
+		 * grows the ring
+		 * @return boolean true when the explosion is finished
+		 */
+		boolean update() {
+			r++;
+			return r >= maxRadius;
+		}
+	}
+
+	// array list of explosions
+	private final ArrayList<Explosion> explosions = new ArrayList<>();
+	// array list of note particles
+	private final ArrayList<NoteParticle> floatingNotes = new ArrayList<>();
+	// finished effects, reused by the next hits
+	private final ArrayList<Explosion> explosionPool = new ArrayList<>();
+	private final ArrayList<NoteParticle> particlePool = new ArrayList<>();
+
+	/**
+	 * GameSimulation(difficulty,songIndex,practice,onFrame) <br>
+	 * constructor
+	 * - picks the scroll speed for the difficulty, opens the music and the chart
+	 * @param difficulty (String) difficulty label
+	 * @param songIndex (int) song index, GameRules.ENDLESS_SONG for endless mode
+	 * @param practice (boolean) true for practice mode (ignored in endless mode, it has no end to seek in)
+	 * @param onFrame (Runnable) called on the loop thread after each published snapshot (e.g. repaint)
+	 */
+	public GameSimulation(String difficulty, int songIndex, boolean practice, Runnable onFrame) {
+		this(difficulty, songIndex, LaneLayout.of(GameRules.LANES), practice, null, false, null, null, onFrame);
+	}
+
+	/**
+	 * GameSimulation(replay,headless,onFrame) <br>
+	 * constructor for playing a replay back
+	 * - at 1x with start(), drawn and with music like a game; or headless with playReplay()
+	 * @param replay (Replay) recorded run
+	 * @param headless (boolean) true for no music, sound or effects
+	 * @param onFrame (Runnable) called on the loop thread after each published snapshot
+	 */
+	public GameSimulation(Replay replay, boolean headless, Runnable onFrame) {
+		this(replay.difficulty, replay.songIndex, LaneLayout.of(replay.lanes), false, replay, headless, null, null, onFrame);
+	}
+
+	/**
+	 * GameSimulation(replay,chart) <br>
+	 * constructor for the headless engine: plays a replay against a preloaded chart with playReplay()
+	 * - the chart is only read, one Chart can serve any number of simulations on any threads
+	 * @param replay (Replay) input to play (recorded or made up, see BatchRunner)
+	 * @param chart (Chart) notes to play, its lane count must match the replay's
+	 */
+	GameSimulation(Replay replay, Chart chart) {
+		this(replay.difficulty, replay.songIndex, LaneLayout.of(replay.lanes), false, replay, true, chart, null, () -> {});
+	}
+
+	/**
+	 * versus(difficulty,songIndex,onFrame) <br>
+	 * creates a two-player versus game: two 4-lane games of the same notes (same seed), player 2 on
+	 * the GameRules.VERSUS_KEYS layout
+	 * - player 2's game is getRival(), it runs on player 1's loop: start() and shutdown() player 1's
+	 * - not recorded, no practice
+	 * @param difficulty (String) difficulty label
+	 * @param songIndex (int) song index
+	 * @param onFrame (Runnable) called on the loop thread after each tick of both games
+	 * @return (GameSimulation) player 1's game
+	 */
+	public static GameSimulation versus(String difficulty, int songIndex, Runnable onFrame) {
+		LaneLayout keys2 = LaneLayout.withKeys(GameRules.VERSUS_KEYS);
+		GameSimulation p1 = new GameSimulation(difficulty, songIndex, LaneLayout.of(keys2.lanes), false, null, false, null, null, onFrame);
+		p1.rival = new GameSimulation(difficulty, songIndex, keys2, false, null, false, null, p1, () -> {});
+		return p1;
+	}
+
+	/**
+	 * GameSimulation(difficulty,songIndex,layout,practice,replay,headless,chart,leader,onFrame) <br>
+	 * private constructor
+	 * @param difficulty (String) difficulty label
+	 * @param songIndex (int) song index
+	 * @param layout (LaneLayout) lanes and their keys
+	 * @param practice (boolean) true for practice mode
+	 * @param replay (Replay) run to play back, null for a game
+	 * @param headless (boolean) true for no music, sound or effects
+	 * @param chart (Chart) preloaded chart, null to open the song's
+	 * @param leader (GameSimulation) versus player 1's game for player 2's, null otherwise
+	 * @param onFrame (Runnable) called on the loop thread after each published snapshot
+	 */
+	private GameSimulation(String difficulty, int songIndex, LaneLayout layout, boolean practice, Replay replay, boolean headless, Chart chart, GameSimulation leader, Runnable onFrame) {
+		this.difficultyLabel = difficulty;
+		this.endless = songIndex == GameRules.ENDLESS_SONG;
+		this.practice = practice && !endless && replay == null;
+		this.songIndex = songIndex;
+		this.onFrame = onFrame;
+		this.replay = replay;
+		this.headless = headless;
+		this.chart = chart;
+		this.leader = leader;
+		this.layout = layout;
+		laneNotes = new NoteQueue[layout.lanes];
+		exchange = headless ? null : new SnapshotExchange(layout.lanes, LANE_CAPACITY);
+		sounder = headless || !GameRules.SOUND_ENABLED ? null : leader != null ? leader.sounder : new Sounder(layout.lanes);
+		events = headless ? null : new GameEventBus(EVENT_CAPACITY);
+		effects = headless ? null : events.subscribe();
+		if (sounder != null) {
+			events.start("lane-sounds", e -> {
+				if (e.type == GameEventBus.MISS) {
+					sounder.playLane(e.lane);
+				}
+			});
+		}
+		seed = replay != null ? replay.seed : leader != null ? leader.seed : new Random().nextLong();
+		rng = new Random(seed);
+		hiSpeed = replay != null ? replay.hiSpeed : GameRules.HI_SPEED;
+		baseOffsetMs = replay != null ? replay.offsetMs : GameRules.AUDIO_OFFSET_MS;
+		recording = this.practice || replay != null ? null : new Replay(seed, songIndex, difficulty, layout.lanes, hiSpeed, baseOffsetMs);
+		autoPlayer = GameRules.AUTOPLAY && replay == null ? new AutoPlayer(layout.lanes, GameRules.AUTOPLAY_SIGMA_MS) : null;
+		// Set tile falling speed (every difficulty ticks at GameRules.FPS)
+		speed = speedFor(difficulty);
+		fps = GameRules.FPS;
+		// same on-screen speed as the old fixed per-tick movement
+		basePxPerMs = speed * fps / 1000f;
+		for (int lane = 0; lane < laneNotes.length; lane++) {
+			laneNotes[lane] = new NoteQueue(LANE_CAPACITY);
+		}
+		// Open music (only if sound is enabled), it starts when the lead-in is over
+		openMusic();
+		applyRate(this.practice ? GameRules.PLAYBACK_RATE : 1.0f);
+		resetGameState();
+		play = true;
+		publish();
+	}
+
+	/**
+	 * speedFor(difficulty) <br>
+	 * private method <br>
+	 * @param difficulty (String) difficulty label
+	 * @return (int) tile movement per tick in pixels
+	 */
+	private static int speedFor(String difficulty) {
+		switch (difficulty) {
+			case "VERY EASY": return 1;
+			case "EASY":      return 2;
+			case "MEDIUM":    return 3;
+			case "HARD":      return 4;
+			case "VERY HARD": return 5;
+			default:          return GameRules.SPEED; // HARD
+		}
+	}
+
+	/**
+	 * minGapMs(difficulty) <br>
+	 * smallest same-lane gap of a difficulty, so tiles of one lane never overlap
+	 * @param difficulty (String) difficulty label
+	 * @return (long) time a tile takes to fall its own height, in ms
+	 */
+	static long minGapMs(String difficulty) {
+		return (long) (GameRules.TILE_HEIGHT / (speedFor(difficulty) * GameRules.FPS / 1000f));
+	}
+
+	/**
+	 * start() <br>
+	 * starts the game loop thread
+	 */
+	public void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		loop = new Thread(this::runLoop, "game-loop");
+		loop.setDaemon(true);
+		loop.setPriority(Thread.NORM_PRIORITY + 1);
+		loop.start();
+	}
+
+	/**
+	 * shutdown() <br>
+	 * stops the game loop, the music and the lane sounds
+	 * - returns once the loop thread has finished, the scorer can then be read safely
+	 */
+	public void shutdown() {
+		running = false;
+		play = false;
+		if (loop != null && loop != Thread.currentThread()) {
+			LockSupport.unpark(loop);
+			try {
+				loop.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		loop = null;
+		stopMusic();
+		if (events != null) {
+			events.close();
+		}
+		if (rival != null) {
+			rival.shutdown();
+		}
+		if (sounder != null && leader == null) {
+			sounder.close();
+		}
+	}
+
+	/**
+	 * runLoop() <br>
+	 * private method <br>
+	 * fixed-rate loop: step, publish, notify
+	 * - a late tick is not repeated to catch up, the song clock keeps the game in time
+	 */
+	private void runLoop() {
+		long period = 1_000_000_000L / fps;
+		long next = System.nanoTime();
+		while (running) {
+			step();
+			publish();
+			if (rival != null) {
+				rival.step();
+				rival.publish();
+			}
+			onFrame.run();
+			next += period;
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			} else if (wait < -4 * period) {
+				next = System.nanoTime(); // fell far behind (e.g. a GC pause): resume the normal rate
+			}
+		}
+	}
+
+	/**
+	 * resetGameState()
+	 * - reset game state variables for new play session
+	 */
+	private void resetGameState() {
+		for (NoteQueue q : laneNotes) {
+			q.clear();
+		}
+		laneMask = 0;
+		keyDownMask = 0;
+		inputQueue.clear();
+		// chart for this song, the generated fallback lasts as long as the music (2 minutes without music)
+		GameSimulation owner = leader != null ? leader : this; // the game that plays the music
+		long lengthMs = owner.gameMusic != null && owner.hasMusic() ? owner.gameMusic.songLength * 1000L : 120_000L;
+		if (replay != null) {
+			lengthMs = replay.lengthMs;
+		}
+		long minGapMs = minGapMs(difficultyLabel);
+		long endlessSeed = 0;
+		if (chart != null) {
+			notes = chart.cursor();
+		} else if (endless) {
+			endlessSeed = replay != null ? replay.endlessSeed : GameRules.ENDLESS_SEED != 0 ? GameRules.ENDLESS_SEED : rng.nextLong();
+			notes = new EndlessNoteSource(endlessSeed, layout.lanes, ChartLibrary.difficultyLevel(difficultyLabel), minGapMs, 0);
+		} else {
+			notes = ChartLibrary.open(songIndex, difficultyLabel, layout.lanes, lengthMs, minGapMs, rng);
+		}
+		if (practice) {
+			practiceChart = Chart.collect(notes, layout.lanes);
+			notes = practiceChart.cursor();
+		}
+		scroll = notes.scrollMap();
+		// restart the song clock with a lead-in so the first notes can fall into view
+		tickNanos = System.nanoTime();
+		clockBaseNanos = tickNanos;
+		clockBaseMs = -LEAD_IN_MS;
+		songTimeMs = -LEAD_IN_MS;
+		musicStarted = false;
+		lastJudgedMs = songTimeMs;
+		chartHash = 17;
+		replayCursor = 0;
+		if (recording != null) {
+			recording.lengthMs = lengthMs;
+			recording.endlessSeed = endlessSeed;
+		}
+		scoreCurve = recording != null ? new GhostCurve(lengthMs) : null;
+		scorer.reset();
+		comboPulse = 1.0f;
+		foul = false;
+		over = false;
+		finished = false;
+		foulColumn = -1;
+	}
+
+	/**
+	 * openMusic() <br>
+	 * private method <br>
+	 * opens the music for this game if sound is enabled
+	 * - the song's MIDI file through the sequencer when there is one and GameRules.MIDI_PLAYBACK is set
+	 * - the WAV / song pack otherwise
+	 */
+	private void openMusic() {
+		gameMusic = null;
+		midiMusic = null;
+		if (!GameRules.SOUND_ENABLED || endless || headless || leader != null) {
+			return;
+		}
+		File midi = GameRules.MIDI_PLAYBACK ? ChartLibrary.findMidi(songIndex) : null;
+		if (midi != null) {
+			try {
+				midiMusic = new MidiPlayback(midi);
+				return;
+			} catch (IOException e) {
+				System.err.println("Error opening MIDI playback: " + e.getMessage());
+			}
+		}
+		gameMusic = new Audio(songIndex);
+	}
+
+	/**
+	 * stopMusic() <br>
+	 * private method <br>
+	 * stops and releases whichever music is open (the song file is closed)
+	 */
+	private void stopMusic() {
+		if (gameMusic != null) {
+			gameMusic.close();
+			gameMusic = null;
+		}
+		if (midiMusic != null) {
+			midiMusic.stop();
+			midiMusic = null;
+		}
+	}
+
+	/**
+	 * songTime() <br>
+	 * reads the song clock
+	 * - the sequencer position once MIDI playback has started, so tempo changes and sequencer drift are followed
+	 * @return (long) ms since the music started (negative during the lead-in)
+	 */
+	private long songTime() {
+		if (manualClockMs != REAL_CLOCK) {
+			return manualClockMs;
+		}
+		if (leader != null) {
+			return leader.songTimeMs; // stepped just before this game, on the same thread
+		}
+		if (midiMusic != null && musicStarted) {
+			return midiMusic.getMillis();
+		}
+		return clockBaseMs + (long) ((System.nanoTime() - clockBaseNanos) * (double) playbackRate / 1_000_000L);
+	}
+
+	/**
+	 * hasMusic() <br>
+	 * @return (boolean) true if a song was opened for this game
+	 */
+	private boolean hasMusic() {
+		return midiMusic != null || (gameMusic != null && gameMusic.getFormat() != null);
+	}
+
+	/**
+	 * isMusicPlaying() <br>
+	 * @return (boolean) true while the opened song is still playing
+	 */
+	private boolean isMusicPlaying() {
+		return midiMusic != null ? midiMusic.isPlaying() : gameMusic.isPlaying();
+	}
+
+	/**
+	 * spawnNotes(now) <br>
+	 * moves chart notes that are about to come into view into their lane queues
+	 * - only the next chart note is looked at, so the cost is the number of new notes
+	 * - "about to come into view" is measured in scroll position, so slow or fast segments spawn
+	 *   notes exactly when they reach the top of the screen
+	 * - a note a press at now could already be judged against spawns too, even if a fast segment keeps
+	 *   it above the screen: live play spawns once per tick and a replay once per event, and both must
+	 *   judge a press against the same notes
+	 * @param now (long) song time in ms
+	 * @throws IllegalStateException if the chart has a note outside the game's lanes
+	 */
+	private void spawnNotes(long now) {
+		double spawnPos = scroll.position(now) + lookaheadMs;
+		long judgeEnd = now - offsetMs + GameRules.MISS_MS;
+		while (notes.hasNext() && (scroll.position(notes.peekTime()) <= spawnPos || notes.peekTime() <= judgeEnd)) {
+			int lane = notes.peekLane();
+			if (lane < 0 || lane >= laneNotes.length) {
+				// the chart is opened for layout.lanes, a note outside it is a bug, not a note to skip
+				throw new IllegalStateException("note in lane " + lane + " of a " + laneNotes.length + "-lane game");
+			}
+			laneNotes[lane].offer(notes.peekTime());
+			laneMask |= 1 << lane;
+			notes.advance();
+		}
+	}
+
+	/**
+	 * pollNote(lane) <br>
+	 * private method <br>
+	 * removes the oldest note of a lane and clears the lane's bit once it is empty
+	 * @param lane (int) lane index
+	 */
+	private void pollNote(int lane) {
+		NoteQueue q = laneNotes[lane];
+		chartHash = chartHash * 31 + (q.peek() << 4 | lane);
+		q.poll();
+		if (q.isEmpty()) {
+			laneMask &= ~(1 << lane);
+		}
+	}
+
+	/**
+	 * step() <br>
+	 * advances the game by one tick
+	 */
+	void step() {
+		if (over && rival != null && !rival.over) {
+			// versus: the song clock (and the music) go on while player 2 still plays
+			tickNanos = System.nanoTime();
+			songTimeMs = songTime();
+		}
+		if (play && !over) {
+			tickNanos = leader != null ? leader.tickNanos : System.nanoTime();
+			songTimeMs = songTime();
+			if (requestedRate != playbackRate) {
+				applyRate(requestedRate);
+			}
+			if (practice) {
+				// a requested seek, or the end of the loop section
+				long target = seekRequest.getAndSet(NO_SEEK);
+				long loopStart = loopStartMs;
+				long loopEnd = loopEndMs;
+				if (target == NO_SEEK && loopStart >= 0 && loopEnd > loopStart && songTimeMs >= loopEnd) {
+					target = loopStart - PRACTICE_LEAD_MS;
+				}
+				if (target != NO_SEEK) {
+					seek(target);
+				}
+			}
+			// start the music when the lead-in is over
+			if (!musicStarted && songTimeMs >= 0) {
+				musicStarted = true;
+				if (midiMusic != null) {
+					midiMusic.start();
+				} else if (hasMusic()) {
+					gameMusic.startAudio();
+				}
+			}
+			// the song ends with the music, or with the chart when there is no music (a replay where it was recorded)
+			if (replay != null) {
+				if (songTimeMs >= replay.endMs) {
+					finishReplay();
+				}
+			} else {
+				GameSimulation owner = leader != null ? leader : this;
+				boolean songOver = owner.hasMusic() ? !owner.isMusicPlaying() : (!notes.hasNext() && laneMask == 0);
+				if (musicStarted && songOver) {
+					finished = true;
+					over = true;
+					play = false;
+				}
+			}
+			// spawn notes coming into view
+			spawnNotes(songTimeMs);
+			// judge the key events queued since the last tick (or recorded up to now), each at its own time
+			if (replay != null) {
+				playEvents(songTimeMs);
+			} else {
+				if (autoPlayer != null) {
+					autoPlayer.tick(laneNotes, laneMask, songTimeMs, offsetMs, tickNanos, playbackRate, inputQueue);
+				}
+				inputQueue.drain(laneInputHandler);
+			}
+			// missed tile detection: only the oldest note of a lane with notes can be past the Good window
+			if (!over) {
+				lastJudgedMs = songTimeMs;
+				cullAll(songTimeMs);
+			}
+			if (scoreCurve != null && !recordingFull) {
+				recordingFull = !scoreCurve.record(songTimeMs, scorer.score);
+			}
+		}
+		// effects of this tick's hits
+		if (effects != null) {
+			effects.poll(effectsHandler);
+		}
+		for (int i = 0; i < explosions.size(); i++) {
+			boolean remove = explosions.get(i).update();
+			if (remove) {
+				explosionPool.add(explosions.remove(i));
+				i--;
+			}
+		}
+		for (int i = 0; i < floatingNotes.size(); i++) {
+			NoteParticle np = floatingNotes.get(i);
+			if (scorer.goldMode)
+			{
+				np.Width += 2;
+				np.Height += 4;
+				np.y -= 3;          // move up
+				np.alpha -= 0.01f;  // fade out
+			} else {
+				np.Width += 2;
+				np.Height += 2;
+				np.y -= 2;          // move up
+				np.alpha -= 0.02f;  // fade out
+			}
+			if (np.alpha <= 0f) {
+				particlePool.add(floatingNotes.remove(i));    // remove note when fully faded
+				i--;
+			}
+		}
+		// Update combo pulse animation (shrink back to normal)
+		if (comboPulse > 1.0f) {
+			comboPulse -= 0.05f;
+			if (comboPulse < 1.0f) {
+				comboPulse = 1.0f;
+			}
+		}
+		if (over && (rival == null || rival.over)) {
+			stopMusic();
+		}
+		if (over) {
+			if (recording != null && !recordingDone && !recordingFull) {
+				recordingDone = true;
+				recording.endMs = lastJudgedMs;
+				recording.setResult(scorer, chartHash);
+				scoreCurve.finish(scorer.score);
+			}
+		}
+	}
+
+	/**
+	 * stepTo(songMs) <br>
+	 * advances the game by one tick to a given song time and publishes the frame, instead of start()
+	 * - for drawing a replay off screen at any frame rate (ReplayRenderer): the caller steps on the
+	 *   GameRules.FPS tick grid so effects animate as in the game, and renders the snapshot at its own time
+	 * - the real clock is not used again afterwards
+	 * @param songMs (long) song time of the tick in ms
+	 */
+	void stepTo(long songMs) {
+		manualClockMs = songMs;
+		step();
+		publish();
+	}
+
+	/**
+	 * playReplay() <br>
+	 * plays the whole replay back at once, as fast as the CPU allows (headless, instead of start())
+	 * - the result is then in getScorer() and getChartHash()
+	 */
+	public void playReplay() {
+		musicStarted = true;
+		playEvents(replay.endMs);
+		finishReplay();
+	}
+
+	/**
+	 * playEvents(upTo) <br>
+	 * private method <br>
+	 * judges the recorded events up to a song time, in their recorded order
+	 * @param upTo (long) song time in ms
+	 */
+	private void playEvents(long upTo) {
+		while (replayCursor < replay.size() && replay.time(replayCursor) <= upTo) {
+			long t = replay.time(replayCursor);
+			spawnNotes(t);
+			input(t, replay.lane(replayCursor), replay.isDown(replayCursor));
+			replayCursor++;
+		}
+	}
+
+	/**
+	 * finishReplay() <br>
+	 * private method <br>
+	 * ends a replay where the recorded run ended: the rest of the events, the last misses, game over
+	 */
+	private void finishReplay() {
+		playEvents(replay.endMs);
+		spawnNotes(replay.endMs);
+		cullAll(replay.endMs);
+		songTimeMs = Math.max(songTimeMs, replay.endMs);
+		finished = !over;
+		over = true;
+		play = false;
+	}
+
+	/**
+	 * seek(target) <br>
+	 * private method <br>
+	 * moves the song clock, the music and the chart to a song time (practice mode, loop thread)
+	 * - the chart cursor is found by binary search and the lane queues start empty, the next
+	 *   spawnNotes refills the notes in view
+	 * @param target (long) song time in ms, clamped to the song
+	 */
+	private void seek(long target) {
+		long end = Math.max(practiceChart.getLengthMs(), gameMusic != null && hasMusic() ? gameMusic.songLength * 1000L : 0);
+		target = Math.max(0, Math.min(target, end));
+		for (NoteQueue q : laneNotes) {
+			q.clear();
+		}
+		laneMask = 0;
+		explosionPool.addAll(explosions);
+		explosions.clear();
+		particlePool.addAll(floatingNotes);
+		floatingNotes.clear();
+		foul = false;
+		notes = practiceChart.cursorAt(target);
+		// the clock jumps first, the music follows (it starts from here if the lead-in was not over)
+		tickNanos = System.nanoTime();
+		clockBaseNanos = tickNanos;
+		clockBaseMs = target;
+		songTimeMs = target;
+		if (midiMusic != null) {
+			midiMusic.seek(target);
+		} else if (gameMusic != null && hasMusic()) {
+			gameMusic.seek(target);
+		}
+	}
+
+	/**
+	 * applyRate(newRate) <br>
+	 * private method <br>
+	 * changes the playback rate without a jump in song time (loop thread, or the constructor)
+	 * - the scroll speed per song ms is divided by the rate so tiles move as fast on screen as at 1x
+	 * @param newRate (float) TimeStretch.MIN_RATE .. TimeStretch.MAX_RATE
+	 */
+	private void applyRate(float newRate) {
+		long now = System.nanoTime();
+		clockBaseMs = songTime();
+		clockBaseNanos = now;
+		playbackRate = Math.max(TimeStretch.MIN_RATE, Math.min(TimeStretch.MAX_RATE, newRate));
+		requestedRate = playbackRate;
+		pxPerMs = basePxPerMs * hiSpeed / playbackRate;
+		lookaheadMs = (long) ((GameRules.BOTTOM_BOUND + GameRules.TILE_HEIGHT) / pxPerMs);
+		offsetMs = Math.round(baseOffsetMs * (double) playbackRate);
+		if (midiMusic != null) {
+			midiMusic.setRate(playbackRate);
+		} else if (gameMusic != null) {
+			gameMusic.setRate(playbackRate, GameRules.PRESERVE_PITCH);
+		}
+	}
+
+	/**
+	 * requestRate(rate) <br>
+	 * asks the game loop to change the playback rate (practice mode only, any thread)
+	 * @param rate (float) playback rate, clamped to 0.5 .. 1.5
+	 */
+	public void requestRate(float rate) {
+		if (practice) {
+			requestedRate = Math.max(TimeStretch.MIN_RATE, Math.min(TimeStretch.MAX_RATE, rate));
+		}
+	}
+
+	/**
+	 * requestSeek(ms) <br>
+	 * asks the game loop to jump to a song time (practice mode only, any thread)
+	 * @param ms (long) song time in ms
+	 */
+	public void requestSeek(long ms) {
+		if (practice) {
+			seekRequest.set(ms);
+		}
+	}
+
+	/**
+	 * setLoop(startMs,endMs) <br>
+	 * sets the practice loop section, it repeats once both ends are set and endMs &gt; startMs (any thread)
+	 * @param startMs (long) loop start in ms, -1 for none
+	 * @param endMs (long) loop end in ms, -1 for none
+	 */
+	public void setLoop(long startMs, long endMs) {
+		loopStartMs = startMs;
+		loopEndMs = endMs;
+	}
+
+	/**
+	 * isPractice() <br>
+	 * @return (boolean) true in practice mode
+	 */
+	public boolean isPractice() {
+		return practice;
+	}
+
+	/**
+	 * publish() <br>
+	 * private method <br>
+	 * copies the state the renderer needs into the back snapshot and publishes it
+	 */
+	private void publish() {
+		if (exchange == null) {
+			return; // headless
+		}
+		FrameSnapshot s = exchange.back();
+		s.songTimeMs = songTimeMs;
+		s.tickNanos = tickNanos;
+		s.pxPerMs = pxPerMs;
+		s.rate = playbackRate;
+		s.scroll = scroll;
+		// lanes with notes now, or in this snapshot when it was last filled (to empty them)
+		for (int m = laneMask | s.laneMask; m != 0; m &= m - 1) {
+			int lane = Integer.numberOfTrailingZeros(m);
+			s.laneNotes[lane].copyFrom(laneNotes[lane]);
+		}
+		s.laneMask = laneMask;
+		s.keyDownMask = keyDownMask;
+		s.play = play;
+		s.over = over;
+		s.finished = finished;
+		s.paused = paused;
+		s.practice = practice;
+		s.replay = replay != null;
+		s.loopStartMs = loopStartMs;
+		s.loopEndMs = loopEndMs;
+		s.foul = foul;
+		s.foulColumn = foulColumn;
+		s.foulY = foulY;
+		s.score = scorer.score;
+		s.combo = scorer.comboCount;
+		s.misses = scorer.misses;
+		s.accuracy = scorer.accuracy();
+		s.comboPulse = comboPulse;
+		s.goldMode = scorer.goldMode;
+		s.whiteMode = scorer.whiteMode;
+		s.ghost = ghost != null;
+		s.ghostDelta = ghost != null ? scorer.score - ghost.scoreAt(songTimeMs) : 0;
+		int n = Math.min(explosions.size(), FrameSnapshot.MAX_EXPLOSIONS);
+		for (int i = 0; i < n; i++) {
+			Explosion ex = explosions.get(i);
+			s.explosionX[i] = ex.x;
+			s.explosionY[i] = ex.y;
+			s.explosionR[i] = ex.r;
+		}
+		s.explosionCount = n;
+		n = Math.min(floatingNotes.size(), FrameSnapshot.MAX_PARTICLES);
+		for (int i = 0; i < n; i++) {
+			NoteParticle np = floatingNotes.get(i);
+			s.particleX[i] = np.x;
+			s.particleY[i] = np.y;
+			s.particleW[i] = np.Width;
+			s.particleH[i] = np.Height;
+			s.particleAlpha[i] = np.alpha;
+		}
+		s.particleCount = n;
+		exchange.publish();
+	}
+
+	/**
+	 * cullAll(now) <br>
+	 * private method <br>
+	 * registers a miss for every note that can no longer be hit, oldest note first across the lanes
+	 * - time order makes the result the same however the misses are batched (per tick live, per event
+	 *   in a replay), including which note is the one that ends the game
+	 * - only lanes with notes (set bits of laneMask) are visited
+	 * @param now (long) song time in ms
+	 */
+	private void cullAll(long now) {
+		while (!over) {
+			int oldest = -1;
+			for (int m = laneMask; m != 0; m &= m - 1) {
+				int lane = Integer.numberOfTrailingZeros(m);
+				if (oldest < 0 || laneNotes[lane].peek() < laneNotes[oldest].peek()) {
+					oldest = lane;
+				}
+			}
+			if (oldest < 0 || !Judge.isMissed(now - offsetMs - laneNotes[oldest].peek())) {
+				return;
+			}
+			registerMiss(oldest, now);
+		}
+	}
+
+	/**
+	 * registerMiss(lane,now) <br>
+	 * private method <br>
+	 * scores a miss on the oldest note of a lane and removes it
+	 * - the game is over after 10 misses
+	 * @param lane (int) lane of the note
+	 * @param now (long) song time in ms
+	 */
+	private void registerMiss(int lane, long now) {
+		NoteQueue q = laneNotes[lane];
+		boolean white = scorer.whiteMode;
+		boolean gold = scorer.goldMode;
+		scorer.registerMiss();
+		event(GameEventBus.MISS, lane, Judge.MISS, now, q.peek(), white, gold);
+		foul = true;
+		foulColumn = lane;
+		foulY = GameRules.tileY(scroll, q.peek(), scroll.position(now), pxPerMs);
+		// Clear note
+		pollNote(lane);
+		if (!practice && scorer.misses >= 10) {
+			over = true;
+			play = false;
+		} else {
+			foul = false;
+		}
+	}
+
+	/**
+	 * laneInput(nanos,lane,down) <br>
+	 * private method <br>
+	 * handles a lane key event drained from the InputQueue
+	 * @param nanos (long) System.nanoTime() of the key event
+	 * @param lane (int) lane index
+	 * @param down (boolean) true for a press, false for a release
+	 */
+	private void laneInput(long nanos, int lane, boolean down) {
+		if (lane < 0 || lane >= laneNotes.length) { return; }
+		// the event is judged at the time it was made, not when the game loop got to it
+		long now = Judge.pressSongTime(songTimeMs, tickNanos, nanos, playbackRate);
+		if (recording != null && !recordingFull && play && !over) {
+			recordingFull = !recording.add(now, lane, down);
+		}
+		input(now, lane, down);
+	}
+
+	/**
+	 * input(now,lane,down) <br>
+	 * private method <br>
+	 * judges a lane key event at its song time (live or from a replay)
+	 * - notes missed before the press are settled first, in every lane
+	 * @param now (long) song time of the event in ms
+	 * @param lane (int) lane index
+	 * @param down (boolean) true for a press, false for a release
+	 */
+	private void input(long now, int lane, boolean down) {
+		keyDownMask = down ? keyDownMask | 1 << lane : keyDownMask & ~(1 << lane);
+		// Ignore normal input if not playing
+		if (!down || !play || over) { return; }
+		// HIT?
+		cullAll(now);
+		if (over) { return; }
+		NoteQueue q = laneNotes[lane];
+		int grade = q.isEmpty() ? Judge.NONE : Judge.judge(now - offsetMs - q.peek());
+		if (grade == Judge.MISS) {
+			// too early for a Good: the note is lost
+			registerMiss(lane, now);
+		} else if (grade != Judge.NONE) {
+			// register hit (its effects follow the combo mode it was made in)
+			boolean white = scorer.whiteMode;
+			boolean gold = scorer.goldMode;
+			scorer.registerHit(grade);
+			event(GameEventBus.HIT, lane, grade, now, q.peek(), white, gold);
+			// trigger combo pulse effect
+			comboPulse = 1.5f;
+			// Clear tile
+			pollNote(lane);
+		} else {
+			// register wrong button pressed
+			boolean white = scorer.whiteMode;
+			boolean gold = scorer.goldMode;
+			scorer.registerWrong();
+			event(GameEventBus.WRONG, lane, Judge.NONE, now, q.isEmpty() ? 0 : q.peek(), white, gold);
+			// game over if missed >= 10 (never in practice)
+			if (!practice && scorer.misses >= 10) {
+				foul = true;
+				foulColumn = lane;
+				foulY = q.isEmpty() ? 0 : GameRules.tileY(scroll, q.peek(), scroll.position(now), pxPerMs);
+				over = true;
+				play = false;
+			}
+		}
+	}
+
+	/**
+	 * event(type,lane,grade,now,noteTime,white,gold) <br>
+	 * private method <br>
+	 * publishes a gameplay event, once the scorer has counted it (nothing when headless)
+	 * @param type (int) GameEventBus.HIT, MISS or WRONG
+	 * @param lane (int) lane
+	 * @param grade (int) Judge grade
+	 * @param now (long) song time of the event in ms
+	 * @param noteTime (long) time of the note in ms
+	 * @param white (boolean) white combo mode before the event counted
+	 * @param gold (boolean) gold combo mode before the event counted
+	 */
+	private void event(int type, int lane, int grade, long now, long noteTime, boolean white, boolean gold) {
+		if (events == null) {
+			return;
+		}
+		GameEventBus.Event e = events.claim();
+		e.type = type;
+		e.lane = lane;
+		e.grade = grade;
+		e.songTimeMs = now;
+		e.noteTimeMs = noteTime;
+		e.score = scorer.score;
+		e.combo = scorer.comboCount;
+		e.misses = scorer.misses;
+		e.whiteMode = white;
+		e.goldMode = gold;
+		events.publish(e);
+	}
+
+	/**
+	 * effect(e) <br>
+	 * private method <br>
+	 * starts the effects of a hit: an explosion on the tile, a floating note in white or gold combo mode
+	 * (effects consumer, game loop)
+	 * @param e (GameEventBus.Event) event
+	 */
+	private void effect(GameEventBus.Event e) {
+		if (e.type != GameEventBus.HIT) {
+			return;
+		}
+		int xCenter = layout.centerX[e.lane];
+		int tileY = GameRules.tileY(scroll, e.noteTimeMs, scroll.position(e.songTimeMs), pxPerMs);
+		addExplosion(xCenter, tileY + (GameRules.TILE_HEIGHT / 2));
+		// if combo reached, generate white tiles and a floating note at hit location
+		if (e.whiteMode) {
+			addParticle(xCenter, GameRules.BOTTOM_BOUND, 40);
+		}
+		// If high combo, generate gold tiles and a floating note effect at hit location
+		if (e.goldMode) {
+			addParticle(xCenter, GameRules.BOTTOM_BOUND, 60);
+		}
+	}
+
+	/**
+	 * addExplosion(x,y) <br>
+	 * private method <br>
+	 * starts a hit explosion, reusing a finished one when there is one
+	 * @param x (int) centre x
+	 * @param y (int) centre y
+	 */
+	private void addExplosion(int x, int y) {
+		if (explosionPool.isEmpty()) {
+			explosions.add(new Explosion(x, y, 0, 75));
+		} else {
+			Explosion ex = explosionPool.remove(explosionPool.size() - 1);
+			ex.set(x, y, 0, 75);
+			explosions.add(ex);
+		}
+	}
+
+	/**
+	 * addParticle(x,y,size) <br>
+	 * private method <br>
+	 * starts a floating note, reusing a faded one when there is one
+	 * @param x (int) starting x
+	 * @param y (int) starting y
+	 * @param size (int) starting width and height
+	 */
+	private void addParticle(int x, int y, int size) {
+		if (particlePool.isEmpty()) {
+			floatingNotes.add(new NoteParticle(x, y, size, size));
+		} else {
+			NoteParticle np = particlePool.remove(particlePool.size() - 1);
+			np.set(x, y, size, size);
+			floatingNotes.add(np);
+		}
+	}
+
+	/**
+	 * isEndless() <br>
+	 * @return (boolean) true in endless mode
+	 */
+	public boolean isEndless() {
+		return endless;
+	}
+
+	/**
+	 * setGhost(ghost) <br>
+	 * sets the personal best run to race, shown as a score delta on the HUD (call before start())
+	 * @param ghost (GhostCurve) score curve of the personal best, null for none
+	 */
+	public void setGhost(GhostCurve ghost) {
+		this.ghost = recording != null ? ghost : null;
+	}
+
+	/**
+	 * getScoreCurve() <br>
+	 * @return (GhostCurve) score over time of this run once it is over, null for practice runs, replays
+	 *         and endless runs too long to record
+	 */
+	public GhostCurve getScoreCurve() {
+		return over && !recordingFull ? scoreCurve : null;
+	}
+
+	/**
+	 * getRival() <br>
+	 * @return (GameSimulation) versus player 2's game, null for one player
+	 */
+	public GameSimulation getRival() {
+		return rival;
+	}
+
+	/**
+	 * isAutoplay() <br>
+	 * @return (boolean) true if the bot plays this game
+	 */
+	public boolean isAutoplay() {
+		return autoPlayer != null;
+	}
+
+	/**
+	 * isReplay() <br>
+	 * @return (boolean) true when playing a replay back
+	 */
+	public boolean isReplay() {
+		return replay != null;
+	}
+
+	/**
+	 * getRecording() <br>
+	 * returns the recorded run, complete once the game is over (read it after shutdown())
+	 * @return (Replay) recorded run, null in practice mode, replay playback and endless runs too long to record
+	 */
+	public Replay getRecording() {
+		return recordingFull ? null : recording;
+	}
+
+	/**
+	 * getChartHash() <br>
+	 * @return (long) hash of the notes judged so far
+	 */
+	public long getChartHash() {
+		return chartHash;
+	}
+
+	/**
+	 * getLayout() <br>
+	 * @return (LaneLayout) lanes of this game
+	 */
+	public LaneLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * getExchange() <br>
+	 * @return (SnapshotExchange) frames published by this simulation, null when headless
+	 */
+	public SnapshotExchange getExchange() {
+		return exchange;
+	}
+
+	/**
+	 * getEvents() <br>
+	 * gameplay events of this simulation, for consumers such as stats or telemetry (start() one on a
+	 * thread of its own, it is stopped by shutdown())
+	 * @return (GameEventBus) hits, misses and wrong keys, null when headless
+	 */
+	public GameEventBus getEvents() {
+		return events;
+	}
+
+	/**
+	 * getInputQueue() <br>
+	 * @return (InputQueue) queue the lane key events are read from
+	 */
+	public InputQueue getInputQueue() {
+		return inputQueue;
+	}
+
+	/**
+	 * isOver() <br>
+	 * @return (boolean) true once the song has ended or the game was lost
+	 */
+	public boolean isOver() {
+		return over;
+	}
+
+	/**
+	 * getScorer() <br>
+	 * returns the score keeper (read it after shutdown())
+	 * @return (ScoreCalculate) current score keeper
+	 */
+	public ScoreCalculate getScorer() {
+		return scorer;
+	}
+}
@@ -12,9 +12,18 @@ import java.awt.*;
  *  - uses gold accent for scores and combos
  */
 public class GameText {
+	private static final Color AHEAD_COLOR = new Color(90, 220, 120);
+	private static final Color BEHIND_COLOR = new Color(235, 90, 90);
+	private static final char[] PB_LABEL = "PB ".toCharArray();
+	private static final char[] REC_LABEL = "REC ".toCharArray();
+	private static final char[] DROPPED_LABEL = "  DROPPED ".toCharArray();
+	private static final Font CAPTURE_FONT = new Font("SansSerif", Font.BOLD, 12);
+	// text of the ghost delta and the capture line, written in place each frame (no String per frame)
+	private final char[] deltaText = new char[16];
+	private final char[] captureText = new char[40];
 
 	/**
-	 * drawScoreHud(g,score,comboCount,comboScale) <br>
+	 * drawScoreHud(g,score,comboCount,comboScale,accuracy,missed,keysHint) <br>
 	 * draws the score and combo HUD at the top of the game screen
 	 * - score is shown in gold
 	 * - if (comboCount > 0) combo count shown with trailing 'x'
@@ -25,8 +34,9 @@ public class GameText {
 	 * @param comboScale (float) combination scale passed in from the caller
 	 * @param accuracy (double) accuracy measurement passed in from the caller
 	 * @param missed (int) missed tiles count passed in from the caller
+	 * @param keysHint (String) lane keys of the playfield, e.g. "Keys: 1 2 3 4"
 	 */
-	public void drawScoreHud(Graphics g, int score, int comboCount, float comboScale, double accuracy, int missed) {
+	public void drawScoreHud(Graphics g, int score, int comboCount, float comboScale, double accuracy, int missed, String keysHint) {
 		Graphics2D g2 = (Graphics2D) g;
 		// draw "missed" and "accuracy" on top
 		//g2.setFont(g2.getFont().deriveFont(Font.BOLD, 16f));
@@ -35,7 +45,7 @@ public class GameText {
 		int pad = 12;
 		// use the actual height of the drawing area for bottom placement
 		Rectangle clip = g2.getClipBounds();
-		int bottomY = (clip != null ? clip.height : Config.HEIGHT) - 10;
+		int bottomY = (clip != null ? clip.height : GameRules.HEIGHT) - 10;
 		// top line: "missed", "accuracy"
 		g2.setFont(Config.UI_FONT);
 		g2.setColor(Color.RED.darker());
@@ -57,10 +67,10 @@ public class GameText {
 		String bottom = "Score: " + score;
 		g2.drawString(bottom, pad, 128);
 		// bottom left: Controls hint
-		String hint = "Keys: 1 2 3 4   Esc: Quit";
+		String hint = keysHint + "   Esc: Quit";
 		g2.setFont(g2.getFont().deriveFont(Font.PLAIN, 12f));
 		g2.setColor(new Color(220, 220, 220));
-		g2.drawString(hint, pad, Config.HEIGHT - 50);
+		g2.drawString(hint, pad, GameRules.HEIGHT - 50);
         g2.setFont(ThemeLoader.SCORE_FONT);
         // top right: Big combo text
 		// Combo display (only if comboCount > 0)
@@ -71,7 +81,7 @@ public class GameText {
             String comboText = comboCount + "x";
             // draw combo count on right side of screen inline with combo string
 	        int rw = g2.getFontMetrics().stringWidth(comboText);
-            g2.drawString(comboText, Config.WIDTH - rw - (pad * 2), 75);
+            g2.drawString(comboText, GameRules.WIDTH - rw - (pad * 2), 75);
         }
 	}
 
@@ -103,6 +113,110 @@ public class GameText {
 		g2.drawString(prompt, (600 - promptWidth) / 2, 420);
 	}
 
+	/**
+	 * drawPractice(g,songMs,rate,loopStartMs,loopEndMs) <br>
+	 * draws the practice mode lines above the controls hint: song time, rate, loop section and practice keys
+	 * @param g (Graphics) object passed in from the caller
+	 * @param songMs (long) song time in ms
+	 * @param rate (float) playback rate
+	 * @param loopStartMs (long) loop start in ms, -1 if not set
+	 * @param loopEndMs (long) loop end in ms, -1 if not set
+	 */
+	public void drawPractice(Graphics g, long songMs, float rate, long loopStartMs, long loopEndMs) {
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setFont(g2.getFont().deriveFont(Font.BOLD, 12f));
+		g2.setColor(Config.ACCENT_COLOR);
+		String status = String.format("PRACTICE %s  %.2fx   A %s  B %s", formatTime(songMs), rate,
+				loopStartMs >= 0 ? formatTime(loopStartMs) : "-", loopEndMs >= 0 ? formatTime(loopEndMs) : "-");
+		g2.drawString(status, 12, GameRules.HEIGHT - 82);
+		g2.drawString("[ ]: Loop  Backspace: Clear  Left/Right: 5 s  Home: Restart  - =: Rate", 12, GameRules.HEIGHT - 66);
+	}
+
+	/**
+	 * drawGhostDelta(g,delta) <br>
+	 * draws the score difference to the personal best under the score, green ahead and red behind
+	 * - the text is written into a reused char array, drawing it does not allocate
+	 * @param g (Graphics) object passed in from the caller
+	 * @param delta (int) score minus the personal best's score at this song time
+	 */
+	public void drawGhostDelta(Graphics g, int delta) {
+		int n = PB_LABEL.length;
+		System.arraycopy(PB_LABEL, 0, deltaText, 0, n);
+		deltaText[n++] = delta < 0 ? '-' : '+';
+		n = appendDigits(deltaText, n, Math.abs((long) delta));
+		g.setFont(Config.UI_FONT);
+		g.setColor(delta < 0 ? BEHIND_COLOR : AHEAD_COLOR);
+		g.drawChars(deltaText, 0, n, 12, 162);
+	}
+
+	/**
+	 * drawCapture(g,right,frames,dropped) <br>
+	 * draws the live capture line, right-aligned above the controls hint (drawn on screen only, after the
+	 * frame was captured)
+	 * - the text is written into a reused char array, drawing it does not allocate
+	 * @param g (Graphics) object passed in from the caller
+	 * @param right (int) x of the right end of the text
+	 * @param frames (int) frames captured so far
+	 * @param dropped (int) frames dropped because the encoder fell behind
+	 */
+	public void drawCapture(Graphics g, int right, int frames, int dropped) {
+		int n = REC_LABEL.length;
+		System.arraycopy(REC_LABEL, 0, captureText, 0, n);
+		n = appendDigits(captureText, n, frames);
+		System.arraycopy(DROPPED_LABEL, 0, captureText, n, DROPPED_LABEL.length);
+		n = appendDigits(captureText, n + DROPPED_LABEL.length, dropped);
+		g.setFont(CAPTURE_FONT);
+		g.setColor(BEHIND_COLOR);
+		g.drawChars(captureText, 0, n, right - g.getFontMetrics().charsWidth(captureText, 0, n), GameRules.HEIGHT - 82);
+	}
+
+	/**
+	 * appendDigits(text,n,v) <br>
+	 * private method <br>
+	 * writes a number after the first n chars of a buffer
+	 * @param text (char[]) buffer, with room for the digits
+	 * @param n (int) chars already in the buffer
+	 * @param v (long) number, 0 or more
+	 * @return (int) chars in the buffer after the number
+	 */
+	private static int appendDigits(char[] text, int n, long v) {
+		// digits from the right end of the buffer, then moved next to the text
+		int end = text.length;
+		int start = end;
+		do {
+			text[--start] = (char) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0);
+		System.arraycopy(text, start, text, n, end - start);
+		return n + end - start;
+	}
+
+	/**
+	 * drawReplay(g,songMs) <br>
+	 * draws the replay line above the controls hint
+	 * @param g (Graphics) object passed in from the caller
+	 * @param songMs (long) song time in ms
+	 */
+	public void drawReplay(Graphics g, long songMs) {
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setFont(g2.getFont().deriveFont(Font.BOLD, 12f));
+		g2.setColor(Config.ACCENT_COLOR);
+		g2.drawString("REPLAY " + formatTime(songMs) + "   ESC: Stop", 12, GameRules.HEIGHT - 82);
+	}
+
+	/**
+	 * formatTime(ms) <br>
+	 * private method <br>
+	 * @param ms (long) time in ms
+	 * @return (String) m:ss.t
+	 */
+	private static String formatTime(long ms) {
+		long t = Math.max(0, ms) / 100;
+		return String.format("%d:%02d.%d", t / 600, (t / 10) % 60, t % 10);
+	}
+
 	/**
 	 * drawPaused(g,score) <br>
 	 * draw the Paused overlay
@@ -133,6 +247,24 @@ public class GameText {
 		g2.drawString(prompt, (600 - promptWidth) / 2, 420);
 	}
 
+	/**
+	 * drawVersusResult(g,score1,score2) <br>
+	 * draws the versus winner across both playfields, once both games are over
+	 * @param g (Graphics) object passed in from the caller
+	 * @param score1 (int) player 1's final score
+	 * @param score2 (int) player 2's final score
+	 */
+	public void drawVersusResult(Graphics g, int score1, int score2) {
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setFont(new Font("SansSerif", Font.BOLD, 60));
+		g2.setColor(Config.ACCENT_COLOR);
+		String text = score1 > score2 ? "PLAYER 1 WINS" : score2 > score1 ? "PLAYER 2 WINS" : "DRAW";
+		int textWidth = g2.getFontMetrics().stringWidth(text);
+		g2.drawString(text, GameRules.WIDTH - textWidth / 2, 200);
+		g2.dispose();
+	}
+
 	/**
 	 * drawWin(g,score) <br>
 	 * draws the Winner overlay
@@ -0,0 +1,148 @@
+/*
+ * GhostCurve.java
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * GhostCurve class <br>
+ * score over song time of one run, sampled every SAMPLE_MS, to race the personal best (the "ghost")
+ * - recorded by the GameSimulation while a run is played, stored with the personal best (see StatsManager)
+ * - scoreAt(songMs) is an array lookup with a linear step between two samples: O(1), no allocation
+ * - stored as a varint count and zig-zag varint deltas, Base64 text for the stats properties file;
+ *   a 2 minute song is a few hundred bytes
+ * - at most MAX_SAMPLES samples (9 hours); recording stops there, so an endless run stays bounded
+ */
+public final class GhostCurve {
+	static final int SAMPLE_MS = 500;
+	static final int MAX_SAMPLES = 1 << 16;
+	private int[] scores; // scores[i] = score at song time i * SAMPLE_MS
+	private int count;
+
+	/**
+	 * GhostCurve(lengthMs) <br>
+	 * constructor for a curve about to be recorded
+	 * @param lengthMs (long) expected song length in ms, the curve grows past it if needed
+	 */
+	GhostCurve(long lengthMs) {
+		scores = new int[(int) Math.min(MAX_SAMPLES + 1, Math.max(16, lengthMs / SAMPLE_MS + 2))];
+	}
+
+	/**
+	 * record(songTimeMs,score) <br>
+	 * adds the samples due by a song time (game loop thread, once per tick)
+	 * @param songTimeMs (long) song time in ms
+	 * @param score (int) score at that time
+	 * @return (boolean) false once the curve is full (MAX_SAMPLES) and samples were not added
+	 */
+	boolean record(long songTimeMs, int score) {
+		while ((long) count * SAMPLE_MS <= songTimeMs) {
+			if (count == MAX_SAMPLES) {
+				return false;
+			}
+			add(score);
+		}
+		return true;
+	}
+
+	/**
+	 * finish(score) <br>
+	 * adds the final score as the last sample, a lookup past the end returns it
+	 * @param score (int) final score
+	 */
+	void finish(int score) {
+		add(score);
+	}
+
+	/**
+	 * add(score) <br>
+	 * private method <br>
+	 * @param score (int) next sample
+	 */
+	private void add(int score) {
+		if (count == scores.length) {
+			scores = Arrays.copyOf(scores, count * 2);
+		}
+		scores[count++] = score;
+	}
+
+	/**
+	 * scoreAt(songTimeMs) <br>
+	 * score of the run at a song time
+	 * @param songTimeMs (long) song time in ms
+	 * @return (int) score, 0 before the song starts, the final score after it ends
+	 */
+	int scoreAt(long songTimeMs) {
+		if (count == 0 || songTimeMs <= 0) {
+			return 0;
+		}
+		long i = songTimeMs / SAMPLE_MS;
+		if (i >= count - 1) {
+			return scores[count - 1];
+		}
+		int a = scores[(int) i];
+		int b = scores[(int) i + 1];
+		return a + (int) ((long) (b - a) * (songTimeMs - i * SAMPLE_MS) / SAMPLE_MS);
+	}
+
+	/**
+	 * encode() <br>
+	 * @return (String) the curve as Base64 text
+	 */
+	String encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 2 + 4);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			VarInt.writeUnsigned(out, count);
+			int previous = 0;
+			for (int i = 0; i < count; i++) {
+				VarInt.writeSigned(out, scores[i] - previous);
+				previous = scores[i];
+			}
+		} catch (IOException e) {
+			// a ByteArrayOutputStream does not throw
+			System.err.println("Error encoding ghost: " + e.getMessage());
+		}
+		return Base64.getEncoder().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * decode(text) <br>
+	 * reads a curve written by encode
+	 * @param text (String) Base64 text
+	 * @return (GhostCurve) the curve, null if the text is not a curve
+	 */
+	static GhostCurve decode(String text) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(text.trim())))) {
+			long n = VarInt.readUnsigned(in);
+			if (n < 0 || n > MAX_SAMPLES + 1) {
+				throw new IOException("bad sample count " + n);
+			}
+			GhostCurve curve = new GhostCurve(0);
+			curve.scores = new int[(int) Math.max(1, n)];
+			int score = 0;
+			for (int i = 0; i < n; i++) {
+				score += (int) VarInt.readSigned(in);
+				curve.scores[i] = score;
+			}
+			curve.count = (int) n;
+			return curve;
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Error reading ghost: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * size() <br>
+	 * @return (int) number of samples
+	 */
+	int size() {
+		return count;
+	}
+}
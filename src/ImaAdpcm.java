@@ -0,0 +1,176 @@
+/*
+ * ImaAdpcm.java
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * ImaAdpcm class <br>
+ * IMA ADPCM codec used by SongPack
+ * - 4 bits per sample (4:1 against 16 bit PCM), decoding is a few adds per sample
+ * - a block stores the predictor and step index of every channel, so blocks decode independently
+ * - block layout: per channel {int16 predictor, uint8 step index, uint8 0},
+ *   then one nibble per sample, frames interleaved, low nibble first
+ */
+public final class ImaAdpcm {
+	// step index adjustment per nibble (sign bit ignored)
+	private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8};
+	// quantizer step sizes
+	private static final int[] STEP_TABLE = {
+			7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+			50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253,
+			279, 307, 337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166,
+			1282, 1411, 1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327, 3660, 4026,
+			4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+			15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+	};
+
+	/**
+	 * ImaAdpcm() <br>
+	 * private constructor
+	 * - prevents instantiation
+	 */
+	private ImaAdpcm() {}
+
+	/**
+	 * blockBytes(channels,framesPerBlock) <br>
+	 * returns the encoded size of one block
+	 * @param channels (int) channel count
+	 * @param framesPerBlock (int) frames in a block
+	 * @return (int) bytes per block
+	 */
+	static int blockBytes(int channels, int framesPerBlock) {
+		return 4 * channels + (framesPerBlock * channels + 1) / 2;
+	}
+
+	/**
+	 * encodeBlock(pcm,channels,framesPerBlock,predictor,index,out) <br>
+	 * encodes one block of interleaved samples
+	 * - predictor / index carry the encoder state from block to block and are updated
+	 * @param pcm (short[]) interleaved samples, framesPerBlock * channels long
+	 * @param channels (int) channel count
+	 * @param framesPerBlock (int) frames in the block
+	 * @param predictor (int[]) per channel predictor, updated
+	 * @param index (int[]) per channel step index, updated
+	 * @param out (byte[]) destination, blockBytes(channels, framesPerBlock) long
+	 */
+	static void encodeBlock(short[] pcm, int channels, int framesPerBlock, int[] predictor, int[] index, byte[] out) {
+		for (int c = 0; c < channels; c++) {
+			out[4 * c] = (byte) predictor[c];
+			out[4 * c + 1] = (byte) (predictor[c] >> 8);
+			out[4 * c + 2] = (byte) index[c];
+			out[4 * c + 3] = 0;
+		}
+		int header = 4 * channels;
+		int samples = framesPerBlock * channels;
+		for (int k = 0; k < samples; k++) {
+			int c = k % channels;
+			int step = STEP_TABLE[index[c]];
+			int diff = pcm[k] - predictor[c];
+			int nibble = 0;
+			if (diff < 0) {
+				nibble = 8;
+				diff = -diff;
+			}
+			if (diff >= step) {
+				nibble |= 4;
+				diff -= step;
+			}
+			if (diff >= step >> 1) {
+				nibble |= 2;
+				diff -= step >> 1;
+			}
+			if (diff >= step >> 2) {
+				nibble |= 1;
+			}
+			// follow the decoder so both sides keep the same state
+			predictor[c] = nextPredictor(predictor[c], step, nibble);
+			index[c] = nextIndex(index[c], nibble);
+			int pos = header + (k >> 1);
+			if ((k & 1) == 0) {
+				out[pos] = (byte) nibble;
+			} else {
+				out[pos] |= (byte) (nibble << 4);
+			}
+		}
+	}
+
+	/**
+	 * decodeBlock(src,pos,channels,framesPerBlock,frames,out) <br>
+	 * decodes the first frames of a block into little-endian 16 bit PCM
+	 * - reads with absolute gets, the source buffer position is left unchanged
+	 * @param src (ByteBuffer) encoded data (e.g. a memory-mapped pack)
+	 * @param pos (int) offset of the block in src
+	 * @param channels (int) channel count
+	 * @param framesPerBlock (int) frames stored in the block
+	 * @param frames (int) frames to decode (less than framesPerBlock for the last block)
+	 * @param out (byte[]) destination, frames * channels * 2 bytes
+	 */
+	static void decodeBlock(ByteBuffer src, int pos, int channels, int framesPerBlock, int frames, byte[] out) {
+		// channel state lives on the stack, at most 8 channels are supported by SongPack
+		int p0 = 0, p1 = 0, i0 = 0, i1 = 0;
+		int[] extraP = channels > 2 ? new int[channels] : null;
+		int[] extraI = channels > 2 ? new int[channels] : null;
+		for (int c = 0; c < channels; c++) {
+			int p = (short) ((src.get(pos + 4 * c) & 0xFF) | (src.get(pos + 4 * c + 1) << 8));
+			int i = src.get(pos + 4 * c + 2) & 0xFF;
+			if (c == 0) { p0 = p; i0 = i; }
+			else if (c == 1) { p1 = p; i1 = i; }
+			else { extraP[c] = p; extraI[c] = i; }
+		}
+		int header = pos + 4 * channels;
+		int samples = Math.min(frames, framesPerBlock) * channels;
+		for (int k = 0; k < samples; k++) {
+			int b = src.get(header + (k >> 1));
+			int nibble = (k & 1) == 0 ? b & 0x0F : (b >> 4) & 0x0F;
+			int c = channels == 1 ? 0 : (channels == 2 ? k & 1 : k % channels);
+			int sample;
+			if (c == 0) {
+				p0 = nextPredictor(p0, STEP_TABLE[i0], nibble);
+				i0 = nextIndex(i0, nibble);
+				sample = p0;
+			} else if (c == 1) {
+				p1 = nextPredictor(p1, STEP_TABLE[i1], nibble);
+				i1 = nextIndex(i1, nibble);
+				sample = p1;
+			} else {
+				extraP[c] = nextPredictor(extraP[c], STEP_TABLE[extraI[c]], nibble);
+				extraI[c] = nextIndex(extraI[c], nibble);
+				sample = extraP[c];
+			}
+			out[2 * k] = (byte) sample;
+			out[2 * k + 1] = (byte) (sample >> 8);
+		}
+	}
+
+	/**
+	 * nextPredictor(predictor,step,nibble) <br>
+	 * private method <br>
+	 * applies one nibble to the predictor
+	 * @param predictor (int) current predictor
+	 * @param step (int) current step size
+	 * @param nibble (int) 4 bit code
+	 * @return (int) new predictor, clamped to 16 bits
+	 */
+	private static int nextPredictor(int predictor, int step, int nibble) {
+		int diff = step >> 3;
+		if ((nibble & 4) != 0) diff += step;
+		if ((nibble & 2) != 0) diff += step >> 1;
+		if ((nibble & 1) != 0) diff += step >> 2;
+		predictor += (nibble & 8) != 0 ? -diff : diff;
+		return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+	}
+
+	/**
+	 * nextIndex(index,nibble) <br>
+	 * private method <br>
+	 * applies one nibble to the step index
+	 * @param index (int) current step index
+	 * @param nibble (int) 4 bit code
+	 * @return (int) new step index, clamped to the table
+	 */
+	private static int nextIndex(int index, int nibble) {
+		index += INDEX_TABLE[nibble & 7];
+		return Math.max(0, Math.min(STEP_TABLE.length - 1, index));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * InputQueue.java
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InputQueue class <br>
+ * lock-free single-producer / single-consumer ring of lane key events
+ * - the producer (GameInput, as the key event is dispatched) stores the press time and the lane
+ * - the consumer (the game loop) drains everything queued once per tick
+ * - slots are preallocated parallel arrays, offering and draining do not allocate
+ */
+public class InputQueue {
+	/**
+	 * Handler interface <br>
+	 * receives drained events
+	 */
+	interface Handler {
+		/**
+		 * input(nanos,lane,down) <br>
+		 * @param nanos (long) System.nanoTime() of the key event
+		 * @param lane (int) lane index
+		 * @param down (boolean) true for a press, false for a release
+		 */
+		void input(long nanos, int lane, boolean down);
+	}
+
+	private final long[] times;
+	private final int[] events; // lane << 1 | down
+	private final int mask;
+	// next slot the producer writes (only the producer advances it)
+	private final AtomicLong head = new AtomicLong();
+	// next slot the consumer reads (only the consumer advances it)
+	private final AtomicLong tail = new AtomicLong();
+	// events dropped because the consumer was not draining
+	private long dropped = 0;
+
+	/**
+	 * InputQueue(capacity) <br>
+	 * constructor
+	 * @param capacity (int) number of slots, rounded up to a power of two
+	 */
+	public InputQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		times = new long[size];
+		events = new int[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * offer(nanos,lane,down) <br>
+	 * producer side: queues an event
+	 * @param nanos (long) System.nanoTime() of the key event
+	 * @param lane (int) lane index
+	 * @param down (boolean) true for a press, false for a release
+	 * @return (boolean) false if the ring was full and the event was dropped
+	 */
+	public boolean offer(long nanos, int lane, boolean down) {
+		long h = head.get();
+		if (h - tail.get() > mask) {
+			dropped++;
+			return false;
+		}
+		int slot = (int) (h & mask);
+		times[slot] = nanos;
+		events[slot] = (lane << 1) | (down ? 1 : 0);
+		head.lazySet(h + 1); // ordered store: the slot is visible before the new head
+		return true;
+	}
+
+	/**
+	 * drain(handler) <br>
+	 * consumer side: hands every queued event to the handler, oldest first
+	 * @param handler (Handler) event handler
+	 * @return (int) number of events drained
+	 */
+	public int drain(Handler handler) {
+		long h = head.get();
+		long t = tail.get();
+		for (long i = t; i < h; i++) {
+			int slot = (int) (i & mask);
+			handler.input(times[slot], events[slot] >> 1, (events[slot] & 1) != 0);
+		}
+		tail.lazySet(h);
+		return (int) (h - t);
+	}
+
+	/**
+	 * clear() <br>
+	 * consumer side: discards queued events
+	 */
+	public void clear() {
+		tail.lazySet(head.get());
+	}
+
+	/**
+	 * getDropped() <br>
+	 * returns how many events the producer had to drop
+	 * @return (long) dropped event count
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Judge.java
+ */
+
+/**
+ * Judge class <br>
+ * grades key presses by time, not by tile position
+ * - the press is placed on the song clock with its input timestamp, the note time comes from the chart
+ * - windows are in milliseconds (GameRules.PERFECT_MS .. GameRules.MISS_MS), so judgement does not depend
+ *   on frame rate or scroll speed
+ */
+public final class Judge {
+	// grades, in the order ScoreCalculate.registerHit(quality) expects
+	static final int PERFECT = 0;
+	static final int GREAT = 1;
+	static final int GOOD = 2;
+	static final int MISS = 3;
+	// press too early to belong to the note
+	static final int NONE = -1;
+
+	/**
+	 * judge(errorMs) <br>
+	 * grades a press against a note
+	 * @param errorMs (long) press time minus note time (negative = early), latency offset already removed
+	 * @return (int) PERFECT, GREAT, GOOD, MISS, or NONE if the press is earlier than the miss window
+	 */
+	static int judge(long errorMs) {
+		if (errorMs < -GameRules.MISS_MS) {
+			return NONE;
+		}
+		long abs = Math.abs(errorMs);
+		if (abs <= GameRules.PERFECT_MS) {
+			return PERFECT;
+		}
+		if (abs <= GameRules.GREAT_MS) {
+			return GREAT;
+		}
+		if (abs <= GameRules.GOOD_MS) {
+			return GOOD;
+		}
+		return MISS;
+	}
+
+	/**
+	 * isMissed(errorMs) <br>
+	 * @param errorMs (long) song time minus note time, latency offset already removed
+	 * @return (boolean) true once a note can no longer be hit
+	 */
+	static boolean isMissed(long errorMs) {
+		return errorMs > GameRules.GOOD_MS;
+	}
+
+	/**
+	 * pressSongTime(songNowMs,nowNanos,pressNanos,rate) <br>
+	 * places a queued input event on the song clock
+	 * - the event's age is taken off the current song time, so a press is not judged late
+	 *   because it waited in the InputQueue behind a long paint or a GC pause
+	 * - the age is scaled by the playback rate (song ms per real ms)
+	 * @param songNowMs (long) song time read at nowNanos
+	 * @param nowNanos (long) System.nanoTime() when songNowMs was read
+	 * @param pressNanos (long) System.nanoTime() of the key event (see GameInput)
+	 * @param rate (float) playback rate, 1 for normal speed
+	 * @return (long) song time of the press
+	 */
+	static long pressSongTime(long songNowMs, long nowNanos, long pressNanos, float rate) {
+		return songNowMs - (long) (Math.max(0L, nowNanos - pressNanos) * (double) rate / 1_000_000L);
+	}
+}
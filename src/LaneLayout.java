@@ -0,0 +1,131 @@
+/*
+ * LaneLayout.java
+ */
+
+/**
+ * LaneLayout class <br>
+ * screen geometry and keys of a lane count (4K .. 10K), computed once per lane count
+ * - lanes split the board width evenly, every x position the game and the renderer need is a table lookup
+ * - each lane has a home-row key (e.g. S D F space J K L for 7K), the number keys 1 .. 9, 0 also work
+ * - a versus player 2 gets its own layout with other keys (withKeys), without the number row
+ * - lane state is kept in int bitmasks (bit n = lane n), so at most 32 lanes; GameRules.LANES is clamped
+ *   to MIN_LANES .. MAX_LANES
+ * - keys are AWT key codes (KeyEvent.VK_...), which for the keys used here are the upper-case characters
+ *   themselves, so the layout is plain ints and the headless engine loads no AWT class for it
+ */
+public final class LaneLayout {
+	static final int MIN_LANES = 4;
+	static final int MAX_LANES = 10;
+	// home-row keys per lane count, ' ' = space bar
+	private static final String[] KEYS = {
+			"1234", // 4K, as before
+			"DF JK",
+			"SDFJKL",
+			"SDF JKL",
+			"ASDFJKL;",
+			"ASDF JKL;",
+			"ASDFVNJKL;"
+	};
+	private static final LaneLayout[] layouts = new LaneLayout[MAX_LANES + 1];
+	// lane geometry
+	final int lanes;
+	final int laneWidth;
+	final int[] laneX; // left edge of each lane
+	final int[] centerX;
+	final int[] separatorX; // lines between lanes
+	final int tileInset = 6;
+	final int tileWidth;
+	// lane buttons
+	final int buttonY = 625;
+	final int buttonSize;
+	final int buttonFontSize;
+	final int[] buttonX;
+	final String[] labels;
+	final String keysHint; // e.g. "Keys: 1 2 3 4"
+	// keys
+	final int[] keys;
+	final int allLanes; // mask with every lane bit set
+	private final boolean numberRow; // the number keys also play the lanes
+
+	/**
+	 * LaneLayout(lanes,row,numberRow) <br>
+	 * private constructor, use of(lanes) or withKeys(row)
+	 * @param lanes (int) lane count, MIN_LANES .. MAX_LANES
+	 * @param row (String) one key per lane, ' ' = space bar
+	 * @param numberRow (boolean) true if the number keys also play the lanes
+	 */
+	private LaneLayout(int lanes, String row, boolean numberRow) {
+		this.lanes = lanes;
+		laneWidth = GameRules.WIDTH / lanes;
+		tileWidth = laneWidth - 2 * tileInset;
+		buttonSize = Math.min(60, laneWidth - 8);
+		buttonFontSize = buttonSize * 34 / 60;
+		laneX = new int[lanes];
+		centerX = new int[lanes];
+		buttonX = new int[lanes];
+		separatorX = new int[lanes - 1];
+		labels = new String[lanes];
+		keys = new int[lanes];
+		this.numberRow = numberRow;
+		for (int i = 0; i < lanes; i++) {
+			laneX[i] = i * laneWidth;
+			centerX[i] = laneX[i] + laneWidth / 2;
+			buttonX[i] = centerX[i] - buttonSize / 2;
+			if (i > 0) {
+				separatorX[i - 1] = laneX[i];
+			}
+			char c = row.charAt(i);
+			keys[i] = c; // VK_SPACE, VK_SEMICOLON, VK_A .. VK_Z and VK_0 .. VK_9 equal their characters
+			labels[i] = c == ' ' ? "_" : String.valueOf(c);
+		}
+		allLanes = (1 << lanes) - 1;
+		keysHint = "Keys: " + String.join(" ", labels);
+	}
+
+	/**
+	 * of(lanes) <br>
+	 * returns the layout of a lane count, built on first use
+	 * @param lanes (int) lane count, clamped to MIN_LANES .. MAX_LANES
+	 * @return (LaneLayout) shared layout
+	 */
+	static synchronized LaneLayout of(int lanes) {
+		lanes = Math.max(MIN_LANES, Math.min(lanes, MAX_LANES));
+		if (layouts[lanes] == null) {
+			layouts[lanes] = new LaneLayout(lanes, KEYS[lanes - MIN_LANES], true);
+		}
+		return layouts[lanes];
+	}
+
+	/**
+	 * withKeys(row) <br>
+	 * returns a layout with its own keys, one lane per key (e.g. versus player 2)
+	 * @param row (String) one letter, digit, ';' or ' ' per lane, MIN_LANES .. MAX_LANES keys
+	 * @return (LaneLayout) new layout
+	 */
+	static LaneLayout withKeys(String row) {
+		if (row.length() < MIN_LANES || row.length() > MAX_LANES) {
+			throw new IllegalArgumentException("lane keys must be " + MIN_LANES + " to " + MAX_LANES + " keys: " + row);
+		}
+		return new LaneLayout(row.length(), row, false);
+	}
+
+	/**
+	 * laneFor(keyCode) <br>
+	 * maps a key to its lane
+	 * @param keyCode (int) KeyEvent key code
+	 * @return (int) lane index, -1 if the key is not a lane key
+	 */
+	int laneFor(int keyCode) {
+		for (int i = 0; i < lanes; i++) {
+			if (keys[i] == keyCode) {
+				return i;
+			}
+		}
+		if (!numberRow) {
+			return -1;
+		}
+		// number row: 1 .. 9 then 0
+		int digit = keyCode == '0' ? 9 : keyCode - '1';
+		return keyCode >= '0' && keyCode <= '9' && digit < lanes ? digit : -1;
+	}
+}
@@ -33,7 +33,7 @@ public class LoginPage extends JFrame implements ActionListener {
 	 * @param loginInfoOriginal (String,String) original user information from IDandPasswords
 	 */
 	public LoginPage(HashMap<String, String> loginInfoOriginal) {
-		setSize(Config.WIDTH, Config.HEIGHT);
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		setLayout(null);
 		setBackground(Config.BACKGROUND_COLOR);
@@ -63,7 +63,7 @@ public class LoginPage extends JFrame implements ActionListener {
 		add(userPasswordField);
 		add(loginButton);
 		add(resetButton);
-		setSize(Config.WIDTH, Config.HEIGHT);
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setLayout(null);
 		setVisible(true);
 	}
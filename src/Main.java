@@ -18,6 +18,8 @@ public class Main {
 	 * @param args (String[]) command line arguments
 	 */
 	static void main(String[] args) {
+		// warm up the shared audio engine while the login page is shown
+		AudioEngine.start();
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				//Application application = new Application();
@@ -31,7 +31,7 @@ public class MainMenuPanel extends JPanel {
      * - focused buttons
      */
     public MainMenuPanel() {
-	    setSize(Config.WIDTH, Config.HEIGHT);
+	    setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setLayout(null);
 	    setBackground(Config.BACKGROUND_COLOR);
 		// create and style the "PLAY" button
@@ -84,7 +84,7 @@ public class MainMenuPanel extends JPanel {
         String title = "MANUVO";
         // Center the title horizontally at top
         int titleWidth = g2.getFontMetrics().stringWidth(title);
-        g2.drawString(title,(Config.WIDTH - titleWidth)/2, 100);
+        g2.drawString(title,(GameRules.WIDTH - titleWidth)/2, 100);
     }
 
 	/**
@@ -0,0 +1,298 @@
+/*
+ * MidiNoteSource.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MidiNoteSource class <br>
+ * streams the note-on events of a standard MIDI file as a lane chart
+ * - the file is memory-mapped and parsed event by event, no event list is built
+ * - the tracks are merged on the fly by tick, the tempo map is applied as tempo events go by
+ * - pitches are bucketed into lanes over the pitch range found by a first, equally streaming pass
+ * - the percussion channel (10) is ignored
+ */
+public class MidiNoteSource implements NoteSource {
+	private static final int DRUM_CHANNEL = 9;
+	private final MappedByteBuffer data;
+	private final int division; // ticks per quarter note (or per second for SMPTE files)
+	private final boolean smpte;
+	// per track cursor
+	private final int[] start;
+	private final int[] pos;
+	private final int[] end;
+	private final long[] nextTick; // absolute tick of the pending event, -1 when the track is done
+	private final int[] runningStatus;
+	// tempo map state, advanced in tick order
+	private long tempoTick = 0;
+	private long tempoMicros = 0;
+	private long microsPerQuarter = 500_000; // 120 BPM until the first tempo event
+	// lane mapping and playability filters
+	private final int laneCount;
+	private int minPitch = 0;
+	private int maxPitch = 127;
+	private final long minGapMs; // same lane
+	private final long minStepMs; // any lane
+	private final long[] lastInLane;
+	private long lastNote = Long.MIN_VALUE / 2;
+	// next note handed out by peekTime() / peekLane()
+	private boolean hasNext;
+	private long nextTime;
+	private int nextLane;
+	// scratch result of readEvent()
+	private long lastTick;
+	private int eventStatus;
+	private int eventData1;
+	private int eventData2;
+
+	/**
+	 * MidiNoteSource(file,laneCount,minGapMs,minStepMs) <br>
+	 * constructor
+	 * - maps the file, reads the header and scans the pitch range
+	 * @param file (File) standard MIDI file (.mid)
+	 * @param laneCount (int) lanes to bucket the pitches into
+	 * @param minGapMs (long) notes closer than this in the same lane are dropped
+	 * @param minStepMs (long) notes closer than this to the previous note are dropped (thins out easy levels)
+	 * @throws IOException if the file cannot be read or is not a MIDI file
+	 */
+	public MidiNoteSource(File file, int laneCount, long minGapMs, long minStepMs) throws IOException {
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		if (data.getInt(0) != 0x4D546864) { // "MThd"
+			throw new IOException("Not a MIDI file: " + file);
+		}
+		int headerLength = data.getInt(4);
+		int trackCount = data.getShort(10) & 0xFFFF;
+		int rawDivision = data.getShort(12);
+		smpte = rawDivision < 0;
+		division = smpte ? (-(rawDivision >> 8)) * (rawDivision & 0xFF) : rawDivision;
+		this.laneCount = laneCount;
+		this.minGapMs = minGapMs;
+		this.minStepMs = minStepMs;
+		lastInLane = new long[laneCount];
+		start = new int[trackCount];
+		pos = new int[trackCount];
+		end = new int[trackCount];
+		nextTick = new long[trackCount];
+		runningStatus = new int[trackCount];
+		// locate the track chunks (skipping unknown chunks)
+		int p = 8 + headerLength;
+		int t = 0;
+		while (t < trackCount && p + 8 <= data.limit()) {
+			int id = data.getInt(p);
+			int length = data.getInt(p + 4);
+			if (id == 0x4D54726B) { // "MTrk"
+				start[t] = p + 8;
+				end[t] = Math.min(data.limit(), p + 8 + length);
+				t++;
+			}
+			p += 8 + length;
+		}
+		if (t < trackCount) {
+			throw new IOException("Truncated MIDI file: " + file);
+		}
+		scanPitchRange();
+		rewind();
+		fetch();
+	}
+
+	/**
+	 * scanPitchRange() <br>
+	 * private method <br>
+	 * first pass: finds the lowest and highest melodic note
+	 */
+	private void scanPitchRange() {
+		rewind();
+		int lo = 127;
+		int hi = 0;
+		int track;
+		while ((track = nextTrack()) >= 0) {
+			readEvent(track);
+			if (isNoteOn()) {
+				lo = Math.min(lo, eventData1);
+				hi = Math.max(hi, eventData1);
+			}
+		}
+		if (lo <= hi) {
+			minPitch = lo;
+			maxPitch = hi;
+		}
+	}
+
+	/**
+	 * rewind() <br>
+	 * private method <br>
+	 * puts every track cursor back to its first event
+	 */
+	private void rewind() {
+		for (int t = 0; t < pos.length; t++) {
+			pos[t] = start[t];
+			runningStatus[t] = 0;
+			nextTick[t] = pos[t] < end[t] ? readVarLen(t) : -1;
+		}
+		tempoTick = 0;
+		tempoMicros = 0;
+		microsPerQuarter = 500_000;
+		Arrays.fill(lastInLane, Long.MIN_VALUE / 2);
+		lastNote = Long.MIN_VALUE / 2;
+		hasNext = false;
+	}
+
+	/**
+	 * nextTrack() <br>
+	 * private method <br>
+	 * picks the track whose pending event comes first
+	 * @return (int) track index, -1 when all tracks are done
+	 */
+	private int nextTrack() {
+		int best = -1;
+		for (int t = 0; t < nextTick.length; t++) {
+			if (nextTick[t] >= 0 && (best < 0 || nextTick[t] < nextTick[best])) {
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * readEvent(track) <br>
+	 * private method <br>
+	 * decodes the pending event of a track into eventStatus / eventData1 / eventData2
+	 * - applies tempo events, then reads the delta time of the following event
+	 * @param track (int) track index
+	 */
+	private void readEvent(int track) {
+		long tick = nextTick[track];
+		int p = pos[track];
+		int status = data.get(p) & 0xFF;
+		if (status < 0x80) {
+			status = runningStatus[track]; // running status: reuse the last status byte
+		} else {
+			p++;
+		}
+		eventStatus = status;
+		if (status == 0xFF) {
+			int type = data.get(p++) & 0xFF;
+			pos[track] = p;
+			int length = readVarLen(track);
+			p = pos[track];
+			if (type == 0x51 && length == 3) {
+				long micros = ticksToMicros(tick);
+				tempoTick = tick;
+				tempoMicros = micros;
+				microsPerQuarter = ((data.get(p) & 0xFF) << 16) | ((data.get(p + 1) & 0xFF) << 8) | (data.get(p + 2) & 0xFF);
+			}
+			p += length;
+			if (type == 0x2F) {
+				p = end[track]; // end of track
+			}
+		} else if (status == 0xF0 || status == 0xF7) {
+			pos[track] = p;
+			int length = readVarLen(track);
+			p = pos[track] + length;
+		} else {
+			runningStatus[track] = status;
+			eventData1 = data.get(p++) & 0x7F;
+			int kind = status & 0xF0;
+			eventData2 = (kind == 0xC0 || kind == 0xD0) ? 0 : data.get(p++) & 0x7F;
+		}
+		pos[track] = p;
+		nextTick[track] = p < end[track] ? tick + readVarLen(track) : -1;
+		lastTick = tick;
+	}
+
+	/**
+	 * isNoteOn() <br>
+	 * private method <br>
+	 * @return (boolean) true if the last decoded event starts a melodic note
+	 */
+	private boolean isNoteOn() {
+		return (eventStatus & 0xF0) == 0x90 && eventData2 > 0 && (eventStatus & 0x0F) != DRUM_CHANNEL;
+	}
+
+	/**
+	 * readVarLen(track) <br>
+	 * private method <br>
+	 * reads a MIDI variable-length quantity at the track cursor
+	 * @param track (int) track index
+	 * @return (int) decoded value
+	 */
+	private int readVarLen(int track) {
+		int p = pos[track];
+		int value = 0;
+		int b;
+		do {
+			b = data.get(p++) & 0xFF;
+			value = (value << 7) | (b & 0x7F);
+		} while ((b & 0x80) != 0 && p < end[track]);
+		pos[track] = p;
+		return value;
+	}
+
+	/**
+	 * ticksToMicros(tick) <br>
+	 * private method <br>
+	 * converts an absolute tick with the tempo in force at that tick
+	 * @param tick (long) absolute tick, not before the last tempo change
+	 * @return (long) microseconds from the start of the file
+	 */
+	private long ticksToMicros(long tick) {
+		if (smpte) {
+			return tick * 1_000_000L / division;
+		}
+		return tempoMicros + (tick - tempoTick) * microsPerQuarter / division;
+	}
+
+	/**
+	 * fetch() <br>
+	 * private method <br>
+	 * parses forward to the next playable note
+	 */
+	private void fetch() {
+		hasNext = false;
+		int track;
+		while ((track = nextTrack()) >= 0) {
+			readEvent(track);
+			if (!isNoteOn()) {
+				continue;
+			}
+			long time = ticksToMicros(lastTick) / 1000;
+			int lane = (eventData1 - minPitch) * laneCount / (maxPitch - minPitch + 1);
+			if (time - lastNote < minStepMs || time - lastInLane[lane] < minGapMs) {
+				continue; // chord tone or too dense for this difficulty
+			}
+			lastNote = time;
+			lastInLane[lane] = time;
+			nextTime = time;
+			nextLane = lane;
+			hasNext = true;
+			return;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return hasNext;
+	}
+
+	@Override
+	public long peekTime() {
+		return nextTime;
+	}
+
+	@Override
+	public int peekLane() {
+		return nextLane;
+	}
+
+	@Override
+	public void advance() {
+		fetch();
+	}
+}
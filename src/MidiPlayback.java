@@ -0,0 +1,124 @@
+/*
+ * MidiPlayback.java
+ */
+
+import javax.sound.midi.MidiChannel;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequencer;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * MidiPlayback class <br>
+ * plays a standard MIDI file through the shared synthesizer
+ * - the sequencer is not connected to the default synthesizer, its events go to AudioEngine.getReceiver()
+ * - its position is the song clock while it plays, so notes stay in step with tempo changes in the file
+ */
+public class MidiPlayback {
+	private final Sequencer sequencer;
+	private long startMicros = 0; // position start() plays from
+
+	/**
+	 * MidiPlayback(file) <br>
+	 * constructor
+	 * - opens a sequencer and loads the file, playback starts with start()
+	 * @param file (File) standard MIDI file
+	 * @throws IOException if the file cannot be read or no sequencer / synthesizer is available
+	 */
+	public MidiPlayback(File file) throws IOException {
+		Receiver receiver = AudioEngine.getReceiver();
+		if (receiver == null) {
+			throw new IOException("No synthesizer available");
+		}
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			sequencer = MidiSystem.getSequencer(false);
+			sequencer.open();
+			sequencer.getTransmitter().setReceiver(receiver);
+			sequencer.setSequence(in);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * start() <br>
+	 * starts playback from the beginning, or from the last seek(ms)
+	 */
+	public void start() {
+		sequencer.setMicrosecondPosition(startMicros);
+		sequencer.start();
+	}
+
+	/**
+	 * setRate(rate) <br>
+	 * plays the file faster or slower (tempo factor, the pitch is unchanged)
+	 * @param rate (float) playback rate, 1 = as written
+	 */
+	public void setRate(float rate) {
+		sequencer.setTempoFactor(rate);
+	}
+
+	/**
+	 * seek(ms) <br>
+	 * moves playback to a song time, before or during playback
+	 * @param ms (long) song time in ms
+	 */
+	public void seek(long ms) {
+		startMicros = Math.max(0, ms) * 1000L;
+		if (sequencer.isOpen()) {
+			sequencer.setMicrosecondPosition(startMicros);
+			if (sequencer.isRunning()) {
+				allNotesOff();
+			}
+		}
+	}
+
+	/**
+	 * stop() <br>
+	 * stops playback and releases the sequencer
+	 */
+	public void stop() {
+		if (sequencer.isOpen()) {
+			sequencer.stop();
+			sequencer.close();
+		}
+		allNotesOff();
+	}
+
+	/**
+	 * allNotesOff() <br>
+	 * private method <br>
+	 * silences notes the sequencer left hanging when it was stopped
+	 */
+	private static void allNotesOff() {
+		for (int ch = 0; ch < 16; ch++) {
+			MidiChannel channel = AudioEngine.getChannel(ch);
+			if (channel != null) {
+				channel.allNotesOff();
+			}
+		}
+	}
+
+	/**
+	 * isPlaying() <br>
+	 * @return (boolean) true until the end of the file is reached or stop() is called
+	 */
+	public boolean isPlaying() {
+		return sequencer.isOpen() && sequencer.isRunning();
+	}
+
+	/**
+	 * getMillis() <br>
+	 * reads the sequencer clock
+	 * @return (long) playback position in ms
+	 */
+	public long getMillis() {
+		return sequencer.getMicrosecondPosition() / 1000L;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * NoteQueue.java
+ */
+
+/**
+ * NoteQueue class <br>
+ * ring buffer of note times (ms on the song clock) for one lane
+ * - notes enter at the tail when they spawn, leave at the head when hit or missed
+ * - head and tail only move forward, so spawning, culling and judging cost O(visible notes)
+ * - primitive storage, allocated again (doubled) only when a lane holds more notes than ever before,
+ *   e.g. notes packed close by a slow scroll segment
+ */
+public class NoteQueue {
+	private long[] times;
+	private int mask;
+	private long head = 0; // oldest note still on screen
+	private long tail = 0; // next free slot
+
+	/**
+	 * NoteQueue(capacity) <br>
+	 * constructor
+	 * @param capacity (int) notes on screen in this lane before it grows, rounded up to a power of two
+	 */
+	public NoteQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		times = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * offer(time) <br>
+	 * adds a note at the tail, doubling the capacity if the lane is full
+	 * @param time (long) note time in ms
+	 */
+	public void offer(long time) {
+		if (tail - head > mask) {
+			resize(times.length * 2);
+		}
+		times[(int) (tail++ & mask)] = time;
+	}
+
+	/**
+	 * capacity() <br>
+	 * @return (int) notes the lane holds before it grows
+	 */
+	public int capacity() {
+		return times.length;
+	}
+
+	/**
+	 * resize(size) <br>
+	 * private method <br>
+	 * moves the notes into a new array, oldest first
+	 * @param size (int) new capacity, a power of two not below size()
+	 */
+	private void resize(int size) {
+		long[] grown = new long[size];
+		int n = size();
+		for (int i = 0; i < n; i++) {
+			grown[i] = get(i);
+		}
+		times = grown;
+		mask = size - 1;
+		head = 0;
+		tail = n;
+	}
+
+	/**
+	 * peek() <br>
+	 * returns the oldest note, the one that is judged next
+	 * - only valid when the queue is not empty
+	 * @return (long) note time in ms
+	 */
+	public long peek() {
+		return times[(int) (head & mask)];
+	}
+
+	/**
+	 * get(i) <br>
+	 * returns the i-th note counted from the head
+	 * @param i (int) 0 .. size() - 1
+	 * @return (long) note time in ms
+	 */
+	public long get(int i) {
+		return times[(int) ((head + i) & mask)];
+	}
+
+	/**
+	 * poll() <br>
+	 * removes and returns the oldest note
+	 * @return (long) note time in ms
+	 */
+	public long poll() {
+		return times[(int) (head++ & mask)];
+	}
+
+	/**
+	 * size() <br>
+	 * returns the number of notes in the lane
+	 * @return (int) notes on screen
+	 */
+	public int size() {
+		return (int) (tail - head);
+	}
+
+	/**
+	 * isEmpty() <br>
+	 * @return (boolean) true if the lane has no notes
+	 */
+	public boolean isEmpty() {
+		return tail == head;
+	}
+
+	/**
+	 * clear() <br>
+	 * removes all notes
+	 */
+	public void clear() {
+		head = tail;
+	}
+
+	/**
+	 * copyFrom(other) <br>
+	 * makes this queue an exact copy of another one (for frame snapshots)
+	 * - grows to the other queue's capacity if that one has grown
+	 * @param other (NoteQueue) queue to copy
+	 */
+	public void copyFrom(NoteQueue other) {
+		if (times.length != other.times.length) {
+			times = new long[other.times.length];
+			mask = other.mask;
+		}
+		System.arraycopy(other.times, 0, times, 0, times.length);
+		head = other.head;
+		tail = other.tail;
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * NoteSource.java
+ */
+
+/**
+ * NoteSource interface <br>
+ * time-ordered stream of notes (time in ms, lane) feeding the per-lane NoteQueues
+ * - the game only looks at the next note, so sources may be loaded charts or generated on the fly
+ */
+public interface NoteSource {
+
+	/**
+	 * hasNext() <br>
+	 * @return (boolean) true if another note follows
+	 */
+	boolean hasNext();
+
+	/**
+	 * peekTime() <br>
+	 * @return (long) time of the next note in ms on the song clock
+	 */
+	long peekTime();
+
+	/**
+	 * peekLane() <br>
+	 * @return (int) lane of the next note
+	 */
+	int peekLane();
+
+	/**
+	 * advance() <br>
+	 * moves on to the following note
+	 */
+	void advance();
+
+	/**
+	 * scrollMap() <br>
+	 * scroll-velocity changes of the notes in this stream
+	 * @return (ScrollMap) scroll segments, ScrollMap.CONSTANT (the default) when the speed never changes
+	 */
+	default ScrollMap scrollMap() {
+		return ScrollMap.CONSTANT;
+	}
+}
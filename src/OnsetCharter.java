@@ -0,0 +1,695 @@
+/*
+ * OnsetCharter.java
+ */
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * OnsetCharter class <br>
+ * builds charts from the music itself
+ * - spectral flux onset detection over an STFT whose frames are split across a ForkJoinPool
+ * - tempo from the autocorrelation of the onset envelope, beats by dynamic programming
+ * - the analysis is cached in Charts/cache/&lt;sha256&gt;.onsets, an unchanged file is never analysed twice
+ * - charts for each difficulty are derived from the cached analysis (beats for easy, more onsets for hard)
+ */
+public class OnsetCharter {
+	static final String CACHE_DIR = ChartLibrary.CHART_DIR + "/cache";
+	private static final int CACHE_MAGIC = 0x4D4E564F; // "MNVO"
+	private static final int CACHE_VERSION = 1;
+	private static final int FRAME = 1024;
+	private static final int HOP = 256;
+	private static final int LEAF_FRAMES = 512; // frames per fork/join leaf
+	private static final float MAX_RATE = 24000f; // faster files are decimated by 2 before the STFT
+	private static final long MIN_ONSET_GAP_MS = 50;
+	private static final long SNAP_MS = 60; // onsets this close to a beat are played on the beat
+	// read-only FFT tables shared by all worker threads
+	private static final float[] WINDOW = new float[FRAME];
+	private static final float[] COS = new float[FRAME / 2];
+	private static final float[] SIN = new float[FRAME / 2];
+	private static final int[] BIT_REVERSE = new int[FRAME];
+	// analyses already loaded in this run, keyed by path, size and modification time
+	private static final Map<String, Analysis> loaded = new HashMap<>();
+
+	static {
+		int bits = Integer.numberOfTrailingZeros(FRAME);
+		for (int i = 0; i < FRAME; i++) {
+			WINDOW[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME - 1)));
+			BIT_REVERSE[i] = Integer.reverse(i) >>> (32 - bits);
+		}
+		for (int i = 0; i < FRAME / 2; i++) {
+			COS[i] = (float) Math.cos(-2 * Math.PI * i / FRAME);
+			SIN[i] = (float) Math.sin(-2 * Math.PI * i / FRAME);
+		}
+	}
+
+	/**
+	 * Analysis class <br>
+	 * difficulty independent result of the analysis (what the cache stores)
+	 * - brightness is the normalised spectral centroid (0..1) at the note, used to pick its lane
+	 */
+	static class Analysis {
+		float bpm;
+		int[] onsetMs = new int[0];
+		float[] onsetStrength = new float[0];
+		float[] onsetBrightness = new float[0];
+		int[] beatMs = new int[0];
+		float[] beatBrightness = new float[0];
+	}
+
+	/**
+	 * FluxTask class <br>
+	 * fork/join task computing spectral flux and centroid for a range of STFT frames
+	 * - a leaf also transforms the frame before its range, so leaves are independent
+	 */
+	private static class FluxTask extends RecursiveAction {
+		private final float[] mono;
+		private final float[] flux;
+		private final float[] centroid;
+		private final int from;
+		private final int to;
+
+		/**
+		 * FluxTask(mono,flux,centroid,from,to) <br>
+		 * constructor
+		 * @param mono (float[]) mono samples
+		 * @param flux (float[]) per frame spectral flux, filled in
+		 * @param centroid (float[]) per frame normalised spectral centroid, filled in
+		 * @param from (int) first frame
+		 * @param to (int) frame after the last
+		 */
+		FluxTask(float[] mono, float[] flux, float[] centroid, int from, int to) {
+			this.mono = mono;
+			this.flux = flux;
+			this.centroid = centroid;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > LEAF_FRAMES) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new FluxTask(mono, flux, centroid, from, mid), new FluxTask(mono, flux, centroid, mid, to));
+				return;
+			}
+			// scratch buffers are per leaf, not per frame
+			float[] re = new float[FRAME];
+			float[] im = new float[FRAME];
+			float[] previous = new float[FRAME / 2];
+			float[] current = new float[FRAME / 2];
+			if (from > 0) {
+				spectrum(mono, from - 1, re, im, previous);
+			}
+			for (int f = from; f < to; f++) {
+				spectrum(mono, f, re, im, current);
+				float sum = 0f;
+				float weighted = 0f;
+				float total = 0f;
+				for (int k = 1; k < FRAME / 2; k++) {
+					float rise = current[k] - previous[k];
+					if (rise > 0 && f > 0) {
+						sum += rise;
+					}
+					weighted += k * current[k];
+					total += current[k];
+				}
+				flux[f] = sum;
+				centroid[f] = total > 0 ? weighted / total / (FRAME / 2) : 0f;
+				float[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+		}
+	}
+
+	/**
+	 * spectrum(mono,frame,re,im,out) <br>
+	 * private method <br>
+	 * log-compressed magnitude spectrum of one STFT frame
+	 * @param mono (float[]) mono samples
+	 * @param frame (int) frame index
+	 * @param re (float[]) FRAME long scratch
+	 * @param im (float[]) FRAME long scratch
+	 * @param out (float[]) FRAME / 2 magnitudes, filled in
+	 */
+	private static void spectrum(float[] mono, int frame, float[] re, float[] im, float[] out) {
+		int start = frame * HOP;
+		for (int i = 0; i < FRAME; i++) {
+			int j = BIT_REVERSE[i];
+			int s = start + i;
+			re[j] = s < mono.length ? mono[s] * WINDOW[i] : 0f;
+			im[j] = 0f;
+		}
+		// iterative radix-2 decimation in time (as SpectrumAnalyzer)
+		for (int size = 2; size <= FRAME; size <<= 1) {
+			int half = size >> 1;
+			int step = FRAME / size;
+			for (int base = 0; base < FRAME; base += size) {
+				for (int k = 0; k < half; k++) {
+					float wr = COS[k * step];
+					float wi = SIN[k * step];
+					int a = base + k;
+					int b = a + half;
+					float tr = re[b] * wr - im[b] * wi;
+					float ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+		for (int k = 0; k < FRAME / 2; k++) {
+			out[k] = (float) Math.log1p(100.0 * Math.sqrt(re[k] * re[k] + im[k] * im[k]));
+		}
+	}
+
+	/**
+	 * chart(wav,level,laneCount,minGapMs) <br>
+	 * returns a chart for a song file, analysing it only if it is not cached yet
+	 * @param wav (File) song file
+	 * @param level (int) difficulty 0 (very easy) .. 4 (very hard)
+	 * @param laneCount (int) number of lanes
+	 * @param minGapMs (long) smallest time between two notes in the same lane
+	 * @return (Chart) generated chart
+	 * @throws IOException if the file cannot be read
+	 */
+	static Chart chart(File wav, int level, int laneCount, long minGapMs) throws IOException {
+		Chart chart = toChart(analysis(wav), level, laneCount, minGapMs);
+		chart.title = wav.getName();
+		return chart;
+	}
+
+	/**
+	 * analysis(wav) <br>
+	 * returns the analysis of a song file from memory, the disk cache, or by analysing it
+	 * - synchronized, so a game waiting for a file being prepared in the background does not analyse it again
+	 * @param wav (File) song file
+	 * @return (Analysis) onsets and beats of the song
+	 * @throws IOException if the file cannot be read
+	 */
+	static synchronized Analysis analysis(File wav) throws IOException {
+		String key = wav.getAbsolutePath() + ":" + wav.length() + ":" + wav.lastModified();
+		Analysis result = loaded.get(key);
+		if (result != null) {
+			return result;
+		}
+		File cache = new File(CACHE_DIR, sha256(wav) + ".onsets");
+		if (cache.exists()) {
+			try {
+				result = readCache(cache);
+			} catch (IOException e) {
+				System.err.println("Ignoring unreadable onset cache " + cache + ": " + e.getMessage());
+			}
+		}
+		if (result == null) {
+			float[] rate = new float[1];
+			float[] mono = readMono(wav, rate);
+			result = analyze(mono, rate[0]);
+			try {
+				writeCache(cache, result);
+			} catch (IOException e) {
+				System.err.println("Unable to write onset cache " + cache + ": " + e.getMessage());
+			}
+		}
+		loaded.put(key, result);
+		return result;
+	}
+
+	/**
+	 * prepareInBackground(files) <br>
+	 * analyses songs on a daemon thread so their charts are ready when a game starts
+	 * @param files (File[]) song files, missing files are skipped
+	 */
+	static void prepareInBackground(File[] files) {
+		Thread t = new Thread(() -> {
+			for (File file : files) {
+				if (file.exists()) {
+					try {
+						analysis(file);
+					} catch (IOException e) {
+						System.err.println("Unable to analyse " + file + ": " + e.getMessage());
+					}
+				}
+			}
+		}, "onset-charter");
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		t.start();
+	}
+
+	/**
+	 * readMono(wav,rateOut) <br>
+	 * private method <br>
+	 * decodes a song to mono floats, decimated by 2 when the rate is above MAX_RATE
+	 * @param wav (File) song file
+	 * @param rateOut (float[]) receives the sample rate of the returned samples
+	 * @return (float[]) mono samples (-1..1)
+	 * @throws IOException if the file cannot be decoded
+	 */
+	private static float[] readMono(File wav, float[] rateOut) throws IOException {
+		try (AudioInputStream raw = AudioSystem.getAudioInputStream(wav)) {
+			AudioFormat f = raw.getFormat();
+			AudioFormat pcm = new AudioFormat(f.getSampleRate(), 16, f.getChannels(), true, false);
+			try (AudioInputStream in = f.matches(pcm) ? raw : AudioSystem.getAudioInputStream(pcm, raw)) {
+				int channels = pcm.getChannels();
+				int frameSize = pcm.getFrameSize();
+				int decimate = pcm.getSampleRate() > MAX_RATE ? 2 : 1;
+				rateOut[0] = pcm.getSampleRate() / decimate;
+				long frames = in.getFrameLength();
+				float[] out = new float[frames > 0 ? (int) (frames / decimate) + 1 : 1 << 20];
+				int n = 0;
+				float acc = 0f;
+				int accCount = 0;
+				float scale = 1f / (32768f * channels * decimate);
+				byte[] buf = new byte[frameSize * 4096];
+				int filled = 0;
+				int read;
+				while ((read = in.read(buf, filled, buf.length - filled)) > 0) {
+					filled += read;
+					int usable = filled - filled % frameSize;
+					for (int p = 0; p < usable; p += frameSize) {
+						for (int c = 0; c < channels; c++) {
+							acc += (short) ((buf[p + 2 * c] & 0xFF) | (buf[p + 2 * c + 1] << 8));
+						}
+						if (++accCount == decimate) {
+							if (n == out.length) {
+								out = Arrays.copyOf(out, n * 2);
+							}
+							out[n++] = acc * scale;
+							acc = 0f;
+							accCount = 0;
+						}
+					}
+					System.arraycopy(buf, usable, buf, 0, filled - usable);
+					filled -= usable;
+				}
+				return Arrays.copyOf(out, n);
+			}
+		} catch (javax.sound.sampled.UnsupportedAudioFileException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * analyze(mono,rate) <br>
+	 * runs the onset detection and beat tracking
+	 * @param mono (float[]) mono samples
+	 * @param rate (float) sample rate
+	 * @return (Analysis) onsets and beats
+	 */
+	static Analysis analyze(float[] mono, float rate) {
+		int frames = Math.max(1, (mono.length - FRAME) / HOP + 1);
+		float[] flux = new float[frames];
+		float[] centroid = new float[frames];
+		ForkJoinPool.commonPool().invoke(new FluxTask(mono, flux, centroid, 0, frames));
+		double frameRate = rate / HOP;
+		// frame f covers samples f*HOP .. f*HOP+FRAME, its time is the centre of that window
+		double frameOffsetMs = 1000.0 * FRAME / 2 / rate;
+		normalize(flux);
+		Analysis a = new Analysis();
+		pickOnsets(flux, centroid, frameRate, frameOffsetMs, a);
+		double period = estimatePeriod(flux, frameRate);
+		a.bpm = (float) (60.0 * frameRate / period);
+		trackBeats(flux, centroid, period, frameRate, frameOffsetMs, a);
+		return a;
+	}
+
+	/**
+	 * normalize(x) <br>
+	 * private method <br>
+	 * scales a signal to zero mean and unit standard deviation
+	 * @param x (float[]) signal, updated
+	 */
+	private static void normalize(float[] x) {
+		double sum = 0;
+		double sq = 0;
+		for (float v : x) {
+			sum += v;
+			sq += v * v;
+		}
+		double mean = sum / x.length;
+		double std = Math.sqrt(Math.max(1e-12, sq / x.length - mean * mean));
+		for (int i = 0; i < x.length; i++) {
+			x[i] = (float) ((x[i] - mean) / std);
+		}
+	}
+
+	/**
+	 * pickOnsets(flux,centroid,frameRate,frameOffsetMs,a) <br>
+	 * private method <br>
+	 * onsets are local flux maxima above a moving average threshold
+	 * @param flux (float[]) normalised spectral flux
+	 * @param centroid (float[]) per frame brightness
+	 * @param frameRate (double) frames per second
+	 * @param frameOffsetMs (double) time of frame 0
+	 * @param a (Analysis) receives the onsets
+	 */
+	private static void pickOnsets(float[] flux, float[] centroid, double frameRate, double frameOffsetMs, Analysis a) {
+		int peakRadius = 3;
+		int meanRadius = 16;
+		float delta = 0.5f;
+		int minGapFrames = (int) Math.ceil(MIN_ONSET_GAP_MS * frameRate / 1000.0);
+		int n = flux.length;
+		// running sum for the moving average
+		double[] prefix = new double[n + 1];
+		for (int i = 0; i < n; i++) {
+			prefix[i + 1] = prefix[i] + flux[i];
+		}
+		int[] times = new int[n / 2 + 1];
+		float[] strength = new float[times.length];
+		float[] bright = new float[times.length];
+		int count = 0;
+		int last = -minGapFrames;
+		for (int i = 0; i < n; i++) {
+			boolean peak = true;
+			for (int j = Math.max(0, i - peakRadius); j <= Math.min(n - 1, i + peakRadius) && peak; j++) {
+				peak = flux[j] <= flux[i];
+			}
+			if (!peak || i - last < minGapFrames) {
+				continue;
+			}
+			int lo = Math.max(0, i - meanRadius);
+			int hi = Math.min(n, i + meanRadius + 1);
+			double mean = (prefix[hi] - prefix[lo]) / (hi - lo);
+			if (flux[i] >= mean + delta) {
+				times[count] = (int) Math.round(frameOffsetMs + 1000.0 * i / frameRate);
+				strength[count] = flux[i];
+				bright[count] = centroid[i];
+				count++;
+				last = i;
+			}
+		}
+		a.onsetMs = Arrays.copyOf(times, count);
+		a.onsetStrength = Arrays.copyOf(strength, count);
+		a.onsetBrightness = Arrays.copyOf(bright, count);
+	}
+
+	/**
+	 * estimatePeriod(flux,frameRate) <br>
+	 * private method <br>
+	 * beat period from the autocorrelation of the onset envelope, weighted towards 120 BPM
+	 * @param flux (float[]) normalised spectral flux
+	 * @param frameRate (double) frames per second
+	 * @return (double) beat period in frames
+	 */
+	private static double estimatePeriod(float[] flux, double frameRate) {
+		int minLag = (int) Math.floor(frameRate * 60.0 / 200.0);
+		int maxLag = (int) Math.ceil(frameRate * 60.0 / 60.0);
+		double preferred = frameRate * 60.0 / 120.0;
+		if (maxLag + 1 >= flux.length) {
+			return preferred;
+		}
+		double[] score = new double[maxLag + 2];
+		int best = minLag;
+		for (int lag = Math.max(1, minLag - 1); lag <= maxLag + 1; lag++) {
+			double sum = 0;
+			for (int i = lag; i < flux.length; i++) {
+				sum += Math.max(0f, flux[i]) * Math.max(0f, flux[i - lag]);
+			}
+			double octaves = Math.log(lag / preferred) / Math.log(2);
+			score[lag] = sum / (flux.length - lag) * Math.exp(-0.5 * octaves * octaves);
+			if (lag >= minLag && lag <= maxLag && score[lag] > score[best]) {
+				best = lag;
+			}
+		}
+		// parabolic interpolation between the neighbouring lags for a tempo finer than one frame
+		double left = score[best - 1];
+		double right = score[best + 1];
+		double curve = left - 2 * score[best] + right;
+		return curve < 0 ? best + 0.5 * (left - right) / curve : best;
+	}
+
+	/**
+	 * trackBeats(flux,centroid,period,frameRate,frameOffsetMs,a) <br>
+	 * private method <br>
+	 * dynamic programming beat tracker: each beat maximises its onset strength plus the best earlier
+	 * beat, penalised by how far the gap is from the beat period
+	 * @param flux (float[]) normalised spectral flux
+	 * @param centroid (float[]) per frame brightness
+	 * @param period (double) beat period in frames
+	 * @param frameRate (double) frames per second
+	 * @param frameOffsetMs (double) time of frame 0
+	 * @param a (Analysis) receives the beats
+	 */
+	private static void trackBeats(float[] flux, float[] centroid, double period, double frameRate, double frameOffsetMs, Analysis a) {
+		int n = flux.length;
+		double tightness = 100.0;
+		double[] score = new double[n];
+		int[] back = new int[n];
+		int minStep = (int) Math.round(period / 2);
+		int maxStep = (int) Math.round(period * 2);
+		for (int i = 0; i < n; i++) {
+			double best = 0;
+			int from = -1;
+			for (int p = i - maxStep; p <= i - minStep; p++) {
+				if (p < 0) {
+					continue;
+				}
+				double d = Math.log((i - p) / period);
+				double s = score[p] - tightness * d * d;
+				if (from < 0 || s > best) {
+					best = s;
+					from = p;
+				}
+			}
+			score[i] = flux[i] + Math.max(0, best);
+			back[i] = best > 0 ? from : -1;
+		}
+		// last beat: best score within the final period
+		int end = n - 1;
+		for (int i = Math.max(0, n - (int) Math.ceil(period)); i < n; i++) {
+			if (score[i] > score[end]) {
+				end = i;
+			}
+		}
+		int count = 0;
+		for (int i = end; i >= 0; i = back[i]) {
+			count++;
+		}
+		a.beatMs = new int[count];
+		a.beatBrightness = new float[count];
+		int k = count;
+		for (int i = end; i >= 0; i = back[i]) {
+			k--;
+			a.beatMs[k] = (int) Math.round(frameOffsetMs + 1000.0 * i / frameRate);
+			a.beatBrightness[k] = centroid[i];
+		}
+	}
+
+	/**
+	 * toChart(a,level,laneCount,minGapMs) <br>
+	 * turns an analysis into a chart for one difficulty
+	 * - VERY EASY every other beat, EASY every beat, harder levels add onsets by strength
+	 * - brighter sounds go to lanes further right (lanes split at brightness quantiles)
+	 * @param a (Analysis) analysis of the song
+	 * @param level (int) difficulty 0 (very easy) .. 4 (very hard)
+	 * @param laneCount (int) number of lanes
+	 * @param minGapMs (long) smallest time between two notes in the same lane
+	 * @return (Chart) chart
+	 */
+	static Chart toChart(Analysis a, int level, int laneCount, long minGapMs) {
+		// share of onsets (strongest first) added on top of the beats for each level
+		double[] onsetShare = {0.0, 0.0, 0.35, 0.65, 1.0};
+		level = Math.max(0, Math.min(level, onsetShare.length - 1));
+		int beats = a.beatMs.length;
+		int onsets = a.onsetMs.length;
+		long[] t = new long[beats + onsets];
+		float[] bright = new float[t.length];
+		int n = 0;
+		for (int i = 0; i < beats; i += level == 0 ? 2 : 1) {
+			t[n] = a.beatMs[i];
+			bright[n++] = a.beatBrightness[i];
+		}
+		if (onsetShare[level] > 0 && onsets > 0) {
+			float[] sorted = a.onsetStrength.clone();
+			Arrays.sort(sorted);
+			float threshold = sorted[(int) Math.min(onsets - 1, Math.floor(onsets * (1.0 - onsetShare[level])))];
+			int b = 0;
+			for (int i = 0; i < onsets; i++) {
+				if (a.onsetStrength[i] < threshold) {
+					continue;
+				}
+				while (b < beats && a.beatMs[b] < a.onsetMs[i] - SNAP_MS) {
+					b++;
+				}
+				if (b < beats && Math.abs(a.beatMs[b] - a.onsetMs[i]) <= SNAP_MS) {
+					continue; // already played on the beat
+				}
+				t[n] = a.onsetMs[i];
+				bright[n++] = a.onsetBrightness[i];
+			}
+		}
+		// brightness quantiles become the lane boundaries
+		float[] order = Arrays.copyOf(bright, n);
+		Arrays.sort(order);
+		float[] bounds = new float[Math.max(0, laneCount - 1)];
+		for (int i = 0; i < bounds.length; i++) {
+			bounds[i] = n == 0 ? 0f : order[(int) ((long) n * (i + 1) / laneCount)];
+		}
+		// place the notes in time order, moving a note to the nearest free lane when its lane is busy
+		long[] packed = new long[n];
+		for (int i = 0; i < n; i++) {
+			packed[i] = (t[i] << 20) | i;
+		}
+		Arrays.sort(packed);
+		long[] outT = new long[n];
+		byte[] outL = new byte[n];
+		long[] lastInLane = new long[laneCount];
+		Arrays.fill(lastInLane, Long.MIN_VALUE / 2);
+		int m = 0;
+		for (long p : packed) {
+			int i = (int) (p & 0xFFFFF);
+			int want = 0;
+			while (want < bounds.length && bright[i] >= bounds[want]) {
+				want++;
+			}
+			for (int offset = 0; offset < laneCount; offset++) {
+				int lane = want + ((offset & 1) == 0 ? offset / 2 : -(offset / 2 + 1));
+				if (lane < 0 || lane >= laneCount) {
+					continue;
+				}
+				if (t[i] - lastInLane[lane] >= minGapMs) {
+					lastInLane[lane] = t[i];
+					outT[m] = t[i];
+					outL[m++] = (byte) lane;
+					break;
+				}
+			}
+		}
+		Chart chart = new Chart();
+		chart.laneCount = laneCount;
+		chart.setNotes(outT, outL, m);
+		return chart;
+	}
+
+	/**
+	 * sha256(file) <br>
+	 * private method <br>
+	 * hashes the file contents (the cache key)
+	 * @param file (File) file to hash
+	 * @return (String) lowercase hex digest
+	 * @throws IOException if the file cannot be read
+	 */
+	private static String sha256(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			byte[] buf = new byte[1 << 16];
+			int read;
+			while ((read = in.read(buf)) > 0) {
+				md.update(buf, 0, read);
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : md.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (java.security.NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * writeCache(file,a) <br>
+	 * private method <br>
+	 * stores an analysis
+	 * @param file (File) cache file
+	 * @param a (Analysis) analysis
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void writeCache(File file, Analysis a) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(CACHE_MAGIC);
+			out.writeInt(CACHE_VERSION);
+			out.writeFloat(a.bpm);
+			out.writeInt(a.onsetMs.length);
+			for (int i = 0; i < a.onsetMs.length; i++) {
+				out.writeInt(a.onsetMs[i]);
+				out.writeFloat(a.onsetStrength[i]);
+				out.writeFloat(a.onsetBrightness[i]);
+			}
+			out.writeInt(a.beatMs.length);
+			for (int i = 0; i < a.beatMs.length; i++) {
+				out.writeInt(a.beatMs[i]);
+				out.writeFloat(a.beatBrightness[i]);
+			}
+		}
+	}
+
+	/**
+	 * readCache(file) <br>
+	 * private method <br>
+	 * loads an analysis written by writeCache
+	 * @param file (File) cache file
+	 * @return (Analysis) analysis
+	 * @throws IOException if the file is unreadable or from another version
+	 */
+	private static Analysis readCache(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+				throw new IOException("unknown cache format");
+			}
+			Analysis a = new Analysis();
+			a.bpm = in.readFloat();
+			int onsets = in.readInt();
+			a.onsetMs = new int[onsets];
+			a.onsetStrength = new float[onsets];
+			a.onsetBrightness = new float[onsets];
+			for (int i = 0; i < onsets; i++) {
+				a.onsetMs[i] = in.readInt();
+				a.onsetStrength[i] = in.readFloat();
+				a.onsetBrightness[i] = in.readFloat();
+			}
+			int beats = in.readInt();
+			a.beatMs = new int[beats];
+			a.beatBrightness = new float[beats];
+			for (int i = 0; i < beats; i++) {
+				a.beatMs[i] = in.readInt();
+				a.beatBrightness[i] = in.readFloat();
+			}
+			return a;
+		}
+	}
+
+	/**
+	 * main(args) <br>
+	 * analyses songs ahead of time and reports how long it took
+	 * - java OnsetCharter Music/1.wav Music/2.wav ...
+	 * @param args (String[]) song files
+	 */
+	public static void main(String[] args) {
+		System.out.println("Worker threads: " + ForkJoinPool.commonPool().getParallelism());
+		for (String path : args) {
+			File file = new File(path);
+			long t0 = System.nanoTime();
+			try {
+				Analysis a = analysis(file);
+				System.out.printf("%s: %.0f BPM, %d onsets, %d beats in %.2f s%n",
+						path, a.bpm, a.onsetMs.length, a.beatMs.length, (System.nanoTime() - t0) / 1e9);
+			} catch (IOException e) {
+				System.err.println("Error analysing " + path + ": " + e.getMessage());
+			}
+		}
+	}
+}
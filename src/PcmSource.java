@@ -0,0 +1,55 @@
+/*
+ * PcmSource.java
+ */
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+
+/**
+ * PcmSource interface <br>
+ * a stream of signed 16 bit PCM frames read by the AudioEngine render thread
+ * - implemented for plain WAV files and for tracks of a SongPack
+ */
+public interface PcmSource {
+
+	/**
+	 * getFormat() <br>
+	 * returns the PCM format of the stream
+	 * @return (AudioFormat) signed 16 bit little-endian format
+	 */
+	AudioFormat getFormat();
+
+	/**
+	 * getFrameLength() <br>
+	 * returns the length of the stream
+	 * @return (long) total number of frames
+	 */
+	long getFrameLength();
+
+	/**
+	 * read(b,off,len) <br>
+	 * reads whole frames into the buffer
+	 * @param b (byte[]) destination buffer
+	 * @param off (int) offset into the buffer
+	 * @param len (int) maximum bytes to read
+	 * @return (int) bytes read, or -1 at the end of the stream
+	 * @throws IOException if the underlying file cannot be read
+	 */
+	int read(byte[] b, int off, int len) throws IOException;
+
+	/**
+	 * seek(frame) <br>
+	 * moves the read position, the next read starts at this frame
+	 * - called on the AudioEngine render thread only (see Audio.seek)
+	 * @param frame (long) frame index, 0 .. getFrameLength()
+	 * @throws IOException if the underlying file cannot be repositioned
+	 */
+	void seek(long frame) throws IOException;
+
+	/**
+	 * close() <br>
+	 * releases the underlying file
+	 * @throws IOException if the file cannot be closed
+	 */
+	void close() throws IOException;
+}
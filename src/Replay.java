@@ -0,0 +1,350 @@
+/*
+ * Replay.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Replay class <br>
+ * one recorded run: what is needed to play it again and the result it must reach
+ * - the run: random seed, song, difficulty, lanes, hi-speed, latency offset, chart length and the
+ *   endless-mode seed; with these GameSimulation rebuilds the same chart
+ * - the input: every lane key press and release on the song clock (ms), in the order it was judged
+ * - the result: score, grade counts, max combo and a hash of the judged notes, checked on playback
+ * - binary format: header, then one varint per event, the time delta (zig-zag, events may be a ms
+ *   out of order) shifted left 5 bits with the lane (4 bits) and the press flag packed below;
+ *   most events take 2 bytes, so a song is a few KB
+ * - practice runs are not recorded (seeks and rate changes are not replayed)
+ * - a recording holds at most MAX_EVENTS events (about 9 MB, days of play); an endless run that goes
+ *   past it is no longer recorded, so a marathon session does not grow the heap without end
+ */
+public final class Replay {
+	static final String REPLAY_DIR = "saved_replays";
+	static final String EXTENSION = ".mnr";
+	private static final int MAGIC = 0x4D4E5250; // "MNRP"
+	private static final int VERSION = 1;
+	static final int MAX_EVENTS = 1 << 20;
+	// the run
+	long seed;
+	int songIndex;
+	String difficulty;
+	int lanes;
+	float hiSpeed;
+	int offsetMs;
+	long lengthMs; // song length given to the generated chart
+	long endlessSeed;
+	long endMs; // song time of the last tick that judged notes
+	// the result
+	int score;
+	int maxCombo;
+	int perfects;
+	int greats;
+	int goods;
+	int misses;
+	int wrongs;
+	long chartHash;
+	// the input
+	private long[] times = new long[256];
+	private byte[] codes = new byte[256]; // lane << 1 | press
+	private int count;
+
+	/**
+	 * Replay() <br>
+	 * constructor for an empty replay (filled by read)
+	 */
+	Replay() {}
+
+	/**
+	 * Replay(seed,songIndex,difficulty,lanes,hiSpeed,offsetMs) <br>
+	 * constructor for a run about to be recorded
+	 * @param seed (long) seed of the game's Random
+	 * @param songIndex (int) song index
+	 * @param difficulty (String) difficulty label
+	 * @param lanes (int) lane count
+	 * @param hiSpeed (float) scroll speed multiplier
+	 * @param offsetMs (int) latency offset in ms
+	 */
+	Replay(long seed, int songIndex, String difficulty, int lanes, float hiSpeed, int offsetMs) {
+		this.seed = seed;
+		this.songIndex = songIndex;
+		this.difficulty = difficulty;
+		this.lanes = lanes;
+		this.hiSpeed = hiSpeed;
+		this.offsetMs = offsetMs;
+	}
+
+	/**
+	 * add(songMs,lane,down) <br>
+	 * records a lane key event (game loop thread)
+	 * @param songMs (long) song time of the event
+	 * @param lane (int) lane index
+	 * @param down (boolean) true for a press, false for a release
+	 * @return (boolean) false if the replay already holds MAX_EVENTS events and the event was not added
+	 */
+	boolean add(long songMs, int lane, boolean down) {
+		if (count == MAX_EVENTS) {
+			return false;
+		}
+		if (count == times.length) {
+			times = Arrays.copyOf(times, count * 2);
+			codes = Arrays.copyOf(codes, count * 2);
+		}
+		times[count] = songMs;
+		codes[count++] = (byte) (lane << 1 | (down ? 1 : 0));
+		return true;
+	}
+
+	/**
+	 * size() <br>
+	 * @return (int) number of recorded events
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * time(i) <br>
+	 * @param i (int) event index
+	 * @return (long) song time of the event in ms
+	 */
+	long time(int i) {
+		return times[i];
+	}
+
+	/**
+	 * lane(i) <br>
+	 * @param i (int) event index
+	 * @return (int) lane of the event
+	 */
+	int lane(int i) {
+		return codes[i] >> 1;
+	}
+
+	/**
+	 * isDown(i) <br>
+	 * @param i (int) event index
+	 * @return (boolean) true for a press, false for a release
+	 */
+	boolean isDown(int i) {
+		return (codes[i] & 1) != 0;
+	}
+
+	/**
+	 * setResult(scorer,hash) <br>
+	 * stores the result of the recorded run
+	 * @param scorer (ScoreCalculate) final score keeper
+	 * @param hash (long) hash of the judged notes
+	 */
+	void setResult(ScoreCalculate scorer, long hash) {
+		score = scorer.score;
+		maxCombo = scorer.maxCombo;
+		perfects = scorer.perfects;
+		greats = scorer.greats;
+		goods = scorer.goods;
+		misses = scorer.misses;
+		wrongs = scorer.wrongs;
+		chartHash = hash;
+	}
+
+	/**
+	 * matches(scorer,hash) <br>
+	 * checks a playback against the recorded result
+	 * @param scorer (ScoreCalculate) score keeper after playback
+	 * @param hash (long) hash of the notes judged in playback
+	 * @return (boolean) true if the playback reached exactly the recorded result
+	 */
+	boolean matches(ScoreCalculate scorer, long hash) {
+		return score == scorer.score && maxCombo == scorer.maxCombo && perfects == scorer.perfects
+				&& greats == scorer.greats && goods == scorer.goods && misses == scorer.misses
+				&& wrongs == scorer.wrongs && chartHash == hash;
+	}
+
+	/**
+	 * write(out) <br>
+	 * writes the replay in the binary format
+	 * @param out (DataOutput) destination
+	 * @throws IOException if the write fails
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(seed);
+		VarInt.writeUnsigned(out, songIndex);
+		out.writeUTF(difficulty);
+		out.writeByte(lanes);
+		out.writeFloat(hiSpeed);
+		VarInt.writeSigned(out, offsetMs);
+		VarInt.writeUnsigned(out, lengthMs);
+		out.writeLong(endlessSeed);
+		VarInt.writeSigned(out, endMs);
+		VarInt.writeSigned(out, score);
+		VarInt.writeUnsigned(out, maxCombo);
+		VarInt.writeUnsigned(out, perfects);
+		VarInt.writeUnsigned(out, greats);
+		VarInt.writeUnsigned(out, goods);
+		VarInt.writeUnsigned(out, misses);
+		VarInt.writeUnsigned(out, wrongs);
+		out.writeLong(chartHash);
+		VarInt.writeUnsigned(out, count);
+		long previous = 0;
+		for (int i = 0; i < count; i++) {
+			VarInt.writeUnsigned(out, VarInt.zigZag(times[i] - previous) << 5 | codes[i]);
+			previous = times[i];
+		}
+	}
+
+	/**
+	 * read(in) <br>
+	 * reads a replay written by write
+	 * @param in (DataInput) source
+	 * @return (Replay) the replay
+	 * @throws IOException if the read fails or the data is not a replay
+	 */
+	static Replay read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a replay");
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported replay version " + version);
+		}
+		Replay r = new Replay();
+		r.seed = in.readLong();
+		r.songIndex = (int) VarInt.readUnsigned(in);
+		r.difficulty = in.readUTF();
+		r.lanes = in.readUnsignedByte();
+		r.hiSpeed = in.readFloat();
+		r.offsetMs = (int) VarInt.readSigned(in);
+		r.lengthMs = VarInt.readUnsigned(in);
+		r.endlessSeed = in.readLong();
+		r.endMs = VarInt.readSigned(in);
+		r.score = (int) VarInt.readSigned(in);
+		r.maxCombo = (int) VarInt.readUnsigned(in);
+		r.perfects = (int) VarInt.readUnsigned(in);
+		r.greats = (int) VarInt.readUnsigned(in);
+		r.goods = (int) VarInt.readUnsigned(in);
+		r.misses = (int) VarInt.readUnsigned(in);
+		r.wrongs = (int) VarInt.readUnsigned(in);
+		r.chartHash = in.readLong();
+		long n = VarInt.readUnsigned(in);
+		if (n < 0 || n > MAX_EVENTS) {
+			throw new IOException("bad event count " + n);
+		}
+		r.times = new long[(int) Math.max(n, 1)];
+		r.codes = new byte[(int) Math.max(n, 1)];
+		long time = 0;
+		for (int i = 0; i < n; i++) {
+			long packed = VarInt.readUnsigned(in);
+			time += VarInt.unZigZag(packed >>> 5);
+			r.times[i] = time;
+			r.codes[i] = (byte) (packed & 0x1F);
+		}
+		r.count = (int) n;
+		return r;
+	}
+
+	/**
+	 * save(file) <br>
+	 * writes the replay to a file
+	 * @param file (File) destination
+	 * @throws IOException if the file cannot be written
+	 */
+	void save(File file) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			write(out);
+		}
+	}
+
+	/**
+	 * load(file) <br>
+	 * reads a replay file
+	 * @param file (File) replay file
+	 * @return (Replay) the replay
+	 * @throws IOException if the file cannot be read or is not a replay
+	 */
+	static Replay load(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * fileFor(userId) <br>
+	 * @param userId (String) player
+	 * @return (File) new replay file for a run finishing now, saved_replays/user_millis.mnr
+	 */
+	static File fileFor(String userId) {
+		return new File(REPLAY_DIR, userId + "_" + System.currentTimeMillis() + EXTENSION);
+	}
+
+	/**
+	 * latest(userId) <br>
+	 * finds the newest replay of a player
+	 * @param userId (String) player
+	 * @return (File) newest replay file, null if the player has none
+	 */
+	static File latest(String userId) {
+		File[] files = new File(REPLAY_DIR).listFiles((dir, name) -> name.startsWith(userId + "_") && name.endsWith(EXTENSION));
+		File newest = null;
+		if (files != null) {
+			for (File f : files) {
+				if (newest == null || f.lastModified() > newest.lastModified()) {
+					newest = f;
+				}
+			}
+		}
+		return newest;
+	}
+
+	/**
+	 * main(args) <br>
+	 * plays replay files back and checks them against their recorded results
+	 * - as fast as the CPU allows by default, at 1x (song time, no window) with --1x
+	 * - java Replay [--1x] file...
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		boolean realtime = args.length > 0 && args[0].equals("--1x");
+		GameRules.SOUND_ENABLED = false;
+		for (int i = realtime ? 1 : 0; i < args.length; i++) {
+			try {
+				Replay replay = load(new File(args[i]));
+				long t0 = System.nanoTime();
+				GameSimulation sim = new GameSimulation(replay, !realtime, () -> {});
+				if (realtime) {
+					sim.start();
+					while (!sim.isOver()) {
+						Thread.sleep(50);
+					}
+					sim.shutdown();
+				} else {
+					sim.playReplay();
+				}
+				double ms = (System.nanoTime() - t0) / 1e6;
+				ScoreCalculate sc = sim.getScorer();
+				System.out.printf("%s: %d events, %.1f s of song in %.1f ms, score %d (%d/%d/%d, %d misses) %s%n",
+						args[i], replay.size(), replay.endMs / 1000.0, ms, sc.score, sc.perfects, sc.greats, sc.goods,
+						sc.misses, replay.matches(sc, sim.getChartHash()) ? "OK" : "MISMATCH, recorded score " + replay.score);
+			} catch (IOException e) {
+				System.err.println("Error reading replay " + args[i] + ": " + e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
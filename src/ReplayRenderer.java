@@ -0,0 +1,226 @@
+/*
+ * ReplayRenderer.java
+ */
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ReplayRenderer class <br>
+ * renders a recorded run off screen to a numbered PNG sequence (frame_000000.png ...) at any frame
+ * rate and size, to cut into a video
+ * - each frame is the GameScene the GamePanel draws, from the lead-in to a moment after game over
+ * - the frames are split into chunks rendered in parallel: each chunk plays its own copy of the
+ *   replay (GameSimulation.stepTo) on the GameRules.FPS tick grid from the start, so a chunk draws the
+ *   same frames as one pass through the whole run would, on any number of threads
+ * - PNG encoding runs on a separate writer pool; images come from a fixed pool that the writers
+ *   return them to, so rendering waits for the disk instead of filling the heap
+ * - java ReplayRenderer replayFile outDir [fps, default 60] [width] [height] [threads, default all cores]
+ */
+public final class ReplayRenderer {
+	private static final long TAIL_MS = 2000; // frames kept after the run ends (game over screen)
+	private static final int CHUNKS_PER_THREAD = 4; // smaller chunks even out the work between threads
+	private final Replay replay;
+	private final File outDir;
+	private final int fps;
+	private final int width;
+	private final int height;
+	private final long startMs;
+	private final int frameCount;
+	private final BlockingQueue<BufferedImage> images;
+	private final ExecutorService writers;
+	private final AtomicInteger written = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+
+	/**
+	 * ReplayRenderer(replay,outDir,fps,width,height,writers,imagePool) <br>
+	 * constructor
+	 * @param replay (Replay) run to render
+	 * @param outDir (File) directory for the PNG files
+	 * @param fps (int) frames per second of song time
+	 * @param width (int) image width in pixels
+	 * @param height (int) image height in pixels
+	 * @param writers (ExecutorService) pool that encodes and writes the PNG files
+	 * @param imagePool (int) images in flight between the renderers and the writers
+	 */
+	private ReplayRenderer(Replay replay, File outDir, int fps, int width, int height, ExecutorService writers, int imagePool) {
+		this.replay = replay;
+		this.outDir = outDir;
+		this.fps = fps;
+		this.width = width;
+		this.height = height;
+		this.writers = writers;
+		startMs = -GameSimulation.LEAD_IN_MS;
+		frameCount = (int) ((replay.endMs + TAIL_MS - startMs) * fps / 1000) + 1;
+		images = new ArrayBlockingQueue<>(imagePool);
+		for (int i = 0; i < imagePool; i++) {
+			images.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+		}
+	}
+
+	/**
+	 * frameTime(frame) <br>
+	 * private method <br>
+	 * @param frame (int) frame number
+	 * @return (long) song time of the frame in ms
+	 */
+	private long frameTime(int frame) {
+		return startMs + frame * 1000L / fps;
+	}
+
+	/**
+	 * tickTime(tick) <br>
+	 * private method <br>
+	 * @param tick (long) tick number from the start of the lead-in
+	 * @return (long) song time of the game tick in ms, on the GameRules.FPS grid the game loop runs on
+	 */
+	private long tickTime(long tick) {
+		return startMs + tick * 1000L / GameRules.FPS;
+	}
+
+	/**
+	 * renderChunk(first,end) <br>
+	 * private method <br>
+	 * plays the replay up to a range of frames and renders them (render pool thread)
+	 * @param first (int) first frame
+	 * @param end (int) frame after the last one
+	 * @throws InterruptedException if interrupted while waiting for a free image
+	 */
+	private void renderChunk(int first, int end) throws InterruptedException {
+		GameSimulation sim = new GameSimulation(replay, false, () -> {});
+		GameScene scene = new GameScene(sim.getLayout());
+		long tick = 0;
+		for (int frame = first; frame < end; frame++) {
+			long t = frameTime(frame);
+			// every tick up to the frame, frames before the chunk included (effects are stepped per tick)
+			while (tickTime(tick) <= t) {
+				sim.stepTo(tickTime(tick));
+				tick++;
+			}
+			FrameSnapshot s = sim.getExchange().acquire();
+			BufferedImage image = images.take();
+			Graphics2D g2 = image.createGraphics();
+			g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g2.scale(width / (double) GameRules.WIDTH, height / (double) GameRules.HEIGHT);
+			scene.paint(g2, s, t, null);
+			g2.dispose();
+			int number = frame;
+			writers.execute(() -> write(image, number));
+		}
+		sim.shutdown();
+	}
+
+	/**
+	 * write(image,frame) <br>
+	 * private method <br>
+	 * encodes one frame to its PNG file and returns the image to the pool (writer pool thread)
+	 * @param image (BufferedImage) rendered frame
+	 * @param frame (int) frame number
+	 */
+	private void write(BufferedImage image, int frame) {
+		File file = new File(outDir, String.format("frame_%06d.png", frame));
+		try {
+			ImageIO.write(image, "png", file);
+			written.incrementAndGet();
+		} catch (IOException e) {
+			failed.incrementAndGet();
+			System.err.println("Error writing " + file + ": " + e.getMessage());
+		} finally {
+			images.add(image);
+		}
+	}
+
+	/**
+	 * render(renderers,chunks) <br>
+	 * private method <br>
+	 * renders every frame on a pool of render threads and waits for the writers
+	 * @param renderers (ExecutorService) render pool
+	 * @param chunks (int) number of frame ranges
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException if a chunk failed to render
+	 */
+	private void render(ExecutorService renderers, int chunks) throws InterruptedException, ExecutionException {
+		List<Future<?>> done = new ArrayList<>();
+		for (int c = 0; c < chunks; c++) {
+			int first = (int) ((long) frameCount * c / chunks);
+			int end = (int) ((long) frameCount * (c + 1) / chunks);
+			done.add(renderers.submit(() -> {
+				renderChunk(first, end);
+				return null;
+			}));
+		}
+		for (Future<?> f : done) {
+			f.get();
+		}
+		writers.shutdown();
+		writers.awaitTermination(1, TimeUnit.HOURS);
+	}
+
+	/**
+	 * main(args) <br>
+	 * renders a replay file to a PNG sequence and reports the frames per second
+	 * - java ReplayRenderer replayFile outDir [fps, default 60] [width] [height] [threads, default all cores]
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("usage: java ReplayRenderer replayFile outDir [fps] [width] [height] [threads]");
+			return;
+		}
+		int fps = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+		int width = args.length > 3 ? Integer.parseInt(args[3]) : GameRules.WIDTH;
+		int height = args.length > 4 ? Integer.parseInt(args[4]) : GameRules.HEIGHT;
+		int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		GameRules.SOUND_ENABLED = false;
+		Replay replay;
+		try {
+			replay = Replay.load(new File(args[0]));
+		} catch (IOException e) {
+			System.err.println("Error reading replay " + args[0] + ": " + e.getMessage());
+			return;
+		}
+		File outDir = new File(args[1]);
+		if (!outDir.isDirectory() && !outDir.mkdirs()) {
+			System.err.println("Error creating " + outDir);
+			return;
+		}
+		// images are loaded once, before the render threads read them
+		ThemeLoader.loadModernThemeAssets();
+		ExecutorService renderers = Executors.newFixedThreadPool(threads);
+		ExecutorService writers = Executors.newFixedThreadPool(threads);
+		// each renderer has an image to draw on while the writers have one queued or encoding each
+		ReplayRenderer renderer = new ReplayRenderer(replay, outDir, fps, width, height, writers, threads * 3);
+		int chunks = Math.max(1, Math.min(renderer.frameCount, threads * CHUNKS_PER_THREAD));
+		System.out.printf("%s: %.1f s of song, %d frames at %d fps, %dx%d, %d threads%n",
+				args[0], replay.endMs / 1000.0, renderer.frameCount, fps, width, height, threads);
+		long t0 = System.nanoTime();
+		try {
+			renderer.render(renderers, chunks);
+		} catch (ExecutionException e) {
+			System.err.println("Error rendering replay: " + e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			renderers.shutdownNow();
+			writers.shutdownNow();
+		}
+		double seconds = (System.nanoTime() - t0) / 1e9;
+		System.out.printf("%d frames written to %s in %.1f s (%.1f frames/s), %d failed%n",
+				renderer.written.get(), outDir, seconds, renderer.written.get() / seconds, renderer.failed.get());
+	}
+}
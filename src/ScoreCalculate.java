@@ -12,6 +12,9 @@ public class ScoreCalculate {
 	public int comboCount = 0;
 	public int maxCombo = 0;
 	public int hits = 0;
+	public int perfects = 0;
+	public int greats = 0;
+	public int goods = 0;
 	public int misses = 0;
 	public int wrongs = 0;
 	public int add;
@@ -40,15 +43,19 @@ public class ScoreCalculate {
 	 * registerHit(quality) <br>
 	 * called on successful hit
 	 * - handles game scoring
-	 * @param quality (int) hit location to window passed in by caller
+	 * @param quality (int) Judge grade: Judge.PERFECT, Judge.GREAT or Judge.GOOD
 	 */
 	void registerHit(int quality) {
-		// quality: 0 = perfect, 1 = good, 2 = late/early (still ok)
 		add = switch (quality) {
-			case 0 -> 300;
-			case 1 -> 150;
+			case Judge.PERFECT -> 300;
+			case Judge.GREAT -> 150;
 			default -> 100;
 		};
+		switch (quality) {
+			case Judge.PERFECT -> perfects++;
+			case Judge.GREAT -> greats++;
+			default -> goods++;
+		}
 		score += add + (comboCount * add);
 		hits++;
 		comboCount++;
@@ -110,6 +117,9 @@ public class ScoreCalculate {
 		comboCount = 0;
 		maxCombo = 0;
 		hits = 0;
+		perfects = 0;
+		greats = 0;
+		goods = 0;
 		misses = 0;
 		wrongs = 0;
 		goldMode = false;
@@ -0,0 +1,109 @@
+/*
+ * ScrollMap.java
+ */
+
+import java.util.Arrays;
+
+/**
+ * ScrollMap class <br>
+ * scroll-velocity (SV) segments of a chart, mapping song time to scroll position
+ * - each segment starts at a time (ms) and scrolls at a multiple of the base speed until the next one,
+ *   before the first segment the multiplier is 1
+ * - the position at every segment start is precomputed once (prefix integral of the multipliers),
+ *   so position(t) is one binary search plus one multiply, with no per-frame accumulation error
+ * - positions are in ms of base-speed scrolling: a tile's distance above the hit line is
+ *   (position(note) - position(now)) * pxPerMs
+ * - negative multipliers are read as 0 (a stop), positions therefore never decrease
+ * - immutable, so the simulation and the renderer share one instance
+ */
+public final class ScrollMap {
+	// no SV changes: position(t) == t
+	static final ScrollMap CONSTANT = new ScrollMap(new long[0], new float[0], 0);
+	final long[] starts;
+	final float[] speeds;
+	private final double[] offsets; // position at starts[i]
+
+	/**
+	 * ScrollMap(starts,speeds,n) <br>
+	 * constructor
+	 * - the first n entries are used, they must be sorted by time; of several entries with the same
+	 *   time the last one wins
+	 * @param starts (long[]) segment start times in ms
+	 * @param speeds (float[]) scroll multiplier of each segment
+	 * @param n (int) number of segments
+	 */
+	public ScrollMap(long[] starts, float[] speeds, int n) {
+		long[] s = new long[n];
+		float[] v = new float[n];
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			if (i > 0 && starts[i] < starts[i - 1]) {
+				throw new IllegalArgumentException("scroll segments out of order at " + starts[i] + " ms");
+			}
+			if (m > 0 && s[m - 1] == starts[i]) {
+				m--;
+			}
+			s[m] = starts[i];
+			v[m++] = Math.max(0f, speeds[i]);
+		}
+		this.starts = m == n ? s : Arrays.copyOf(s, m);
+		this.speeds = m == n ? v : Arrays.copyOf(v, m);
+		offsets = new double[m];
+		for (int i = 0; i < m; i++) {
+			offsets[i] = i == 0 ? this.starts[0] : offsets[i - 1] + (this.starts[i] - this.starts[i - 1]) * (double) this.speeds[i - 1];
+		}
+	}
+
+	/**
+	 * segment(timeMs) <br>
+	 * private method <br>
+	 * binary search for the segment holding a time
+	 * @param timeMs (long) song time in ms
+	 * @return (int) index of the last segment starting at or before timeMs, -1 if before the first
+	 */
+	private int segment(long timeMs) {
+		int lo = 0;
+		int hi = starts.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (starts[mid] <= timeMs) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return hi;
+	}
+
+	/**
+	 * position(timeMs) <br>
+	 * scroll position of a song time, O(log segments)
+	 * @param timeMs (long) song time in ms
+	 * @return (double) position in base-speed ms
+	 */
+	double position(long timeMs) {
+		int i = segment(timeMs);
+		if (i < 0) {
+			return timeMs;
+		}
+		return offsets[i] + (timeMs - starts[i]) * (double) speeds[i];
+	}
+
+	/**
+	 * speedAt(timeMs) <br>
+	 * @param timeMs (long) song time in ms
+	 * @return (float) scroll multiplier in effect at that time
+	 */
+	float speedAt(long timeMs) {
+		int i = segment(timeMs);
+		return i < 0 ? 1f : speeds[i];
+	}
+
+	/**
+	 * size() <br>
+	 * @return (int) number of segments
+	 */
+	int size() {
+		return starts.length;
+	}
+}
@@ -17,6 +17,10 @@ import java.util.*;
  */
 @SuppressWarnings("FieldCanBeLocal")
 public class SettingsPanel extends JPanel {
+	// button columns: theme / general settings on the left, audio and gameplay on the right
+	private static final int LEFT_X = 30;
+	private static final int RIGHT_X = 310;
+	private static final int COLUMN_W = 260;
 	// current song selection
 	private int currentSelection = 0;
 	// used for fade transitions
@@ -30,12 +34,26 @@ public class SettingsPanel extends JPanel {
 	public JButton accentColorButton;
 	public JButton soundButton;
 	public JButton difficultyButton;
+	public JButton calibrateButton;
+	public JButton outputButton;
+	public JButton bufferButton;
+	public JButton spectrumButton;
+	public JButton midiButton;
+	public JButton hiSpeedButton;
+	public JButton practiceButton;
+	public JButton rateButton;
+	public JButton pitchButton;
+	public JButton lanesButton;
+	public JButton versusButton;
 	public JButton exitButton;
 	// message label and corresponding test field
 	public JLabel messageLabel = new JLabel();
 	public JTextField messageField = new JTextField();
 	// theme label
 	private JLabel themeLabel = new JLabel();
+	// measured output latency / underruns, refreshed while the panel is shown
+	public JLabel audioLabel = new JLabel();
+	private final javax.swing.Timer audioStatusTimer = new javax.swing.Timer(500, e -> refreshAudioStatus());
 
 	/**
 	 * SettingsPanel() <br>
@@ -45,65 +63,136 @@ public class SettingsPanel extends JPanel {
 	 * - size, background color, accent color, font, difficulty,
 	 */
 	public SettingsPanel() {
-		setSize(Config.WIDTH, Config.HEIGHT);
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setLayout(null);
 		setBackground(Config.BACKGROUND_COLOR);
 		// font size button
 		fontButton = ThemeLoader.createRoundButton("FONT", 20);
 		fontButton.setActionCommand("FONT");
-		fontButton.setBounds(225, 140, 150, 40);
+		fontButton.setBounds(LEFT_X, 90, COLUMN_W, 40);
 		bit.add(fontButton);
 		add(fontButton);
 		//setFocusable(true);
 		// background color button
 		backgroundColorButton = ThemeLoader.createRoundButton("BACKGROUND", 20);
 		backgroundColorButton.setActionCommand("BACKGROUND");
-		backgroundColorButton.setBounds(175, 215, 250, 40);
+		backgroundColorButton.setBounds(LEFT_X, 160, COLUMN_W, 40);
 		bit.add(backgroundColorButton);
 		add(backgroundColorButton);
 		//setFocusable(true);
 		// theme label under the background button
 		themeLabel.setForeground(Color.WHITE);
 		themeLabel.setFont(new Font("SansSerif", Font.PLAIN, 16));
-		themeLabel.setBounds(185, 255, 200, 25);
+		themeLabel.setBounds(LEFT_X + 10, 200, 200, 25);
 		add(themeLabel);
 		// accent color button
 		accentColorButton = ThemeLoader.createRoundButton("ACCENT", 20);
 		accentColorButton.setActionCommand("ACCENT");
-		accentColorButton.setBounds(200, 290, 200, 40);
+		accentColorButton.setBounds(LEFT_X, 230, COLUMN_W, 40);
 		bit.add(accentColorButton);
 		add(accentColorButton);
 		//setFocusable(true);
 		// Sound toggle button
 		soundButton = ThemeLoader.createRoundButton("SOUND: ON", 20);
 		soundButton.setActionCommand("SOUND");
-		soundButton.setBounds(175, 365, 250, 40);
+		soundButton.setBounds(LEFT_X, 300, COLUMN_W, 40);
 		bit.add(soundButton);
 		add(soundButton);
 		//setFocusable(true);
 		// difficulty button
 		difficultyButton = ThemeLoader.createRoundButton("DIFFICULTY", 20);
 		difficultyButton.setActionCommand("DIFFICULTY");
-		difficultyButton.setBounds(175, 440, 250, 40);
+		difficultyButton.setBounds(LEFT_X, 370, COLUMN_W, 40);
 		bit.add(difficultyButton);
 		add(difficultyButton);
 		//setFocusable(true);
+		// latency calibration button
+		calibrateButton = ThemeLoader.createRoundButton("CALIBRATE", 20);
+		calibrateButton.setActionCommand("CALIBRATE");
+		calibrateButton.setBounds(LEFT_X, 440, COLUMN_W, 40);
+		bit.add(calibrateButton);
+		add(calibrateButton);
+		// output device button (cycles through the mixers that can play PCM)
+		outputButton = ThemeLoader.createRoundButton("OUTPUT", 20);
+		outputButton.setActionCommand("OUTPUT");
+		outputButton.setBounds(RIGHT_X, 90, COLUMN_W, 40);
+		bit.add(outputButton);
+		add(outputButton);
+		// line buffer size button
+		bufferButton = ThemeLoader.createRoundButton("BUFFER: AUTO", 20);
+		bufferButton.setActionCommand("BUFFER");
+		bufferButton.setBounds(RIGHT_X, 160, COLUMN_W, 40);
+		bit.add(bufferButton);
+		add(bufferButton);
+		// spectrum visualizer toggle
+		spectrumButton = ThemeLoader.createRoundButton("SPECTRUM: OFF", 20);
+		spectrumButton.setActionCommand("SPECTRUM");
+		spectrumButton.setBounds(RIGHT_X, 230, COLUMN_W, 40);
+		bit.add(spectrumButton);
+		add(spectrumButton);
+		// MIDI sequencer playback toggle
+		midiButton = ThemeLoader.createRoundButton("MIDI PLAYBACK: ON", 20);
+		midiButton.setActionCommand("MIDI");
+		midiButton.setBounds(RIGHT_X, 300, COLUMN_W, 40);
+		bit.add(midiButton);
+		add(midiButton);
+		// hi-speed (scroll speed multiplier) button
+		hiSpeedButton = ThemeLoader.createRoundButton("HI-SPEED: 1.0X", 20);
+		hiSpeedButton.setActionCommand("HISPEED");
+		hiSpeedButton.setBounds(RIGHT_X, 370, COLUMN_W, 40);
+		bit.add(hiSpeedButton);
+		add(hiSpeedButton);
+		// practice mode toggle
+		practiceButton = ThemeLoader.createRoundButton("PRACTICE: OFF", 20);
+		practiceButton.setActionCommand("PRACTICE");
+		practiceButton.setBounds(RIGHT_X, 440, COLUMN_W, 40);
+		bit.add(practiceButton);
+		add(practiceButton);
+		// practice playback rate button
+		rateButton = ThemeLoader.createRoundButton("PRACTICE RATE: 1.0X", 20);
+		rateButton.setActionCommand("RATE");
+		rateButton.setBounds(RIGHT_X, 510, COLUMN_W, 40);
+		bit.add(rateButton);
+		add(rateButton);
+		// pitch at other rates (time-stretch or varispeed)
+		pitchButton = ThemeLoader.createRoundButton("PITCH: KEEP", 20);
+		pitchButton.setActionCommand("PITCH");
+		pitchButton.setBounds(LEFT_X, 510, COLUMN_W, 40);
+		bit.add(pitchButton);
+		add(pitchButton);
+		// lane count (4K .. 10K)
+		lanesButton = ThemeLoader.createRoundButton("LANES: " + GameRules.LANES + "K", 20);
+		lanesButton.setActionCommand("LANES");
+		lanesButton.setBounds(LEFT_X, 580, COLUMN_W, 40);
+		bit.add(lanesButton);
+		add(lanesButton);
+		// two-player versus mode
+		versusButton = ThemeLoader.createRoundButton("VERSUS: OFF", 20);
+		versusButton.setActionCommand("VERSUS");
+		versusButton.setBounds(RIGHT_X, 580, COLUMN_W, 40);
+		bit.add(versusButton);
+		add(versusButton);
 		// exit button
 		exitButton = ThemeLoader.createRoundButton("EXIT", 20);
 		exitButton.setActionCommand("EXIT");
-		exitButton.setBounds(225, 525, 150, 40);
+		exitButton.setBounds((GameRules.WIDTH - 150) / 2, 622, 150, 32);
 		bit.add(exitButton);
 		add(exitButton);
 		// message label under the exit button
 		messageLabel.setForeground(Color.WHITE);
 		messageLabel.setFont(new Font("SansSerif", Font.PLAIN, 16));
-		messageLabel.setBounds(175, 600, 300, 25);
+		messageLabel.setBounds(175, 655, 300, 25);
 		add(messageLabel);
+		// audio status label under the message label
+		audioLabel.setForeground(Color.WHITE);
+		audioLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+		audioLabel.setBounds(100, 685, 420, 25);
+		add(audioLabel);
 		// message field under the messageLabel button
 		messageField.setBackground(Config.BACKGROUND_COLOR);
 		messageField.setForeground(Color.WHITE);
 		messageField.setFont(new Font("SansSerif", Font.PLAIN, 16));
-		messageField.setBounds(175, 650, 300, 25);
+		messageField.setBounds(175, 700, 300, 25);
 		//add(messageField);
 		//setFocusable(true);
 		// update focus
@@ -218,6 +307,38 @@ public class SettingsPanel extends JPanel {
 		return alpha;
 	}
 
+	/**
+	 * refreshAudioStatus() <br>
+	 * shows the measured line buffer latency and the underrun count
+	 * - the timer runs only while the panel is visible
+	 */
+	public void refreshAudioStatus() {
+		audioLabel.setText(String.format("Output: %s   Buffer: %.1f ms (%d frames)   Underruns: %d",
+				AudioEngine.getDeviceName(), AudioEngine.getBufferLatencyMs(),
+				AudioEngine.getBufferFrames(), AudioEngine.getUnderrunCount()));
+		String buffer = Config.LINE_BUFFER_MS > 0 ? Config.LINE_BUFFER_MS + " MS" : "AUTO";
+		bufferButton.setText("BUFFER: " + buffer);
+	}
+
+	/**
+	 * setVisible(visible) <br>
+	 * starts / stops the audio status refresh with the panel
+	 * @param visible (boolean) true to show the panel
+	 */
+	@Override
+	public void setVisible(boolean visible) {
+		super.setVisible(visible);
+		if (audioStatusTimer == null) {
+			return; // called by JPanel before the fields are initialised
+		}
+		if (visible) {
+			refreshAudioStatus();
+			audioStatusTimer.start();
+		} else {
+			audioStatusTimer.stop();
+		}
+	}
+
 	/**
 	 * refreshTheme() <br>
 	 * change the theme
@@ -0,0 +1,62 @@
+/*
+ * SnapshotExchange.java
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SnapshotExchange class <br>
+ * lock-free triple buffer of FrameSnapshots between the simulation and the renderer
+ * - the simulation fills its back buffer and publishes it, the renderer takes the newest published one
+ * - one atomic swap per publish / acquire: neither side waits for the other, and a snapshot is never
+ *   written while it is being drawn
+ */
+public class SnapshotExchange {
+	private static final int FRESH = 4; // set while the middle buffer holds an unread snapshot
+	private final FrameSnapshot[] buffers = new FrameSnapshot[3];
+	// index of the middle buffer, plus FRESH
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0; // simulation thread only
+	private int front = 2; // render thread only
+
+	/**
+	 * SnapshotExchange(lanes,laneCapacity) <br>
+	 * constructor
+	 * @param lanes (int) number of lanes
+	 * @param laneCapacity (int) starting capacity of the simulation's lane queues (a copy grows with them)
+	 */
+	public SnapshotExchange(int lanes, int laneCapacity) {
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = new FrameSnapshot(lanes, laneCapacity);
+		}
+	}
+
+	/**
+	 * back() <br>
+	 * simulation side: the snapshot to fill next
+	 * @return (FrameSnapshot) back buffer
+	 */
+	public FrameSnapshot back() {
+		return buffers[back];
+	}
+
+	/**
+	 * publish() <br>
+	 * simulation side: hands the filled back buffer to the renderer, takes the middle one as the new back buffer
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & 3;
+	}
+
+	/**
+	 * acquire() <br>
+	 * render side: the newest published snapshot (the previous one again if nothing new was published)
+	 * @return (FrameSnapshot) front buffer, owned by the renderer until the next acquire()
+	 */
+	public FrameSnapshot acquire() {
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & 3;
+		}
+		return buffers[front];
+	}
+}
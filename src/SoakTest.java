@@ -0,0 +1,249 @@
+/*
+ * SoakTest.java
+ */
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SoakTest class <br>
+ * unattended soak test of the whole program: the AutoPlayer plays game after game in the real
+ * Application (Swing, game loop, sound, stats and replay saving) for hours
+ * - cycles every song (not endless) and every difficulty; a finished game is left the way ENTER
+ *   leaves it, so its stats and replay are saved as usual
+ * - every sample period it logs, to the console and to soak_millis.csv: games played, frames
+ *   painted, paint time and frame interval (p50 / p99 / max), heap used, heap left after the last
+ *   GC, thread count, GC count and GC time, and the gameplay events a telemetry consumer read from
+ *   each game's GameEventBus (and lost, if it fell behind)
+ * - at the end it compares the last samples with the first ones (after a warm-up) and exits with
+ *   status 1 if the heap after GC or the thread count kept growing
+ * - java SoakTest [hours, default 4] [timing error ms, default 12] [sample seconds, default 30]
+ * - all of it runs on the EDT (a Swing Timer), so the frame counters need no locking
+ */
+public class SoakTest {
+	private static final String[] DIFFICULTIES = {"VERY EASY", "EASY", "MEDIUM", "HARD", "VERY HARD"};
+	private static final int FRAMES = 8192; // paints kept per sample (power of two)
+	private static final int WARM_UP_SAMPLES = 4;
+	private static final long HEAP_GROWTH_LIMIT = 32L << 20; // bytes
+	private static final int THREAD_GROWTH_LIMIT = 4;
+	// the running soak test, painted frames are counted while it is set (EDT)
+	private static SoakTest active;
+	private final long endNanos;
+	private final long sampleNanos;
+	private final long startNanos = System.nanoTime();
+	private long nextSampleNanos;
+	private final PrintWriter log;
+	private final Timer timer;
+	private int games = 0;
+	// telemetry: events read on the consumer thread of the current game, lost ones of finished games
+	private final AtomicLong events = new AtomicLong();
+	private GameEventBus.Consumer telemetry;
+	private GamePanel current; // game the telemetry consumer reads
+	private long eventsLost = 0;
+	// frames of the current sample
+	private final long[] paintNanos = new long[FRAMES];
+	private final long[] intervalNanos = new long[FRAMES];
+	private int frames = 0;
+	private long lastPaintNanos = 0;
+	// samples for the final check
+	private int samples = 0;
+	private long firstHeapAfterGc;
+	private int firstThreads;
+	private long lastHeapAfterGc;
+	private int lastThreads;
+
+	/**
+	 * SoakTest(hours,sampleSeconds,log) <br>
+	 * constructor
+	 * @param hours (double) how long to run
+	 * @param sampleSeconds (int) seconds between two samples
+	 * @param log (PrintWriter) CSV log
+	 */
+	private SoakTest(double hours, int sampleSeconds, PrintWriter log) {
+		this.endNanos = startNanos + (long) (hours * 3600e9);
+		this.sampleNanos = sampleSeconds * 1_000_000_000L;
+		this.nextSampleNanos = startNanos + sampleNanos;
+		this.log = log;
+		timer = new Timer(1000, e -> tick());
+	}
+
+	/**
+	 * frame(paintStartNanos) <br>
+	 * counts a painted game frame (GamePanel.paintComponent, EDT)
+	 * @param paintStartNanos (long) System.nanoTime() at the start of the paint
+	 */
+	static void frame(long paintStartNanos) {
+		SoakTest soak = active;
+		if (soak == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		int i = soak.frames++ & (FRAMES - 1);
+		soak.paintNanos[i] = now - paintStartNanos;
+		soak.intervalNanos[i] = soak.lastPaintNanos == 0 ? 0 : paintStartNanos - soak.lastPaintNanos;
+		soak.lastPaintNanos = paintStartNanos;
+	}
+
+	/**
+	 * tick() <br>
+	 * private method <br>
+	 * once a second: leaves a finished game and starts the next one, samples when due, stops at the end
+	 */
+	private void tick() {
+		long now = System.nanoTime();
+		GamePanel game = Application.getGamePanel();
+		if (game != null && game != current) {
+			// a game prepared since the last tick, the telemetry is stopped with it
+			current = game;
+			telemetry = game.getEvents().start("soak-telemetry", e -> events.incrementAndGet());
+		}
+		if (game == null || game.isOver()) {
+			if (game != null) {
+				game.leave();
+				games++;
+				eventsLost += telemetry.getLost();
+			}
+			if (now < endNanos && !Application.isPreparing()) {
+				int song = games % GameRules.ENDLESS_SONG;
+				String difficulty = DIFFICULTIES[games / GameRules.ENDLESS_SONG % DIFFICULTIES.length];
+				Application.playUnattended(difficulty, song);
+			}
+		}
+		if (now >= nextSampleNanos) {
+			nextSampleNanos += sampleNanos;
+			sample(now);
+		}
+		if (now >= endNanos) {
+			finish();
+		}
+	}
+
+	/**
+	 * sample(now) <br>
+	 * private method <br>
+	 * logs one line of metrics and starts a new frame sample
+	 * @param now (long) System.nanoTime()
+	 */
+	private void sample(long now) {
+		int n = Math.min(frames, FRAMES);
+		long[] paint = Arrays.copyOf(paintNanos, n);
+		long[] interval = Arrays.copyOf(intervalNanos, n);
+		Arrays.sort(paint);
+		Arrays.sort(interval);
+		long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		long heapAfterGc = heapAfterGc();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		int threadCount = threads.getThreadCount();
+		long gcCount = 0;
+		long gcMs = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, gc.getCollectionCount());
+			gcMs += Math.max(0, gc.getCollectionTime());
+		}
+		long lost = eventsLost + (telemetry != null ? telemetry.getLost() : 0);
+		String line = String.format("%.3f,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,%.1f,%.1f,%d,%d,%d,%d,%d",
+				(now - startNanos) / 3600e9, games, frames,
+				ms(paint, 50), ms(paint, 99), ms(paint, 100), ms(interval, 50), ms(interval, 99), ms(interval, 100),
+				heapUsed / 1e6, heapAfterGc / 1e6, threadCount, gcCount, gcMs, events.get(), lost);
+		System.out.println("soak " + line);
+		log.println(line);
+		log.flush();
+		samples++;
+		if (samples == WARM_UP_SAMPLES) {
+			firstHeapAfterGc = heapAfterGc;
+			firstThreads = threadCount;
+		}
+		lastHeapAfterGc = heapAfterGc;
+		lastThreads = threadCount;
+		frames = 0;
+		lastPaintNanos = 0;
+	}
+
+	/**
+	 * finish() <br>
+	 * private method <br>
+	 * stops the soak test, reports growth and exits
+	 */
+	private void finish() {
+		timer.stop();
+		active = null;
+		log.close();
+		boolean checked = samples > WARM_UP_SAMPLES;
+		long heapGrowth = lastHeapAfterGc - firstHeapAfterGc;
+		int threadGrowth = lastThreads - firstThreads;
+		boolean leak = checked && (heapGrowth > HEAP_GROWTH_LIMIT || threadGrowth > THREAD_GROWTH_LIMIT);
+		System.out.printf("soak: %d games, heap after GC %+.1f MB, threads %+d since warm-up: %s%n",
+				games, heapGrowth / 1e6, threadGrowth, !checked ? "too short to check" : leak ? "LEAK" : "OK");
+		System.exit(leak ? 1 : 0);
+	}
+
+	/**
+	 * heapAfterGc() <br>
+	 * private method <br>
+	 * @return (long) heap bytes still used after the last collection of each heap pool
+	 */
+	private static long heapAfterGc() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (pool.getType() == MemoryType.HEAP && usage != null) {
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * ms(sorted,percentile) <br>
+	 * private method <br>
+	 * @param sorted (long[]) sorted nanosecond values
+	 * @param percentile (int) 0 .. 100
+	 * @return (double) the percentile in ms, 0 if there are no values
+	 */
+	private static double ms(long[] sorted, int percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+	}
+
+	/**
+	 * main(args) <br>
+	 * opens the Application as Guest and runs the soak test
+	 * - java SoakTest [hours, default 4] [timing error ms, default 12] [sample seconds, default 30]
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) {
+		double hours = args.length > 0 ? Double.parseDouble(args[0]) : 4;
+		GameRules.AUTOPLAY = true;
+		GameRules.AUTOPLAY_SIGMA_MS = args.length > 1 ? Double.parseDouble(args[1]) : 12;
+		int sampleSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		String file = "soak_" + System.currentTimeMillis() + ".csv";
+		PrintWriter log;
+		try {
+			log = new PrintWriter(new FileWriter(file));
+		} catch (IOException e) {
+			System.err.println("Error writing soak log " + file + ": " + e.getMessage());
+			return;
+		}
+		log.println("hours,games,frames,paint_p50_ms,paint_p99_ms,paint_max_ms,frame_p50_ms,frame_p99_ms,frame_max_ms,"
+				+ "heap_used_mb,heap_after_gc_mb,threads,gc_count,gc_ms,events,events_lost");
+		AudioEngine.start();
+		SwingUtilities.invokeLater(() -> {
+			new Application();
+			active = new SoakTest(hours, sampleSeconds, log);
+			active.timer.start();
+		});
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * SongPack.java
+ */
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SongPack class <br>
+ * a single file holding every song of the game, IMA ADPCM compressed
+ * - header: "MNVP", version, track count, then one index entry per track
+ * - index entry: title, sample rate, channels, BPM, frame count, frames per block, block count, data offset
+ * - data: fixed-size ADPCM blocks, so any frame can be reached without decoding from the start
+ *   (the block of a frame is frame / framesPerBlock, a seek decodes that one block only)
+ * - the data is memory-mapped and decoded one block at a time during playback
+ */
+public class SongPack {
+	// default pack location, used by Audio when present
+	static final String DEFAULT_PATH = "Music/songs.pack";
+	private static final int MAGIC = 0x4D4E5650; // "MNVP"
+	private static final int VERSION = 1;
+	// ~46 ms of audio per block at 44.1 kHz
+	private static final int FRAMES_PER_BLOCK = 2048;
+
+	// tracks in index order
+	private final List<Track> tracks = new ArrayList<>();
+
+	/**
+	 * Track class <br>
+	 * index entry and mapped data of one song
+	 */
+	static class Track {
+		String title;
+		float sampleRate;
+		int channels;
+		float bpm;
+		long frameLength;
+		int framesPerBlock;
+		int blockCount;
+		long dataOffset;
+		// mapped ADPCM blocks of this track (shared, read with absolute gets)
+		MappedByteBuffer data;
+
+		/**
+		 * getFormat() <br>
+		 * returns the decoded PCM format
+		 * @return (AudioFormat) signed 16 bit little-endian format
+		 */
+		AudioFormat getFormat() {
+			return new AudioFormat(sampleRate, 16, channels, true, false);
+		}
+
+		/**
+		 * getDurationMs() <br>
+		 * returns the length of the track
+		 * @return (long) duration in milliseconds
+		 */
+		long getDurationMs() {
+			return (long) (frameLength * 1000L / sampleRate);
+		}
+
+		/**
+		 * openDecoder() <br>
+		 * returns a new incremental decoder positioned at the start of the track
+		 * @return (PcmSource) decoder over the mapped data
+		 */
+		PcmSource openDecoder() {
+			return new Decoder(this);
+		}
+	}
+
+	/**
+	 * Decoder class <br>
+	 * PcmSource that decodes one ADPCM block at a time from the mapped track data
+	 */
+	static class Decoder implements PcmSource {
+		private final Track track;
+		private final AudioFormat format;
+		private final int blockBytes;
+		// decoded PCM of the current block
+		private final byte[] pcm;
+		private int pcmPos = 0;
+		private int pcmLimit = 0;
+		private int nextBlock = 0;
+
+		/**
+		 * Decoder(track) <br>
+		 * constructor
+		 * @param track (Track) track to decode
+		 */
+		Decoder(Track track) {
+			this.track = track;
+			this.format = track.getFormat();
+			this.blockBytes = ImaAdpcm.blockBytes(track.channels, track.framesPerBlock);
+			this.pcm = new byte[track.framesPerBlock * track.channels * 2];
+		}
+
+		@Override
+		public AudioFormat getFormat() {
+			return format;
+		}
+
+		@Override
+		public long getFrameLength() {
+			return track.frameLength;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (pcmPos == pcmLimit && !decodeNext()) {
+				return -1;
+			}
+			int frameSize = format.getFrameSize();
+			int n = Math.min(len - len % frameSize, pcmLimit - pcmPos);
+			System.arraycopy(pcm, pcmPos, b, off, n);
+			pcmPos += n;
+			return n;
+		}
+
+		/**
+		 * decodeNext() <br>
+		 * private method <br>
+		 * decodes the next block into the PCM buffer
+		 * @return (boolean) false at the end of the track
+		 */
+		private boolean decodeNext() {
+			if (nextBlock >= track.blockCount) {
+				return false;
+			}
+			long firstFrame = (long) nextBlock * track.framesPerBlock;
+			int frames = (int) Math.min(track.framesPerBlock, track.frameLength - firstFrame);
+			ImaAdpcm.decodeBlock(track.data, nextBlock * blockBytes, track.channels, track.framesPerBlock, frames, pcm);
+			nextBlock++;
+			pcmPos = 0;
+			pcmLimit = frames * format.getFrameSize();
+			return true;
+		}
+
+		@Override
+		public void seek(long frame) {
+			long target = Math.max(0, Math.min(frame, track.frameLength));
+			nextBlock = (int) (target / track.framesPerBlock);
+			pcmPos = pcmLimit = 0;
+			if (decodeNext()) {
+				pcmPos = (int) (target % track.framesPerBlock) * format.getFrameSize();
+			}
+		}
+
+		@Override
+		public void close() {
+			nextBlock = track.blockCount;
+			pcmPos = pcmLimit = 0;
+		}
+	}
+
+	/**
+	 * SongPack() <br>
+	 * private constructor
+	 * - use open(file)
+	 */
+	private SongPack() {}
+
+	/**
+	 * open(file) <br>
+	 * reads the index and memory-maps the track data
+	 * @param file (File) pack file
+	 * @return (SongPack) opened pack
+	 * @throws IOException if the file is missing or not a song pack
+	 */
+	static SongPack open(File file) throws IOException {
+		SongPack pack = new SongPack();
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			DataInputStream in = new DataInputStream(Channels.newInputStream(ch));
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a song pack: " + file);
+			}
+			int version = in.readUnsignedShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported song pack version " + version);
+			}
+			int count = in.readUnsignedShort();
+			for (int i = 0; i < count; i++) {
+				Track t = new Track();
+				t.title = in.readUTF();
+				t.sampleRate = in.readFloat();
+				t.channels = in.readUnsignedByte();
+				t.bpm = in.readFloat();
+				t.frameLength = in.readLong();
+				t.framesPerBlock = in.readInt();
+				t.blockCount = in.readInt();
+				t.dataOffset = in.readLong();
+				pack.tracks.add(t);
+			}
+			// the mapping stays valid after the channel is closed
+			for (Track t : pack.tracks) {
+				long size = (long) t.blockCount * ImaAdpcm.blockBytes(t.channels, t.framesPerBlock);
+				t.data = ch.map(FileChannel.MapMode.READ_ONLY, t.dataOffset, size);
+			}
+		}
+		return pack;
+	}
+
+	/**
+	 * size() <br>
+	 * returns the number of tracks
+	 * @return (int) track count
+	 */
+	int size() {
+		return tracks.size();
+	}
+
+	/**
+	 * getTrack(index) <br>
+	 * returns a track by index
+	 * @param index (int) track index, same numbering as Audio.song[]
+	 * @return (Track) track, or null if out of range
+	 */
+	Track getTrack(int index) {
+		return index >= 0 && index < tracks.size() ? tracks.get(index) : null;
+	}
+
+	/**
+	 * build(out,wavs,titles,bpms) <br>
+	 * encodes WAV files into a new pack
+	 * - songs are streamed block by block, they are never held in memory whole
+	 * @param out (File) pack file to write
+	 * @param wavs (File[]) source songs
+	 * @param titles (String[]) song titles
+	 * @param bpms (float[]) song tempos, 0 if unknown
+	 * @throws Exception if a song cannot be read or the pack cannot be written
+	 */
+	static void build(File out, File[] wavs, String[] titles, float[] bpms) throws Exception {
+		try (RandomAccessFile raf = new RandomAccessFile(out, "rw")) {
+			raf.setLength(0);
+			raf.writeInt(MAGIC);
+			raf.writeShort(VERSION);
+			raf.writeShort(wavs.length);
+			// index with placeholders, patched once each track is written
+			long[] entryPos = new long[wavs.length];
+			for (int i = 0; i < wavs.length; i++) {
+				raf.writeUTF(titles[i]);
+				entryPos[i] = raf.getFilePointer();
+				raf.write(new byte[4 + 1 + 4 + 8 + 4 + 4 + 8]);
+			}
+			for (int i = 0; i < wavs.length; i++) {
+				long dataOffset = raf.getFilePointer();
+				try (AudioInputStream src = AudioSystem.getAudioInputStream(wavs[i])) {
+					AudioFormat f = src.getFormat();
+					AudioFormat pcmFormat = new AudioFormat(f.getSampleRate(), 16, f.getChannels(), true, false);
+					AudioInputStream pcm = AudioSystem.getAudioInputStream(pcmFormat, src);
+					int channels = pcmFormat.getChannels();
+					long[] counts = encodeTrack(pcm, channels, raf);
+					raf.seek(entryPos[i]);
+					raf.writeFloat(pcmFormat.getSampleRate());
+					raf.writeByte(channels);
+					raf.writeFloat(bpms[i]);
+					raf.writeLong(counts[0]);
+					raf.writeInt(FRAMES_PER_BLOCK);
+					raf.writeInt((int) counts[1]);
+					raf.writeLong(dataOffset);
+					raf.seek(raf.length());
+				}
+			}
+		}
+	}
+
+	/**
+	 * encodeTrack(pcm,channels,raf) <br>
+	 * private method <br>
+	 * encodes a PCM stream block by block at the end of the file
+	 * @param pcm (AudioInputStream) signed 16 bit little-endian stream
+	 * @param channels (int) channel count
+	 * @param raf (RandomAccessFile) pack being written
+	 * @return (long[]) {frame count, block count}
+	 * @throws IOException on read / write errors
+	 */
+	private static long[] encodeTrack(AudioInputStream pcm, int channels, RandomAccessFile raf) throws IOException {
+		byte[] raw = new byte[FRAMES_PER_BLOCK * channels * 2];
+		short[] samples = new short[FRAMES_PER_BLOCK * channels];
+		byte[] block = new byte[ImaAdpcm.blockBytes(channels, FRAMES_PER_BLOCK)];
+		int[] predictor = new int[channels];
+		int[] index = new int[channels];
+		long frames = 0;
+		long blocks = 0;
+		while (true) {
+			int filled = 0;
+			while (filled < raw.length) {
+				int n = pcm.read(raw, filled, raw.length - filled);
+				if (n < 0) break;
+				filled += n;
+			}
+			if (filled == 0) break;
+			int count = filled / 2;
+			for (int k = 0; k < samples.length; k++) {
+				samples[k] = k < count ? (short) ((raw[2 * k] & 0xFF) | (raw[2 * k + 1] << 8)) : 0;
+			}
+			ImaAdpcm.encodeBlock(samples, channels, FRAMES_PER_BLOCK, predictor, index, block);
+			raf.write(block);
+			frames += count / channels;
+			blocks++;
+			if (filled < raw.length) break;
+		}
+		return new long[] {frames, blocks};
+	}
+
+	/**
+	 * main(args) <br>
+	 * command line packer
+	 * - usage: SongPack out.pack song.wav[@bpm] ...
+	 * - the title is the file name without extension
+	 * @param args (String[]) output file followed by the songs, in Audio.song[] order
+	 * @throws Exception if packing fails
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("usage: SongPack out.pack song.wav[@bpm] ...");
+			return;
+		}
+		int n = args.length - 1;
+		File[] wavs = new File[n];
+		String[] titles = new String[n];
+		float[] bpms = new float[n];
+		long rawBytes = 0;
+		for (int i = 0; i < n; i++) {
+			String arg = args[i + 1];
+			int at = arg.lastIndexOf('@');
+			wavs[i] = new File(at > 0 ? arg.substring(0, at) : arg);
+			bpms[i] = at > 0 ? Float.parseFloat(arg.substring(at + 1)) : 0f;
+			String name = wavs[i].getName();
+			titles[i] = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+			rawBytes += wavs[i].length();
+		}
+		File out = new File(args[0]);
+		long start = System.nanoTime();
+		build(out, wavs, titles, bpms);
+		System.out.printf("Packed %d songs: %d -> %d bytes in %d ms%n",
+				n, rawBytes, out.length(), (System.nanoTime() - start) / 1_000_000);
+	}
+}
@@ -24,8 +24,8 @@ public class SongSelectPanel extends JPanel {
 	public JButton[] songButtons;
 	// create exit button
 	public JButton exitButton = new JButton("EXIT");
-    // label to highlight song on keyboard hover (currently N/A)
-	public JLabel songLabel = new JLabel();
+    // status line under the songs ("Preparing chart..." while a game is built)
+	public JLabel songLabel = new JLabel(" ");
 	// currently selected song
 	private int currentSelection = 0;
 
@@ -38,7 +38,7 @@ public class SongSelectPanel extends JPanel {
      * - ThemeLoader class managed background
      */
 	public SongSelectPanel() {
-		setSize(Config.WIDTH, Config.HEIGHT);
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 		setBackground(Config.BACKGROUND_COLOR);
 		// collection of songs available
@@ -47,7 +47,8 @@ public class SongSelectPanel extends JPanel {
 				"Memories", // Audio song[1]
 				"Fur Elise", // Audio song[2]
 				"Canon", // Audio song[3]
-				"Moonlight Sonata" // Audio song[4]
+				"Moonlight Sonata", // Audio song[4]
+				"Endless" // generated notes, no music (GameRules.ENDLESS_SONG)
 		};
 		songButtons = new JButton[songs.length];
 		//add(Box.createVerticalGlue());
@@ -65,6 +66,10 @@ public class SongSelectPanel extends JPanel {
 		add(exitButton);
 		setFocusable(true);
 		add(Box.createVerticalStrut(10));
+		songLabel.setFont(Config.UI_FONT);
+		songLabel.setForeground(Config.TEXT_COLOR);
+		songLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+		add(songLabel);
 		add(Box.createVerticalGlue());
 		setFocusable(true);
 		addKeyListener(new KeyAdapter() {
@@ -96,6 +101,10 @@ public class SongSelectPanel extends JPanel {
 					currentSelection = 4;
 					updateFocus();
 					repaint();
+				}else if (e.getKeyCode() == KeyEvent.VK_6) {
+					currentSelection = 5;
+					updateFocus();
+					repaint();
 				} else if (e.getKeyCode() == KeyEvent.VK_ENTER) {
 					songButtons[currentSelection].doClick();
 				}
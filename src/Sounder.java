@@ -4,37 +4,39 @@
  */
 
 import javax.sound.midi.MidiChannel;
-import javax.sound.midi.MidiSystem;
-import javax.sound.midi.Synthesizer;
+import java.util.Arrays;
 import javax.swing.*;
 
 /**
  * Sounder class <br>
  * adds synthesized sound whenever desired
  * - added to missed tiles and erroneous key presses
+ * - plays through the shared AudioEngine synthesizer, so creating one is free
  */
 public class Sounder {
-	private Synthesizer synth;
-	private MidiChannel ch;
-	private final int[] laneNotes = {60, 64, 67, 72}; // C4, E4, G4, C5
+	private static final int[] TRIAD = {60, 64, 67, 72}; // C4, E4, G4, C5
+	private static final int[] SCALE = {60, 62, 64, 65, 67, 69, 71, 72, 74, 76}; // C major from C4
+	private final int[] laneNotes;
 
 	/**
 	 * Sounder() <br>
 	 * constructor
-	 * - creates a new sounder object for gameplay sounds
+	 * - creates a new sounder object for gameplay sounds, one note per lane of GameRules.LANES
+	 * - borrows channel 0 (piano) of the already open AudioEngine synthesizer
 	 */
 	Sounder() {
-		try {
-			synth = MidiSystem.getSynthesizer();
-			synth.open();
-			MidiChannel[] channels = synth.getChannels();
-			if (channels != null && channels.length > 0) {
-				ch = channels[0];
-				ch.programChange(0); // default piano
-			}
-		} catch (Exception ignored) {
-			System.err.println("Error opening sound channel: " + ignored.getMessage());
-		}
+		this(GameRules.LANES);
+	}
+
+	/**
+	 * Sounder(lanes) <br>
+	 * constructor
+	 * - 4 lanes play the C major triad, more lanes climb the C major scale
+	 * @param lanes (int) lane count
+	 */
+	Sounder(int lanes) {
+		laneNotes = lanes <= TRIAD.length ? TRIAD : Arrays.copyOf(SCALE, Math.min(lanes, SCALE.length));
+		AudioEngine.start();
 	}
 
 	/**
@@ -43,20 +45,26 @@ public class Sounder {
 	 * @param lane (int) current lane passed in by caller
 	 */
 	void playLane(int lane) {
+		// looked up per note, the engine may reopen the synthesizer on another device
+		MidiChannel ch = AudioEngine.getChannel(0);
 		if (ch == null) return;
 		lane = Math.max(0, Math.min(lane, laneNotes.length - 1));
 		int note = laneNotes[lane];
 		// short blip
 		ch.noteOn(note, 100);
-		// schedule noteOff
-		new Timer(120, e -> ch.noteOff(note)).start();
+		// schedule a single noteOff (a repeating timer would never release)
+		Timer off = new Timer(120, e -> ch.noteOff(note));
+		off.setRepeats(false);
+		off.start();
 	}
 
 	/**
 	 * close() <br>
-	 * closes the sounder object if left open
+	 * releases any voices still sounding
+	 * - the shared synthesizer itself stays open for the next game
 	 */
 	void close() {
-		if (synth != null && synth.isOpen()) synth.close();
+		MidiChannel ch = AudioEngine.getChannel(0);
+		if (ch != null) ch.allNotesOff();
 	}
 }
@@ -0,0 +1,256 @@
+/*
+ * SpectrumAnalyzer.java
+ */
+
+import javax.sound.sampled.AudioFormat;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * SpectrumAnalyzer class <br>
+ * audio-reactive spectrum shown behind the lanes
+ * - fed with PCM on the AudioEngine render thread, runs the FFT there
+ * - hands band levels to the renderer through a lock-free SpectrumRing
+ * - all buffers and tables are allocated once, accept() / poll() / draw() do not allocate
+ */
+public class SpectrumAnalyzer {
+	static final int FFT_SIZE = 1024;
+	static final int HOP = 512; // new samples between two FFTs (50% overlap)
+	static final int BANDS = 32;
+	private static final float MIN_HZ = 40f;
+	private static final float MAX_HZ = 16000f;
+	private static final float FLOOR_DB = -60f;
+	// precomputed tables
+	private final float[] window = new float[FFT_SIZE];
+	private final float[] cos = new float[FFT_SIZE / 2];
+	private final float[] sin = new float[FFT_SIZE / 2];
+	private final int[] bitReverse = new int[FFT_SIZE];
+	private final int[] bandStart = new int[BANDS];
+	private final int[] bandEnd = new int[BANDS];
+	private float bandRate = 0f; // sample rate the band table was built for
+	// mono history (circular) and FFT work buffers
+	private final float[] history = new float[FFT_SIZE];
+	private int historyPos = 0;
+	private int sinceLast = 0;
+	private final float[] re = new float[FFT_SIZE];
+	private final float[] im = new float[FFT_SIZE];
+	private final float[] levels = new float[BANDS];
+	// audio thread -> render thread
+	private final SpectrumRing ring = new SpectrumRing(8, BANDS);
+
+	/**
+	 * SpectrumAnalyzer() <br>
+	 * constructor
+	 * - builds the window, twiddle and bit reversal tables
+	 */
+	public SpectrumAnalyzer() {
+		int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+		for (int i = 0; i < FFT_SIZE; i++) {
+			window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FFT_SIZE - 1)));
+			bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+		}
+		for (int i = 0; i < FFT_SIZE / 2; i++) {
+			cos[i] = (float) Math.cos(-2 * Math.PI * i / FFT_SIZE);
+			sin[i] = (float) Math.sin(-2 * Math.PI * i / FFT_SIZE);
+		}
+	}
+
+	/**
+	 * accept(pcm,off,len,format) <br>
+	 * audio thread: adds signed 16 bit little-endian PCM to the history
+	 * - runs an FFT and publishes a frame every HOP samples
+	 * @param pcm (byte[]) PCM bytes as written to the line
+	 * @param off (int) offset of the first frame
+	 * @param len (int) number of bytes
+	 * @param format (AudioFormat) format of the bytes
+	 */
+	public void accept(byte[] pcm, int off, int len, AudioFormat format) {
+		if (format.getSampleRate() != bandRate) {
+			buildBands(format.getSampleRate());
+		}
+		int channels = format.getChannels();
+		int frameSize = format.getFrameSize();
+		float scale = 1f / (32768f * channels);
+		for (int p = off; p + frameSize <= off + len; p += frameSize) {
+			int sum = 0;
+			for (int c = 0; c < channels; c++) {
+				sum += (short) ((pcm[p + 2 * c] & 0xFF) | (pcm[p + 2 * c + 1] << 8));
+			}
+			history[historyPos] = sum * scale;
+			historyPos = (historyPos + 1) & (FFT_SIZE - 1);
+			if (++sinceLast == HOP) {
+				sinceLast = 0;
+				analyze();
+				ring.publish(levels);
+			}
+		}
+	}
+
+	/**
+	 * poll(dst) <br>
+	 * render thread: copies the newest band levels (0..1)
+	 * @param dst (float[]) BANDS long destination
+	 * @return (boolean) false if no new frame was published
+	 */
+	public boolean poll(float[] dst) {
+		return ring.pollLatest(dst);
+	}
+
+	/**
+	 * buildBands(sampleRate) <br>
+	 * private method <br>
+	 * maps log-spaced frequency bands to FFT bin ranges
+	 * @param sampleRate (float) sample rate of the incoming audio
+	 */
+	private void buildBands(float sampleRate) {
+		bandRate = sampleRate;
+		float top = Math.min(MAX_HZ, sampleRate / 2);
+		int maxBin = FFT_SIZE / 2 - 1;
+		for (int b = 0; b < BANDS; b++) {
+			double lo = MIN_HZ * Math.pow(top / MIN_HZ, b / (double) BANDS);
+			double hi = MIN_HZ * Math.pow(top / MIN_HZ, (b + 1) / (double) BANDS);
+			bandStart[b] = Math.min(maxBin, Math.max(1, (int) (lo * FFT_SIZE / sampleRate)));
+			bandEnd[b] = Math.min(maxBin + 1, Math.max(bandStart[b] + 1, (int) (hi * FFT_SIZE / sampleRate)));
+		}
+	}
+
+	/**
+	 * analyze() <br>
+	 * private method <br>
+	 * windows the history, runs the FFT and fills levels[] with the peak of each band
+	 */
+	private void analyze() {
+		for (int i = 0; i < FFT_SIZE; i++) {
+			int j = bitReverse[i];
+			re[j] = history[(historyPos + i) & (FFT_SIZE - 1)] * window[i];
+			im[j] = 0f;
+		}
+		// iterative radix-2 decimation in time
+		for (int size = 2; size <= FFT_SIZE; size <<= 1) {
+			int half = size >> 1;
+			int step = FFT_SIZE / size;
+			for (int start = 0; start < FFT_SIZE; start += size) {
+				for (int k = 0; k < half; k++) {
+					float wr = cos[k * step];
+					float wi = sin[k * step];
+					int a = start + k;
+					int b = a + half;
+					float tr = re[b] * wr - im[b] * wi;
+					float ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+		float norm = 4f / FFT_SIZE; // hann window gain (0.5) and one-sided spectrum
+		for (int band = 0; band < BANDS; band++) {
+			float peak = 0f;
+			for (int k = bandStart[band]; k < bandEnd[band]; k++) {
+				float m = re[k] * re[k] + im[k] * im[k];
+				if (m > peak) peak = m;
+			}
+			float db = 10f * (float) Math.log10(peak * norm * norm + 1e-12f);
+			levels[band] = Math.max(0f, Math.min(1f, (db - FLOOR_DB) / -FLOOR_DB));
+		}
+	}
+
+	/**
+	 * smooth(shown,fresh) <br>
+	 * render thread: bars jump up to new peaks and fall back slowly
+	 * @param shown (float[]) levels currently drawn, updated
+	 * @param fresh (float[]) newest levels
+	 */
+	public static void smooth(float[] shown, float[] fresh) {
+		for (int i = 0; i < shown.length; i++) {
+			shown[i] = Math.max(fresh[i], shown[i] * 0.92f);
+		}
+	}
+
+	/**
+	 * fade(levels) <br>
+	 * render thread: lowers stale levels when no new frame has arrived
+	 * @param levels (float[]) levels to fade, updated
+	 */
+	public static void fade(float[] levels) {
+		for (int i = 0; i < levels.length; i++) {
+			levels[i] *= 0.9f;
+		}
+	}
+
+	/**
+	 * draw(g2,levels,width,baseY,maxHeight,color) <br>
+	 * draws the band levels as bars rising from baseY
+	 * @param g2 (Graphics2D) graphics object passed in by caller
+	 * @param levels (float[]) band levels 0..1
+	 * @param width (int) width to fill
+	 * @param baseY (int) bottom of the bars
+	 * @param maxHeight (int) height of a full-scale bar
+	 * @param color (Color) bar color (translucent)
+	 */
+	public static void draw(Graphics2D g2, float[] levels, int width, int baseY, int maxHeight, Color color) {
+		g2.setColor(color);
+		int n = levels.length;
+		for (int i = 0; i < n; i++) {
+			int x0 = i * width / n;
+			int x1 = (i + 1) * width / n;
+			int h = (int) (levels[i] * maxHeight);
+			g2.fillRect(x0 + 1, baseY - h, x1 - x0 - 2, h);
+		}
+	}
+
+	/**
+	 * main(args) <br>
+	 * benchmark: cost of the analysis (audio thread) and of poll + smooth + draw (render thread)
+	 * - run with -Djava.awt.headless=true
+	 * @param args (String[]) optional seconds of audio to analyse (default 60)
+	 */
+	public static void main(String[] args) {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		AudioFormat format = new AudioFormat(44100f, 16, 2, true, false);
+		byte[] chunk = new byte[4096];
+		int frame = 0;
+		SpectrumAnalyzer analyzer = new SpectrumAnalyzer();
+		long totalChunks = (long) seconds * 44100 * 4 / chunk.length;
+		long audioNanos = 0;
+		float[] sink = new float[BANDS];
+		for (int pass = 0; pass < 2; pass++) { // first pass warms up the JIT
+			audioNanos = 0;
+			for (long c = 0; c < totalChunks; c++) {
+				for (int p = 0; p < chunk.length; p += 4, frame++) {
+					short v = (short) (8000 * Math.sin(frame * 0.0627) + 3000 * Math.sin(frame * 0.41));
+					chunk[p] = chunk[p + 2] = (byte) v;
+					chunk[p + 1] = chunk[p + 3] = (byte) (v >> 8);
+				}
+				long t0 = System.nanoTime();
+				analyzer.accept(chunk, 0, chunk.length, format);
+				audioNanos += System.nanoTime() - t0;
+				analyzer.poll(sink); // keep the ring drained like the renderer does
+			}
+		}
+		double ffts = totalChunks * (chunk.length / 4.0) / HOP;
+		System.out.printf("Audio thread: %d s of audio in %.1f ms, %.1f us per FFT, %.3f ms per 120 FPS frame%n",
+				seconds, audioNanos / 1e6, audioNanos / 1e3 / ffts, audioNanos / 1e6 / (seconds * 120.0));
+
+		BufferedImage img = new BufferedImage(GameRules.WIDTH, GameRules.HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = img.createGraphics();
+		float[] fresh = new float[BANDS];
+		float[] shown = new float[BANDS];
+		Color color = new Color(255, 215, 0, 70);
+		int frames = 20_000;
+		long drawNanos = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			long t0 = System.nanoTime();
+			for (int f = 0; f < frames; f++) {
+				analyzer.poll(fresh);
+				smooth(shown, fresh);
+				draw(g2, shown, GameRules.WIDTH, GameRules.BOTTOM_BOUND, 300, color);
+			}
+			drawNanos = System.nanoTime() - t0;
+		}
+		g2.dispose();
+		System.out.printf("Render thread: %.1f us per frame (budget at 120 FPS: 8333 us)%n", drawNanos / 1e3 / frames);
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * SpectrumRing.java
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SpectrumRing class <br>
+ * lock-free single-producer / single-consumer ring of spectrum frames
+ * - the audio thread publishes, the renderer takes the newest frame and skips older ones
+ * - neither side ever blocks: a full ring drops the new frame, an empty ring returns false
+ * - all slots are allocated up front, publishing and polling do not allocate
+ */
+public class SpectrumRing {
+	private final float[][] slots;
+	private final int mask;
+	// next slot the producer writes (only the audio thread advances it)
+	private final AtomicLong head = new AtomicLong();
+	// next slot the consumer reads (only the render thread advances it)
+	private final AtomicLong tail = new AtomicLong();
+	// frames dropped because the renderer was not reading
+	private long dropped = 0;
+
+	/**
+	 * SpectrumRing(capacity,bands) <br>
+	 * constructor
+	 * @param capacity (int) number of slots, rounded up to a power of two
+	 * @param bands (int) values per frame
+	 */
+	public SpectrumRing(int capacity, int bands) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		slots = new float[size][bands];
+		mask = size - 1;
+	}
+
+	/**
+	 * publish(frame) <br>
+	 * producer side: copies a frame into the next free slot
+	 * @param frame (float[]) band values
+	 * @return (boolean) false if the ring was full and the frame was dropped
+	 */
+	public boolean publish(float[] frame) {
+		long h = head.get();
+		if (h - tail.get() > mask) {
+			dropped++;
+			return false;
+		}
+		System.arraycopy(frame, 0, slots[(int) (h & mask)], 0, frame.length);
+		head.lazySet(h + 1); // ordered store: the slot contents are visible before the new head
+		return true;
+	}
+
+	/**
+	 * pollLatest(dst) <br>
+	 * consumer side: copies the newest published frame, discarding older ones
+	 * @param dst (float[]) destination for the band values
+	 * @return (boolean) false if nothing new was published since the last poll
+	 */
+	public boolean pollLatest(float[] dst) {
+		long h = head.get();
+		long t = tail.get();
+		if (t == h) {
+			return false;
+		}
+		// release the older slots first, the newest stays claimed until it is copied
+		tail.lazySet(h - 1);
+		float[] slot = slots[(int) ((h - 1) & mask)];
+		System.arraycopy(slot, 0, dst, 0, dst.length);
+		tail.lazySet(h);
+		return true;
+	}
+
+	/**
+	 * getDropped() <br>
+	 * returns how many frames the producer had to drop
+	 * @return (long) dropped frame count
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+}
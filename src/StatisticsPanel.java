@@ -19,6 +19,8 @@ public class StatisticsPanel extends JPanel {
 	public float alpha = 1.0f;
 	// exit button
 	JButton exitButton;
+	// plays the newest replay of the player
+	JButton replayButton;
 	JLabel userIDLabel = new JLabel("User ID: ");
 	// Last game section
 	JLabel lastHeader = new JLabel("Last Game");
@@ -50,7 +52,7 @@ public class StatisticsPanel extends JPanel {
 	 * - id, difficulty, hits, missed, errors, score, time, accuracy, combo count
 	 */
 	public StatisticsPanel(){
-		setSize(Config.WIDTH, Config.HEIGHT);
+		setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		setLayout(null);
 		setBackground(Config.BACKGROUND_COLOR);
 		// local fonts and colors
@@ -139,6 +141,11 @@ public class StatisticsPanel extends JPanel {
 		exitButton.setActionCommand("EXIT");
 		exitButton.setBounds(x, y + 20, 200, 30);
 		add(exitButton);
+		// Replay button
+		replayButton = ThemeLoader.createRoundButton("WATCH REPLAY", 16);
+		replayButton.setActionCommand("REPLAY");
+		replayButton.setBounds(x + 220, y + 20, 200, 30);
+		add(replayButton);
 		setFocusable(true);
 		// If a user is already logged in when this panel is constructed,
 		// try to show their last and lifetime stats.
@@ -155,17 +155,20 @@ public class StatsManager {
             double prevBestAcc = parseDouble(p.getProperty(prefix + "accuracyPercent"), -1.0);
             int prevBestCombo = parseInt(p.getProperty(prefix + "maxCombo"), Integer.MIN_VALUE);
             boolean improved = stats.score > prevBestScore;
+            if (!improved && stats.score == prevBestScore) {
+                // tie-breakers on accuracy and combo
+                improved = stats.accuracyPercent > prevBestAcc ||
+                        (stats.accuracyPercent == prevBestAcc && stats.maxCombo > prevBestCombo);
+            }
             if (improved) {
                 p.setProperty(prefix + "score", Integer.toString(stats.score));
                 p.setProperty(prefix + "accuracyPercent", Double.toString(stats.accuracyPercent));
                 p.setProperty(prefix + "maxCombo", Integer.toString(stats.maxCombo));
-            } else if (stats.score == prevBestScore) {
-                // tie-breakers on accuracy and combo
-                if (stats.accuracyPercent > prevBestAcc ||
-                        (stats.accuracyPercent == prevBestAcc && stats.maxCombo > prevBestCombo)) {
-                    p.setProperty(prefix + "score", Integer.toString(stats.score));
-                    p.setProperty(prefix + "accuracyPercent", Double.toString(stats.accuracyPercent));
-                    p.setProperty(prefix + "maxCombo", Integer.toString(stats.maxCombo));
+                // the ghost always belongs to the stored best
+                if (stats.scoreCurve != null) {
+                    p.setProperty(prefix + "ghost", stats.scoreCurve.encode());
+                } else {
+                    p.remove(prefix + "ghost");
                 }
             }
         }
@@ -219,6 +222,33 @@ public class StatsManager {
         return s;
     }
 
+	/**
+	 * loadGhost(userId,songIndex,difficulty) <br>
+	 * returns the score curve of a user's personal best for a song and difficulty
+	 * @param userId (String) user id passed in from caller
+	 * @param songIndex (int) song index passed in from caller
+	 * @param difficulty (String) difficulty passed in from caller
+	 * @return (GhostCurve) personal best curve, null if there is none
+	 */
+    public static GhostCurve loadGhost(String userId, int songIndex, String difficulty) {
+        if (userId == null || userId.isEmpty() || difficulty == null || difficulty.isEmpty()) {
+            return null;
+        }
+        File file = new File(STATS_DIR, "lifetime_" + userId + ".properties");
+        if (!file.exists()) {
+            return null;
+        }
+        Properties p = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            p.load(in);
+        } catch (IOException e) {
+            System.err.println("Error loading ghost for " + userId + ": " + e.getMessage());
+            return null;
+        }
+        String ghost = p.getProperty("best." + songIndex + "." + encodeDifficulty(difficulty) + ".ghost");
+        return ghost != null ? GhostCurve.decode(ghost) : null;
+    }
+
 	// --- helpers -------------------------------------------------------------
 
 	/**
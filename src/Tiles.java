@@ -13,13 +13,18 @@ import java.util.*;
  * - Tile objects are drawn as glowing rectangles using theme colors or as images for special effects
  */
 public class Tiles {
+	private static final Color GOLD = new Color(255, 215, 0);
+	private static final Color GOLD_GLOW = new Color(255, 215, 0, 100);
+	private static final Color WHITE_GLOW = new Color(255, 255, 255, 100);
+	private static final Color FOUL = new Color(255, 0, 0, 180);
+	private static final Color FLASH = new Color(255, 255, 255, 180);
     // dimensions for tiles
-	int lane; // 0..3
+	int lane; // 0 .. GameRules.LANES - 1
 	float y; // top y
 	long spawnAtMs;
 	// currently not used
-	private int TILE_WIDTH = 150; // Config.TILE_WIDTH
-	private int TILE_HEIGHT = 150; // Config.TILE_HEIGHT
+	private int TILE_WIDTH = 150; // GameRules.TILE_WIDTH
+	private int TILE_HEIGHT = 150; // GameRules.TILE_HEIGHT
 	int eX;
 	int eY;
 	int radius = 0;
@@ -55,21 +60,26 @@ public class Tiles {
 	 * @return (Rectangle) object to place on game board
 	 */
 	Rectangle bounds(int laneX, int laneW) {
-		return new Rectangle(laneX, Math.round(y), laneW, Config.TILE_HEIGHT);
+		return new Rectangle(laneX, Math.round(y), laneW, GameRules.TILE_HEIGHT);
 	}
 
     /**
-     * drawTiles(g,tilesCheck,tilesY,play,useGoldTiles,useWhiteTiles) <br>
-     * Draws the falling tiles for each active column.
+     * drawTiles(g,layout,laneNotes,laneMask,scroll,now,pxPerMs,play,useGoldTiles,useWhiteTiles) <br>
+     * Draws the falling tiles of every lane.
      * - Uses white glow tiles normally, and gold glow tiles when useGoldTiles is true (combo >= 25).
+     * - only lanes with notes (set bits of laneMask) and the notes queued in them are visited
      * @param g (Graphics) object to draw
-     * @param tilesCheck (boolean[]) boolean flags indicating which columns currently have tiles
-     * @param tilesY (int[]) vertical positions of the tiles in each column
+     * @param layout (LaneLayout) lane geometry
+     * @param laneNotes (NoteQueue[]) notes on screen, per lane
+     * @param laneMask (int) bit n set when lane n has notes
+     * @param scroll (ScrollMap) scroll changes of the chart
+     * @param now (long) current song time in ms
+     * @param pxPerMs (float) scroll speed
      * @param play (boolean)  true if the game is in play (has started)
      * @param useGoldTiles (boolean) whether to draw tiles in gold mode (activated by high combo)
      * @param useWhiteTiles (boolean) whether to draw tiles in white mode (activated by high combo)
      */
-    public void drawTiles(Graphics g, boolean[] tilesCheck, int[] tilesY, boolean play, boolean useGoldTiles, boolean useWhiteTiles) {
+    public void drawTiles(Graphics g, LaneLayout layout, NoteQueue[] laneNotes, int laneMask, ScrollMap scroll, long now, float pxPerMs, boolean play, boolean useGoldTiles, boolean useWhiteTiles) {
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         if (!play) {
@@ -87,24 +97,31 @@ public class Tiles {
 	        BufferedImage blackTileImg = AssetManager.getImage("tile_black");
             BufferedImage whiteTileImg = AssetManager.getImage("tile_white");
 			BufferedImage goldTileImg = AssetManager.getImage("tile_gold");
-            for (int col = 0; col < 4; col++) {
-                if (tilesCheck[col]) {
-                    int x = col * Config.TILE_WIDTH;
-                    int y = (int)tilesY[col];
+            double nowPos = scroll.position(now);
+            int w = layout.tileWidth;
+            for (int m = laneMask; m != 0; m &= m - 1) {
+                int col = Integer.numberOfTrailingZeros(m);
+                NoteQueue q = laneNotes[col];
+                int x = layout.laneX[col] + layout.tileInset;
+                for (int i = 0; i < q.size(); i++) {
+                    int y = GameRules.tileY(scroll, q.get(i), nowPos, pxPerMs);
+                    if (y < -GameRules.TILE_HEIGHT) {
+                        break; // later notes are even higher up
+                    }
                     if (useGoldTiles && goldTileImg != null) {
-                        g2.drawImage(goldTileImg, x + 6, y, Config.TILE_WIDTH - 12, Config.TILE_HEIGHT, null);
+                        g2.drawImage(goldTileImg, x, y, w, GameRules.TILE_HEIGHT, null);
                     } else if (useWhiteTiles && whiteTileImg != null ) {
-                        g2.drawImage(whiteTileImg, x + 6, y, Config.TILE_WIDTH - 12, Config.TILE_HEIGHT, null);
+                        g2.drawImage(whiteTileImg, x, y, w, GameRules.TILE_HEIGHT, null);
                     } else if (!useGoldTiles && !useWhiteTiles && blackTileImg != null ) {
-	                    g2.drawImage(blackTileImg, x + 6, y, Config.TILE_WIDTH - 12, Config.TILE_HEIGHT, null);
+	                    g2.drawImage(blackTileImg, x, y, w, GameRules.TILE_HEIGHT, null);
                     } else {
                         // Fallback: draw colored rectangle tiles if images not available
-                        Color baseColor = useGoldTiles ? new Color(255, 215, 0) : Color.WHITE;
-                        Color glowColor = useGoldTiles ? new Color(255, 215, 0, 100) : new Color(255, 255, 255, 100);
+                        Color baseColor = useGoldTiles ? GOLD : Color.WHITE;
+                        Color glowColor = useGoldTiles ? GOLD_GLOW : WHITE_GLOW;
                         g2.setColor(baseColor);
-                        g2.fillRoundRect(x + 6, y, Config.TILE_WIDTH - 12, Config.TILE_HEIGHT, 30, 30);
+                        g2.fillRoundRect(x, y, w, GameRules.TILE_HEIGHT, 30, 30);
                         g2.setColor(glowColor);
-                        g2.fillRoundRect(x + 6, y, Config.TILE_WIDTH - 12, Config.TILE_HEIGHT, 30, 30);
+                        g2.fillRoundRect(x, y, w, GameRules.TILE_HEIGHT, 30, 30);
                     }
                 }
             }
@@ -115,28 +132,30 @@ public class Tiles {
     }
 
     /**
-     * drawFoul(g,foulCol,foulY) <br>
+     * drawFoul(g,layout,foulCol,foulY) <br>
      * draws a red tile to indicate a missed note (foul) at the given column and position
      * @param g (Graphics) object to draw
+     * @param layout (LaneLayout) lane geometry
      * @param foulCol (int) index of column where the miss occurred
      * @param foulY (int) vertical position of the missed tile
      */
-    public void drawFoul(Graphics g, int foulCol, int foulY) {
-        g.setColor(new Color(255, 0, 0, 180));
-        g.fillRoundRect(foulCol * Config.TILE_WIDTH + 6, foulY, Config.TILE_WIDTH - 12, Config.TILE_HEIGHT, 30, 30);
+    public void drawFoul(Graphics g, LaneLayout layout, int foulCol, int foulY) {
+        g.setColor(FOUL);
+        g.fillRoundRect(layout.laneX[foulCol] + layout.tileInset, foulY, layout.tileWidth, GameRules.TILE_HEIGHT, 30, 30);
     }
 
 	/**
-	 * drawFlash(g,flashCol,flashY) <br>
+	 * drawFlash(g,layout,flashCol,flashY) <br>
 	 * flashes the lane to indicate (foul) at the given column and position
 	 * - not currently used
 	 * @param g (Graphics) object to draw
+	 * @param layout (LaneLayout) lane geometry
 	 * @param flashCol (int) index of column where the miss occurred
 	 * @param flashY (int) vertical position of the missed tile
 	 */
-	public void drawFlash(Graphics g, int flashCol, int flashY) {
-		g.setColor(new Color(255, 255, 255, 180));
-		g.fillRect(flashCol * Config.TILE_WIDTH + 6, flashY, Config.TILE_WIDTH - 12, Config.HEIGHT);
+	public void drawFlash(Graphics g, LaneLayout layout, int flashCol, int flashY) {
+		g.setColor(FLASH);
+		g.fillRect(layout.laneX[flashCol] + layout.tileInset, flashY, layout.tileWidth, GameRules.HEIGHT);
 	}
 }
 
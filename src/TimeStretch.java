@@ -0,0 +1,388 @@
+/*
+ * TimeStretch.java
+ */
+
+/**
+ * TimeStretch class <br>
+ * playback-rate DSP stage between a PcmSource and the output line (AudioEngine render thread)
+ * - pitch preserving: WSOLA (waveform-similarity overlap-add) on WINDOW-frame Hann windows at 50% overlap;
+ *   each window is read RATE times the output hop further on, shifted by up to SEEK_FRAMES to the offset
+ *   that best continues the previous window (cross-correlation of a decimated mono mix)
+ * - not pitch preserving: varispeed, linear interpolation between input frames
+ * - signed 16 bit little-endian PCM, any channel count
+ * - every buffer is allocated in the constructor, read() never allocates; added latency is one window
+ */
+public class TimeStretch {
+	static final float MIN_RATE = 0.5f;
+	static final float MAX_RATE = 1.5f;
+	private static final int WINDOW = 1024; // ~23 ms at 44.1 kHz
+	private static final int HOP = WINDOW / 2; // output hop (frames)
+	private static final int SEEK_FRAMES = 256; // search range for the best window offset (+/-)
+	private static final int OVERLAP = WINDOW / 2; // frames compared when searching
+	private static final int DECIMATE = 2; // compare every 2nd frame
+	private final int channels;
+	private final int frameBytes;
+	private final float[] window = new float[WINDOW];
+	// input frames (interleaved floats), inBuf[0] is frame inStart of the stream
+	private final float[] inBuf;
+	private final float[] inMono;
+	private final int inCapacity; // frames
+	private long inStart = 0;
+	private int inFrames = 0;
+	private boolean inEnded = false;
+	private final byte[] readBytes; // raw bytes read from the source
+	// output overlap-add accumulator and finished output bytes
+	private final float[] outAcc;
+	private final byte[] outBytes;
+	private int outPos = 0;
+	private int outLimit = 0;
+	// WSOLA state
+	private double analysisPos = 0; // ideal input frame of the next window
+	private long previousPos = -1; // input frame of the previous window, -1 before the first one
+	// varispeed state
+	private double resamplePos = 0; // input frame of the next output frame
+	// rate, set from any thread and picked up at the next read
+	private volatile float rate = 1.0f;
+	private volatile boolean preservePitch = true;
+	private float activeRate = 1.0f;
+	private boolean activePreserve = true;
+
+	/**
+	 * TimeStretch(channels) <br>
+	 * constructor
+	 * @param channels (int) channels of the PCM stream
+	 */
+	public TimeStretch(int channels) {
+		this.channels = channels;
+		this.frameBytes = channels * 2;
+		// enough input for a window at the furthest search offset, plus one hop of read-ahead at the fastest rate
+		inCapacity = 2 * WINDOW + 2 * SEEK_FRAMES + (int) Math.ceil(HOP * MAX_RATE) + HOP;
+		inBuf = new float[inCapacity * channels];
+		inMono = new float[inCapacity];
+		readBytes = new byte[HOP * frameBytes];
+		outAcc = new float[WINDOW * channels];
+		outBytes = new byte[Math.max(HOP, 2 * HOP) * frameBytes];
+		for (int i = 0; i < WINDOW; i++) {
+			window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / WINDOW)); // periodic Hann, sums to 1 at 50%
+		}
+	}
+
+	/**
+	 * setRate(rate,preservePitch) <br>
+	 * sets the playback rate (any thread, applied at the next read)
+	 * @param rate (float) MIN_RATE .. MAX_RATE, 1 = unchanged
+	 * @param preservePitch (boolean) true for WSOLA, false for varispeed (pitch follows the rate)
+	 */
+	public void setRate(float rate, boolean preservePitch) {
+		this.rate = Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+		this.preservePitch = preservePitch;
+	}
+
+	/**
+	 * isBypassed() <br>
+	 * @return (boolean) true when the rate is 1 and nothing is buffered, the source can be read directly
+	 */
+	boolean isBypassed() {
+		return rate == 1.0f && inFrames == 0 && outPos == outLimit;
+	}
+
+	/**
+	 * reset() <br>
+	 * drops buffered audio, e.g. after the source was sought (render thread)
+	 */
+	void reset() {
+		inStart = 0;
+		inFrames = 0;
+		inEnded = false;
+		outPos = outLimit = 0;
+		analysisPos = 0;
+		previousPos = -1;
+		resamplePos = 0;
+		java.util.Arrays.fill(outAcc, 0f);
+	}
+
+	/**
+	 * read(source,b,off,len) <br>
+	 * reads rate-changed PCM (render thread)
+	 * @param source (PcmSource) decoded input
+	 * @param b (byte[]) destination buffer
+	 * @param off (int) offset into the buffer
+	 * @param len (int) maximum bytes to read
+	 * @return (int) bytes read (whole frames), or -1 at the end of the source
+	 * @throws java.io.IOException if the source cannot be read
+	 */
+	int read(PcmSource source, byte[] b, int off, int len) throws java.io.IOException {
+		if (rate != activeRate || preservePitch != activePreserve) {
+			if (preservePitch != activePreserve) {
+				// the other algorithm starts from the first unread input frame
+				long next = activePreserve ? Math.max(inStart, Math.round(analysisPos)) : (long) resamplePos;
+				dropInput(next);
+				previousPos = -1;
+				analysisPos = next;
+				resamplePos = next;
+				outPos = outLimit = 0;
+				java.util.Arrays.fill(outAcc, 0f);
+			}
+			activeRate = rate;
+			activePreserve = preservePitch;
+		}
+		if (outPos == outLimit) {
+			boolean more = activePreserve ? wsolaHop(source) : resampleHop(source);
+			if (!more) {
+				return -1;
+			}
+		}
+		int n = Math.min(len - len % frameBytes, outLimit - outPos);
+		System.arraycopy(outBytes, outPos, b, off, n);
+		outPos += n;
+		return n;
+	}
+
+	/**
+	 * fill(source,untilFrame) <br>
+	 * private method <br>
+	 * reads source frames until the buffer reaches a stream frame or the source ends
+	 * @param source (PcmSource) decoded input
+	 * @param untilFrame (long) stream frame that must be buffered (exclusive)
+	 * @throws java.io.IOException if the source cannot be read
+	 */
+	private void fill(PcmSource source, long untilFrame) throws java.io.IOException {
+		while (!inEnded && inStart + inFrames < untilFrame) {
+			int room = Math.min(inCapacity - inFrames, readBytes.length / frameBytes);
+			if (room <= 0) {
+				return;
+			}
+			int n = source.read(readBytes, 0, room * frameBytes);
+			if (n < 0) {
+				inEnded = true;
+				return;
+			}
+			int frames = n / frameBytes;
+			for (int f = 0; f < frames; f++) {
+				float mono = 0;
+				int dst = (inFrames + f) * channels;
+				for (int c = 0; c < channels; c++) {
+					int i = (f * channels + c) * 2;
+					float v = (short) ((readBytes[i] & 0xFF) | (readBytes[i + 1] << 8));
+					inBuf[dst + c] = v;
+					mono += v;
+				}
+				inMono[inFrames + f] = mono;
+			}
+			inFrames += frames;
+		}
+	}
+
+	/**
+	 * dropInput(frame) <br>
+	 * private method <br>
+	 * discards buffered input before a stream frame (shifts the buffer down, no allocation)
+	 * @param frame (long) first stream frame to keep
+	 */
+	private void dropInput(long frame) {
+		int drop = (int) Math.max(0, Math.min(inFrames, frame - inStart));
+		if (drop == 0) {
+			return;
+		}
+		System.arraycopy(inBuf, drop * channels, inBuf, 0, (inFrames - drop) * channels);
+		System.arraycopy(inMono, drop, inMono, 0, inFrames - drop);
+		inFrames -= drop;
+		inStart += drop;
+	}
+
+	/**
+	 * sample(frame,channel) <br>
+	 * private method <br>
+	 * @param frame (long) stream frame
+	 * @param channel (int) channel
+	 * @return (float) sample, 0 outside the buffered input (end of the song)
+	 */
+	private float sample(long frame, int channel) {
+		long i = frame - inStart;
+		return i >= 0 && i < inFrames ? inBuf[(int) i * channels + channel] : 0f;
+	}
+
+	/**
+	 * wsolaHop(source) <br>
+	 * private method <br>
+	 * adds the next window to the output and finishes one hop of output frames
+	 * @param source (PcmSource) decoded input
+	 * @return (boolean) false once the input is used up
+	 * @throws java.io.IOException if the source cannot be read
+	 */
+	private boolean wsolaHop(PcmSource source) throws java.io.IOException {
+		long target = Math.round(analysisPos);
+		fill(source, Math.max(target + SEEK_FRAMES, previousPos + HOP) + WINDOW);
+		if (inEnded && target >= inStart + inFrames) {
+			return false;
+		}
+		long chosen = target;
+		if (previousPos >= 0) {
+			// the window that best continues the previous one: highest correlation with its natural successor
+			long natural = previousPos + HOP;
+			int naturalIndex = (int) (natural - inStart);
+			long from = Math.max(inStart, target - SEEK_FRAMES);
+			long to = Math.min(inStart + inFrames - OVERLAP, target + SEEK_FRAMES);
+			double best = Double.NEGATIVE_INFINITY;
+			if (naturalIndex >= 0 && naturalIndex + OVERLAP <= inFrames) {
+				for (long candidate = from; candidate <= to; candidate++) {
+					int c = (int) (candidate - inStart);
+					double sum = 0;
+					for (int k = 0; k < OVERLAP; k += DECIMATE) {
+						sum += inMono[naturalIndex + k] * inMono[c + k];
+					}
+					if (sum > best) {
+						best = sum;
+						chosen = candidate;
+					}
+				}
+			}
+		}
+		// overlap-add the chosen window
+		for (int k = 0; k < WINDOW; k++) {
+			float w = window[k];
+			int dst = k * channels;
+			for (int c = 0; c < channels; c++) {
+				outAcc[dst + c] += w * sample(chosen + k, c);
+			}
+		}
+		// the first hop is complete: convert it and shift the accumulator
+		writeFrames(outAcc, HOP);
+		System.arraycopy(outAcc, HOP * channels, outAcc, 0, (WINDOW - HOP) * channels);
+		java.util.Arrays.fill(outAcc, (WINDOW - HOP) * channels, WINDOW * channels, 0f);
+		previousPos = chosen;
+		analysisPos += HOP * (double) activeRate;
+		dropInput(Math.min(Math.round(analysisPos) - SEEK_FRAMES, previousPos + HOP));
+		return true;
+	}
+
+	/**
+	 * resampleHop(source) <br>
+	 * private method <br>
+	 * produces one hop of varispeed output by linear interpolation
+	 * @param source (PcmSource) decoded input
+	 * @return (boolean) false once the input is used up
+	 * @throws java.io.IOException if the source cannot be read
+	 */
+	private boolean resampleHop(PcmSource source) throws java.io.IOException {
+		fill(source, (long) (resamplePos + HOP * (double) activeRate) + 2);
+		if (inEnded && (long) resamplePos >= inStart + inFrames) {
+			return false;
+		}
+		for (int f = 0; f < HOP; f++) {
+			long base = (long) resamplePos;
+			float frac = (float) (resamplePos - base);
+			int dst = f * channels;
+			for (int c = 0; c < channels; c++) {
+				float a = sample(base, c);
+				outAcc[dst + c] = a + (sample(base + 1, c) - a) * frac;
+			}
+			resamplePos += activeRate;
+		}
+		writeFrames(outAcc, HOP);
+		java.util.Arrays.fill(outAcc, 0, HOP * channels, 0f);
+		dropInput((long) resamplePos);
+		return true;
+	}
+
+	/**
+	 * writeFrames(src,frames) <br>
+	 * private method <br>
+	 * converts float frames to 16 bit PCM into the output bytes
+	 * @param src (float[]) interleaved samples
+	 * @param frames (int) frames to convert
+	 */
+	private void writeFrames(float[] src, int frames) {
+		int n = frames * channels;
+		for (int i = 0; i < n; i++) {
+			int v = Math.round(src[i]);
+			v = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+			outBytes[2 * i] = (byte) v;
+			outBytes[2 * i + 1] = (byte) (v >> 8);
+		}
+		outPos = 0;
+		outLimit = n * 2;
+	}
+
+	/**
+	 * main(args) <br>
+	 * benchmark: CPU time per second of output audio
+	 * - java TimeStretch [seconds, default 60]
+	 * @param args (String[]) arguments
+	 */
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		float sampleRate = 44100f;
+		for (boolean preserve : new boolean[] {true, false}) {
+			for (float r : new float[] {0.5f, 0.75f, 1.25f, 1.5f}) {
+				// synthetic stereo input: a chord with a 2 Hz tremolo, long enough for the whole run
+				long inputFrames = (long) (seconds * sampleRate * r) + 44100;
+				PcmSource tone = new PcmSource() {
+					private long frame = 0;
+
+					@Override
+					public javax.sound.sampled.AudioFormat getFormat() {
+						return new javax.sound.sampled.AudioFormat(sampleRate, 16, 2, true, false);
+					}
+
+					@Override
+					public long getFrameLength() {
+						return inputFrames;
+					}
+
+					@Override
+					public int read(byte[] b, int off, int len) {
+						if (frame >= inputFrames) {
+							return -1;
+						}
+						int frames = (int) Math.min(len / 4, inputFrames - frame);
+						for (int f = 0; f < frames; f++, frame++) {
+							double t = frame / sampleRate;
+							double v = (Math.sin(2 * Math.PI * 220 * t) + Math.sin(2 * Math.PI * 277 * t) + Math.sin(2 * Math.PI * 330 * t))
+									* (0.6 + 0.4 * Math.sin(2 * Math.PI * 2 * t)) * 6000;
+							short s = (short) v;
+							int i = off + f * 4;
+							b[i] = b[i + 2] = (byte) s;
+							b[i + 1] = b[i + 3] = (byte) (s >> 8);
+						}
+						return frames * 4;
+					}
+
+					@Override
+					public void seek(long frame) {
+						this.frame = frame;
+					}
+
+					@Override
+					public void close() {
+					}
+				};
+				TimeStretch stretch = new TimeStretch(2);
+				stretch.setRate(r, preserve);
+				byte[] out = new byte[4096];
+				long outputBytes = (long) (seconds * sampleRate) * 4;
+				// warm up on the first second, then time the rest
+				long produced = 0;
+				long warm = (long) sampleRate * 4;
+				while (produced < warm) {
+					produced += stretch.read(tone, out, 0, out.length);
+				}
+				java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+				long cpu0 = bean.getCurrentThreadCpuTime();
+				long t0 = System.nanoTime();
+				while (produced < outputBytes) {
+					int n = stretch.read(tone, out, 0, out.length);
+					if (n < 0) {
+						break;
+					}
+					produced += n;
+				}
+				double audioSec = (produced - warm) / 4.0 / sampleRate;
+				double cpuMs = (bean.getCurrentThreadCpuTime() - cpu0) / 1e6;
+				double wallMs = (System.nanoTime() - t0) / 1e6;
+				System.out.printf("%s %.2fx: %.1f s of audio, %.2f ms CPU per second (%.2f%% of one core), wall %.0f ms%n",
+						preserve ? "WSOLA    " : "varispeed", r, audioSec, cpuMs / audioSec, cpuMs / audioSec / 10, wallMs);
+			}
+		}
+	}
+}
@@ -14,4 +14,5 @@ public class UserStats {
     public double accuracyPercent; // e.g. 87.5
     public int maxCombo;
     public int lastComboCount;
+    public GhostCurve scoreCurve; // score over song time, kept with a personal best (null if not recorded)
 }
@@ -0,0 +1,93 @@
+/*
+ * VarInt.java
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * VarInt class <br>
+ * variable-length integers for the compact binary formats
+ * - 7 bits per byte, high bit set on every byte but the last
+ * - small values (note deltas, lanes) take a single byte
+ * - signed values are zig-zag encoded so small negatives stay small
+ */
+public final class VarInt {
+
+	/**
+	 * writeUnsigned(out,value) <br>
+	 * writes a non-negative value
+	 * @param out (DataOutput) destination
+	 * @param value (long) value, treated as unsigned
+	 * @throws IOException if the write fails
+	 */
+	static void writeUnsigned(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * readUnsigned(in) <br>
+	 * reads a value written by writeUnsigned
+	 * @param in (DataInput) source
+	 * @return (long) value
+	 * @throws IOException if the read fails or the value is longer than 64 bits
+	 */
+	static long readUnsigned(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+
+	/**
+	 * writeSigned(out,value) <br>
+	 * writes a value that may be negative (zig-zag encoding)
+	 * @param out (DataOutput) destination
+	 * @param value (long) value
+	 * @throws IOException if the write fails
+	 */
+	static void writeSigned(DataOutput out, long value) throws IOException {
+		writeUnsigned(out, zigZag(value));
+	}
+
+	/**
+	 * readSigned(in) <br>
+	 * reads a value written by writeSigned
+	 * @param in (DataInput) source
+	 * @return (long) value
+	 * @throws IOException if the read fails
+	 */
+	static long readSigned(DataInput in) throws IOException {
+		return unZigZag(readUnsigned(in));
+	}
+
+	/**
+	 * zigZag(value) <br>
+	 * maps signed to unsigned values: 0, -1, 1, -2 .. become 0, 1, 2, 3 ..
+	 * - for packing a signed value with other fields into one writeUnsigned
+	 * @param value (long) signed value
+	 * @return (long) zig-zag encoded value
+	 */
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * unZigZag(raw) <br>
+	 * @param raw (long) value from zigZag
+	 * @return (long) signed value
+	 */
+	static long unZigZag(long raw) {
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+}
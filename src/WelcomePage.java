@@ -22,7 +22,7 @@ public class WelcomePage {
 	 * @param userID (String) ID of currently logged user
 	 */
 	WelcomePage(String userID) {
-		frame.setSize(Config.WIDTH, Config.HEIGHT);
+		frame.setSize(GameRules.WIDTH, GameRules.HEIGHT);
 		frame.setLayout(null);
 		frame.setBackground(Config.BACKGROUND_COLOR);
 		welcomeLabel.setBounds(100, 100, 200, 75);